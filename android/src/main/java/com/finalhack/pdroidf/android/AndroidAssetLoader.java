@@ -0,0 +1,33 @@
+package com.finalhack.pdroidf.android;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import android.content.Context;
+import android.content.res.AssetManager;
+
+import com.finalhack.pdroidf.AssetLoader;
+
+/**
+ * Opens files in an app's assets directory through the AssetManager
+ */
+public class AndroidAssetLoader implements AssetLoader
+{
+	private AssetManager assetManager;
+
+	/**
+	 * Construct a loader for the assets of the app context belongs to
+	 * @param context
+	 */
+	public AndroidAssetLoader(Context context) { this.assetManager = context.getAssets(); }
+
+	@Override
+	public InputStream open(String fileName) throws IOException { return assetManager.open(fileName); }
+
+	//Loaders for the same assets are equal, so an image added through two of them is still only written out once
+	@Override
+	public int hashCode() { return assetManager.hashCode(); }
+
+	@Override
+	public boolean equals(Object object) { return object instanceof AndroidAssetLoader && assetManager == ((AndroidAssetLoader)object).assetManager; }
+}
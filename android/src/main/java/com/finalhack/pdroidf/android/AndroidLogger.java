@@ -0,0 +1,19 @@
+package com.finalhack.pdroidf.android;
+
+import android.util.Log;
+
+import com.finalhack.pdroidf.PdfLogger;
+
+/**
+ * Sends pDroidF's debug messages to android.util.Log.
+ * Turn it on with Pdf.setLogger(new AndroidLogger())
+ */
+public class AndroidLogger implements PdfLogger
+{
+	@Override
+	public void debug(String tag, String message, Throwable throwable)
+	{
+		if (throwable != null) Log.d(tag, message, throwable);
+		else Log.d(tag, message);
+	}
+}
@@ -0,0 +1,94 @@
+package com.finalhack.pdroidf.android;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Environment;
+import android.util.Log;
+
+import com.finalhack.pdroidf.ImageSource;
+import com.finalhack.pdroidf.Pdf;
+import com.finalhack.pdroidf.Pixels;
+
+/**
+ * Android helpers for getting images into a PDF and getting the PDF out to a file.
+ * The PDF itself is created with the Pdf class, which doesn't need Android at all.
+ */
+public class AndroidPdf
+{
+	//Get a byte array representing a BMP file
+	public static byte[] getAssetJpgBytes(Context context, String fileName)
+	{
+		return Pdf.getAssetJpgBytes(new AndroidAssetLoader(context), fileName);
+	}
+	
+	//Get a JPG asset which is only read while the PDF is written out, instead of being held in memory
+	public static ImageSource getAssetImage(Context context, String fileName)
+	{
+		return ImageSource.fromAsset(new AndroidAssetLoader(context), fileName);
+	}
+	
+	//Get the pixels of a Bitmap (like a chart or a screenshot) to add losslessly with Stream.addPixels(), keeping its transparency
+	public static Pixels getPixels(Bitmap bitmap)
+	{
+		int width = bitmap.getWidth();
+		int height = bitmap.getHeight();
+		int[] argb = new int[width * height];
+		bitmap.getPixels(argb, 0, width, 0, 0, width, height);
+		return Pixels.fromArgb(argb, width, height);
+	}
+	
+	// Write out the PDF so it can be viewed by a PDF viewer, sent somewhere,
+	// etc.
+	// Errors are thrown so the caller knows the file isn't there.
+	public static File writePdf(Context context, byte[] pdfBytes, String filename) throws IOException {
+		// Make sure everything is written to a valid location
+		File file = createFileInTheRightSpot(context, filename);
+		FileOutputStream fileOutputStream = new FileOutputStream(file);
+
+		try {
+			//Write out the actual PDF
+			fileOutputStream.write(pdfBytes);
+		} finally {
+			fileOutputStream.close();
+		}
+		
+		return file;
+	}
+
+	// Write out the PDF straight into a file in the Downloads directory,
+	// without ever holding the whole PDF in memory.
+	// sync is Pdf.SYNC_AT_END to have the file on storage before this returns, or Pdf.SYNC_NONE.
+	public static File writePdf(Context context, Pdf pdf, String filename, int sync) throws IOException {
+		File file = createFileInTheRightSpot(context, filename);
+		pdf.writePdf(file, sync);
+		return file;
+	}
+
+	// This method takes care of making sure that storage is available, and
+	// creating a file in the right spot (the Downloads directory).
+	// Use it to get a file to pass to Pdf.renderAsync().
+	public static File createFileInTheRightSpot(Context context, String fileName) throws IOException {
+		// Is external storage available?
+		String state = Environment.getExternalStorageState();
+		if (!Environment.MEDIA_MOUNTED.equals(state)) {
+			// If we can't get storage, let the user know
+			if (Pdf.DEBUG_ON)
+				Log.d(Pdf.LOG_TAG_DEBUG, "No external storage available?");
+			throw new IOException("No external storage available: " + state);
+		}
+
+		// Create the actual file
+		File dir = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOWNLOADS);
+
+		// Make all needed directories if they do not exist
+		dir.mkdirs();
+
+		// Create the file
+		File file = new File(dir, fileName);
+		return file;
+	}
+}
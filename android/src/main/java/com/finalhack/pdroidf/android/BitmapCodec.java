@@ -0,0 +1,62 @@
+package com.finalhack.pdroidf.android;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import com.finalhack.pdroidf.ImageCodec;
+
+/**
+ * Downsamples JPEG images with Android's Bitmap, for using Pdf.setImageDownsampling() on Android
+ */
+public class BitmapCodec implements ImageCodec
+{
+	public static final int DEFAULT_QUALITY = 85;
+
+	private int quality;
+
+	/**
+	 * Construct a codec encoding with DEFAULT_QUALITY
+	 */
+	public BitmapCodec() { this(DEFAULT_QUALITY); }
+
+	/**
+	 * Construct a codec encoding with the given JPEG quality
+	 * @param quality from 0 (smallest) to 100 (best)
+	 */
+	public BitmapCodec(int quality)
+	{
+		if (quality < 0 || quality > 100) throw new IllegalArgumentException("Invalid quality: " + quality);
+		this.quality = quality;
+	}
+
+	@Override
+	public byte[] downsample(InputStream jpeg, int jpegWidth, int jpegHeight, int width, int height) throws IOException
+	{
+		//Let the decoder skip pixels (by a power of 2) while the result is still at least the final size,
+		//so a camera photo never has to fit in memory at full size
+		BitmapFactory.Options options = new BitmapFactory.Options();
+		options.inSampleSize = 1;
+		while (jpegWidth / (options.inSampleSize * 2) >= width && jpegHeight / (options.inSampleSize * 2) >= height) options.inSampleSize *= 2;
+
+		Bitmap decoded = BitmapFactory.decodeStream(jpeg, null, options);
+		if (decoded == null) throw new IOException("Can't decode the JPEG");
+
+		Bitmap scaled = Bitmap.createScaledBitmap(decoded, width, height, true);
+		try
+		{
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			if (!scaled.compress(Bitmap.CompressFormat.JPEG, quality, bytes)) throw new IOException("Can't encode the JPEG");
+			return bytes.toByteArray();
+		}
+		finally
+		{
+			//Bitmap memory is freed as soon as possible
+			if (scaled != decoded) scaled.recycle();
+			decoded.recycle();
+		}
+	}
+}
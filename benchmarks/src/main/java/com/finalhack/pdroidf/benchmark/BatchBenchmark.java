@@ -0,0 +1,89 @@
+package com.finalhack.pdroidf.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.finalhack.pdroidf.Pdf;
+import com.finalhack.pdroidf.Stream;
+
+/**
+ * Making many small documents (like receipts) one after the other: lay out a few pages and write them out.
+ * Each operation is one whole document, either in a new Pdf or in one Pdf that is reset() every time.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchBenchmark
+{
+	@Param({"1", "3"})
+	public int pages;
+
+	@Param({"false", "true"})
+	public boolean compressed;
+
+	private Pdf pdf;
+	private DiscardingOutputStream outputStream = new DiscardingOutputStream();
+
+	@Setup
+	public void setUp() { pdf = new Pdf(); }
+
+	/**
+	 * A new Pdf for every document
+	 */
+	@Benchmark
+	public long newPdf() throws IOException { return write(new Pdf()); }
+
+	/**
+	 * One Pdf reset() for every document, which keeps its buffers
+	 */
+	@Benchmark
+	public long resetPdf() throws IOException
+	{
+		pdf.reset();
+		return write(pdf);
+	}
+
+	private long write(Pdf pdf) throws IOException
+	{
+		if (compressed) pdf.setCompression(Deflater.BEST_SPEED);
+		for (int i=0;i<pages;i++)
+		{
+			Stream stream = pdf.addPage();
+			for (int line=0;line<Content.LINES_PER_PAGE;line++) stream.addText("Item", Content.FONT_SIZE, Content.LINE_X, Content.FIRST_LINE_Y - line * Content.LINE_HEIGHT, Content.COLOR);
+		}
+		outputStream.count = 0;
+		pdf.getPDF(outputStream);
+		return outputStream.count;
+	}
+
+	/**
+	 * Throws everything away, only keeping track of how much was written
+	 */
+	private static class DiscardingOutputStream extends OutputStream
+	{
+		private long count;
+
+		@Override
+		public void write(int b) { count++; }
+
+		@Override
+		public void write(byte[] b, int off, int len) { count += len; }
+	}
+}
@@ -0,0 +1,105 @@
+package com.finalhack.pdroidf.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Text and image data shared by the benchmarks
+ */
+public class Content
+{
+	//The JPEG the example app uses, it is copied into the benchmark jar from the assets directory
+	private static final String JPG_RESOURCE = "/someFile.jpg";
+	public static final int JPG_WIDTH = 50;
+	public static final int JPG_HEIGHT = 50;
+
+	//Font size and color for all text
+	public static final int FONT_SIZE = 12;
+	public static final String COLOR = "000000";
+
+	//Positioned lines start at the top margin and go down by this much
+	public static final int LINES_PER_PAGE = 40;
+	public static final int LINE_HEIGHT = 16;
+	public static final int LINE_X = 72;
+	public static final int FIRST_LINE_Y = 720;
+
+	private static final String SENTENCE = "The quick brown fox (who is \\ very quick) jumps over the lazy dog, again and again. ";
+
+	/**
+	 * Paragraph lengths to benchmark with
+	 */
+	public enum Paragraph
+	{
+		//A single line that never needs to wrap
+		SHORT(1, 8),
+
+		//Wraps over many lines, about a page worth
+		LONG(40, 1);
+
+		private final String text;
+		private final int perPage;
+
+		private Paragraph(int sentences, int perPage)
+		{
+			StringBuilder ret = new StringBuilder();
+			for (int i=0;i<sentences;i++) ret.append(SENTENCE);
+			this.text = ret.toString().trim();
+			this.perPage = perPage;
+		}
+
+		/**
+		 * Simple getter for the paragraph's text
+		 * @return
+		 */
+		public String getText() { return text; }
+
+		/**
+		 * Simple getter for how many of these paragraphs are added to each page
+		 * @return
+		 */
+		public int getPerPage() { return perPage; }
+	}
+
+	/**
+	 * Load the JPEG and make count different versions of it.
+	 * Each version has a few extra bytes after the end of the image, so that every one is a distinct image in the PDF.
+	 * @param count
+	 * @return
+	 * @throws IOException
+	 */
+	public static byte[][] loadImages(int count) throws IOException
+	{
+		byte[] jpg = loadJpg();
+		byte[][] ret = new byte[count][];
+		for (int i=0;i<count;i++)
+		{
+			byte[] image = new byte[jpg.length + 4];
+			System.arraycopy(jpg, 0, image, 0, jpg.length);
+			image[jpg.length] = (byte)(i >>> 24);
+			image[jpg.length + 1] = (byte)(i >>> 16);
+			image[jpg.length + 2] = (byte)(i >>> 8);
+			image[jpg.length + 3] = (byte)i;
+			ret[i] = image;
+		}
+		return ret;
+	}
+
+	private static byte[] loadJpg() throws IOException
+	{
+		InputStream inputStream = Content.class.getResourceAsStream(JPG_RESOURCE);
+		if (inputStream == null) throw new IOException("Missing " + JPG_RESOURCE);
+		try
+		{
+			ByteArrayOutputStream ret = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int read;
+			while ((read = inputStream.read(buffer)) != -1) ret.write(buffer, 0, read);
+			return ret.toByteArray();
+		}
+		finally
+		{
+			inputStream.close();
+		}
+	}
+}
@@ -0,0 +1,58 @@
+package com.finalhack.pdroidf.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.finalhack.pdroidf.Pdf;
+import com.finalhack.pdroidf.Stream;
+
+/**
+ * Adding images, without writing the PDF out.
+ * Each operation builds a whole document with the given number of pages and distinct images on every page.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageBenchmark
+{
+	@Param({"1", "100", "10000"})
+	public int pages;
+
+	@Param({"0", "1", "50"})
+	public int images;
+
+	private byte[][] jpgs;
+
+	@Setup
+	public void setUp() throws IOException { jpgs = Content.loadImages(images); }
+
+	/**
+	 * addBmpImage(): every page draws the same set of images, so each one is only stored once
+	 */
+	@Benchmark
+	public Pdf addBmpImage()
+	{
+		Pdf pdf = new Pdf();
+		for (int i=0;i<pages;i++)
+		{
+			Stream stream = pdf.addPage();
+			for (int j=0;j<images;j++) stream.addBmpImage(Content.LINE_X + j, Content.FIRST_LINE_Y - j * Content.LINE_HEIGHT, Content.JPG_WIDTH, Content.JPG_HEIGHT, jpgs[j]);
+		}
+		return pdf;
+	}
+}
@@ -0,0 +1,79 @@
+package com.finalhack.pdroidf.benchmark;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.finalhack.pdroidf.Pdf;
+import com.finalhack.pdroidf.Table;
+
+/**
+ * Laying out tables, without writing the PDF out.
+ * Each operation builds a whole document holding a single table with the given number of rows, which are made as they are read.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TableBenchmark
+{
+	//Every this many rows, the description is long enough to wrap
+	private static final int WRAPPED_ROW_INTERVAL = 10;
+
+	@Param({"100", "10000"})
+	public int rows;
+
+	@Param({"true", "false"})
+	public boolean fixedWidths;
+
+	/**
+	 * Stream.addTable(): rows flowed onto as many pages as they need, with the header repeated on each
+	 */
+	@Benchmark
+	public Pdf addTable()
+	{
+		Pdf pdf = new Pdf();
+		Table table = new Table(3);
+		table.setHeader("Id", "Description", "Amount");
+		if (fixedWidths) table.setColumnWidths(60, 328, 80);
+		pdf.addPage().addTable(table, new Rows(rows));
+		return pdf;
+	}
+
+	/**
+	 * A simple inner class to make rows as they are read, so the rows themselves are never held in memory
+	 */
+	private static class Rows implements Iterator<String[]>
+	{
+		private int count;
+		private int row;
+
+		public Rows(int count) { this.count = count; }
+
+		@Override
+		public boolean hasNext() { return row < count; }
+
+		@Override
+		public String[] next()
+		{
+			row++;
+			String description = row % WRAPPED_ROW_INTERVAL == 0 ? Content.Paragraph.SHORT.getText() : "Item " + row;
+			return new String[] { Integer.toString(row), description, Integer.toString(row * 7) };
+		}
+
+		@Override
+		public void remove() { throw new UnsupportedOperationException(); }
+	}
+}
@@ -0,0 +1,68 @@
+package com.finalhack.pdroidf.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.finalhack.pdroidf.Pdf;
+import com.finalhack.pdroidf.Stream;
+
+/**
+ * Laying out text, without writing the PDF out.
+ * Each operation builds a whole document with the given number of pages.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TextBenchmark
+{
+	@Param({"1", "100", "10000"})
+	public int pages;
+
+	@Param({"SHORT", "LONG"})
+	public Content.Paragraph paragraph;
+
+	/**
+	 * addText(text, fontSize, x, y, color): a fixed number of lines placed on each page
+	 */
+	@Benchmark
+	public Pdf addText()
+	{
+		Pdf pdf = new Pdf();
+		String text = paragraph.getText();
+		for (int i=0;i<pages;i++)
+		{
+			Stream stream = pdf.addPage();
+			for (int line=0;line<Content.LINES_PER_PAGE;line++) stream.addText(text, Content.FONT_SIZE, Content.LINE_X, Content.FIRST_LINE_Y - line * Content.LINE_HEIGHT, Content.COLOR);
+		}
+		return pdf;
+	}
+
+	/**
+	 * addText(text, color, fontSize): paragraphs that are wrapped (and flowed onto new pages) automatically
+	 */
+	@Benchmark
+	public Pdf addTextWrapped()
+	{
+		Pdf pdf = new Pdf();
+		String text = paragraph.getText();
+		for (int i=0;i<pages;i++)
+		{
+			Stream stream = pdf.addPage();
+			for (int p=0;p<paragraph.getPerPage();p++) stream.addText(text, Content.COLOR, Content.FONT_SIZE);
+		}
+		return pdf;
+	}
+}
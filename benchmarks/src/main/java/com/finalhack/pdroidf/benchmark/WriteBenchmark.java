@@ -0,0 +1,89 @@
+package com.finalhack.pdroidf.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.finalhack.pdroidf.Pdf;
+import com.finalhack.pdroidf.Stream;
+
+/**
+ * Writing a PDF out (serializing every Stream, the page tree, resources and x-reference data).
+ * The document is laid out once, and each operation writes all of it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class WriteBenchmark
+{
+	@Param({"1", "100", "10000"})
+	public int pages;
+
+	@Param({"SHORT", "LONG"})
+	public Content.Paragraph paragraph;
+
+	@Param({"0", "1", "50"})
+	public int images;
+
+	private Pdf pdf;
+
+	@Setup
+	public void setUp() throws IOException
+	{
+		byte[][] jpgs = Content.loadImages(images);
+
+		pdf = new Pdf();
+		for (int i=0;i<pages;i++)
+		{
+			Stream stream = pdf.addPage();
+			for (int p=0;p<paragraph.getPerPage();p++) stream.addText(paragraph.getText(), Content.COLOR, Content.FONT_SIZE);
+			for (int j=0;j<images;j++) stream.addBmpImage(Content.LINE_X + j, Content.FIRST_LINE_Y - j * Content.LINE_HEIGHT, Content.JPG_WIDTH, Content.JPG_HEIGHT, jpgs[j]);
+		}
+	}
+
+	/**
+	 * getPDF(): the whole document as a byte[]
+	 */
+	@Benchmark
+	public byte[] getPDF() { return pdf.getPDF(); }
+
+	/**
+	 * getPDF(OutputStream): streaming the document out, so only serialization itself is measured
+	 */
+	@Benchmark
+	public long getPDFToOutputStream() throws IOException
+	{
+		CountingOutputStream outputStream = new CountingOutputStream();
+		pdf.getPDF(outputStream);
+		return outputStream.count;
+	}
+
+	/**
+	 * Throws everything away, only keeping track of how much was written
+	 */
+	private static class CountingOutputStream extends OutputStream
+	{
+		private long count;
+
+		@Override
+		public void write(int b) { count++; }
+
+		@Override
+		public void write(byte[] b, int off, int len) { count += len; }
+	}
+}
@@ -0,0 +1,19 @@
+package com.finalhack.pdroidf;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Opens assets (like JPG files) by name, from wherever a platform keeps them.
+ * On Android this is the AssetManager, on a plain JVM it could be the classpath or a directory.
+ */
+public interface AssetLoader
+{
+	/**
+	 * Open an asset for reading, the caller closes the returned stream
+	 * @param fileName
+	 * @return
+	 * @throws IOException
+	 */
+	InputStream open(String fileName) throws IOException;
+}
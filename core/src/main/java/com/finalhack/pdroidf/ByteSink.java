@@ -0,0 +1,193 @@
+package com.finalhack.pdroidf;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+/**
+ * This class represents an internal data structure.
+ * Someone using this code to output a PDF doesn't need to worry about this class.
+ *
+ * A growable byte[] that PDF data is appended to.
+ * Bytes are kept in a primitive array so that appending data never boxes a byte or copies data one byte at a time.
+ */
+public class ByteSink
+{
+	private static final int DEFAULT_CAPACITY = 256;
+
+	//Strings written to a sink are encoded as ISO-8859-1, characters outside of that range become this
+	private static final byte UNMAPPABLE = '?';
+
+	//The actual data, only the first 'size' bytes are in use
+	private byte[] buffer;
+	private int size;
+
+	/**
+	 * Create an empty sink with a small default capacity
+	 */
+	public ByteSink() { this(DEFAULT_CAPACITY); }
+
+	/**
+	 * Create an empty sink that can hold initialCapacity bytes before it has to grow
+	 * @param initialCapacity
+	 */
+	public ByteSink(int initialCapacity) { buffer = new byte[Math.max(initialCapacity, 1)]; }
+
+	/**
+	 * Simple getter for the number of bytes written so far
+	 * @return
+	 */
+	protected int size() { return size; }
+
+	/**
+	 * Simple getter for the backing array, only the first size() bytes of it are in use
+	 * @return
+	 */
+	protected byte[] getBuffer() { return buffer; }
+
+	/**
+	 * Forget everything that has been written, but keep the already grown buffer around for reuse
+	 */
+	protected void reset() { size = 0; }
+
+	/**
+	 * Forget everything that has been written, and let go of the grown buffer too
+	 */
+	protected void release()
+	{
+		buffer = new byte[DEFAULT_CAPACITY];
+		size = 0;
+	}
+
+	/**
+	 * Make sure at least 'extra' more bytes fit into the buffer
+	 * @param extra
+	 */
+	private void ensureCapacity(int extra)
+	{
+		int needed = size + extra;
+		if (needed < 0) throw new OutOfMemoryError("PDF data too large");
+		if (needed <= buffer.length) return;
+
+		//Grow by half again to keep the amortized cost of appending constant
+		int newCapacity = buffer.length + (buffer.length >> 1);
+		if (newCapacity < needed || newCapacity < 0) newCapacity = needed;
+		buffer = Arrays.copyOf(buffer, newCapacity);
+	}
+
+	/**
+	 * Throw away everything written after the first size bytes
+	 * @param size
+	 */
+	protected void truncate(int size)
+	{
+		if (size < this.size) this.size = size;
+	}
+
+	/**
+	 * Append a single byte
+	 * @param b
+	 */
+	protected void write(int b)
+	{
+		ensureCapacity(1);
+		buffer[size++] = (byte)b;
+	}
+
+	/**
+	 * Append an entire byte[]
+	 * @param bytes
+	 */
+	protected void write(byte[] bytes) { write(bytes, 0, bytes.length); }
+
+	/**
+	 * Append length bytes of an array, starting at offset
+	 * @param bytes
+	 * @param offset
+	 * @param length
+	 */
+	protected void write(byte[] bytes, int offset, int length)
+	{
+		ensureCapacity(length);
+		System.arraycopy(bytes, offset, buffer, size, length);
+		size += length;
+	}
+
+	/**
+	 * Append everything another sink holds
+	 * @param sink
+	 */
+	protected void write(ByteSink sink) { write(sink.buffer, 0, sink.size); }
+
+	/**
+	 * Append a String encoded as ISO-8859-1 without creating an intermediate byte[]
+	 * @param text
+	 */
+	protected void write(String text)
+	{
+		int length = text.length();
+		ensureCapacity(length);
+		for (int i=0;i<length;i++)
+		{
+			char c = text.charAt(i);
+			buffer[size++] = c > 0xFF ? UNMAPPABLE : (byte)c;
+		}
+	}
+
+	/**
+	 * Append length bytes of an array, starting at offset, compressed with deflater (zlib format, which is what /FlateDecode expects)
+	 * @param deflater
+	 * @param bytes
+	 * @param offset
+	 * @param length
+	 */
+	protected void writeDeflated(Deflater deflater, byte[] bytes, int offset, int length)
+	{
+		deflater.reset();
+		deflater.setInput(bytes, offset, length);
+		deflater.finish();
+		
+		//Deflate straight into the buffer, growing it whenever the compressed data doesn't fit yet
+		while (!deflater.finished())
+		{
+			ensureCapacity(Math.max(length / 4, DEFAULT_CAPACITY));
+			size += deflater.deflate(buffer, size, buffer.length - size);
+		}
+	}
+
+	/**
+	 * Copy the written bytes out to an OutputStream in one bulk write
+	 * @param outputStream
+	 * @throws IOException
+	 */
+	protected void writeTo(OutputStream outputStream) throws IOException { outputStream.write(buffer, 0, size); }
+
+	/**
+	 * Get an OutputStream view of this sink so that anything able to write to a stream can write into memory.
+	 * The returned OutputStream never throws an IOException.
+	 * @return
+	 */
+	protected OutputStream asOutputStream()
+	{
+		return new OutputStream()
+		{
+			@Override
+			public void write(int b) { ByteSink.this.write(b); }
+
+			@Override
+			public void write(byte[] bytes, int offset, int length) { ByteSink.this.write(bytes, offset, length); }
+		};
+	}
+
+	/**
+	 * Get the written bytes as an exactly sized byte[].
+	 * If the backing buffer happens to be exactly full it is handed back as-is, otherwise it is copied once in bulk.
+	 * @return
+	 */
+	protected byte[] toByteArray()
+	{
+		if (size == buffer.length) return buffer;
+		return Arrays.copyOf(buffer, size);
+	}
+}
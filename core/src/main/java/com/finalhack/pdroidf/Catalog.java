@@ -34,13 +34,10 @@ public class Catalog
 	public String toString()
 	{
 		StringBuilder ret = new StringBuilder();
-		ret.append(objectId + " 0 obj").append(NEW_LINE);
 		ret.append("<<").append(NEW_LINE);
 		ret.append("  /Type /Catalog").append(NEW_LINE);
 		ret.append("  /Pages ").append(pagesObjectId + " 0 R").append(NEW_LINE);
 		ret.append(">>").append(NEW_LINE);
-		ret.append("endobj").append(NEW_LINE);
-		ret.append(NEW_LINE);
 		
 		return ret.toString();
 	}
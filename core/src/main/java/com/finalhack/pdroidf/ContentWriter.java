@@ -0,0 +1,328 @@
+package com.finalhack.pdroidf;
+
+/**
+ * This class represents an internal data structure.
+ * Someone using this code to output a PDF doesn't need to worry about this class.
+ *
+ * Writes content stream operators (like BT, Tf, Tm, rg, Tj, m, l, f, cm) as ASCII straight into a ByteSink.
+ * Numbers are written digit by digit, and real numbers are written with a fixed precision (0.165 instead of 0.16470588235294117),
+ * so writing an operator doesn't create any Strings.
+ */
+public class ContentWriter
+{
+	//Real numbers are rounded to this many decimal places
+	private static final int REAL_DECIMALS = 3;
+	private static final int REAL_SCALE = 1000;
+
+	//Used to write the digits of a number from the right
+	private static final int MAX_DIGITS = 20;
+
+	private static final char SPACE = ' ';
+	private static final byte[] HEX_DIGITS = { '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E', 'F' };
+	private static final char NEW_LINE = '\n';
+
+	//Where everything is written
+	private ByteSink sink;
+
+	//Digits of a number are collected here in reverse
+	private byte[] digits = new byte[MAX_DIGITS];
+
+	/**
+	 * Construct a writer that writes into sink
+	 * @param sink
+	 */
+	public ContentWriter(ByteSink sink) { this.sink = sink; }
+
+	/**
+	 * Write an int operand followed by a space
+	 * @param value
+	 */
+	protected void writeInt(int value)
+	{
+		writeLong(value);
+		sink.write(SPACE);
+	}
+
+	/**
+	 * Write a real operand rounded to a fixed number of decimal places, followed by a space.
+	 * Trailing zeros are left off, so whole numbers are written like ints.
+	 * @param value
+	 */
+	protected void writeReal(double value)
+	{
+		long scaled = Math.round(value * REAL_SCALE);
+		if (scaled < 0)
+		{
+			sink.write('-');
+			scaled = -scaled;
+		}
+		writeLong(scaled / REAL_SCALE);
+
+		int fraction = (int)(scaled % REAL_SCALE);
+		if (fraction != 0)
+		{
+			//Drop trailing zeros
+			int decimals = REAL_DECIMALS;
+			while (fraction % 10 == 0)
+			{
+				fraction /= 10;
+				decimals--;
+			}
+			sink.write('.');
+			for (int divisor=pow10(decimals-1);divisor>0;divisor/=10) sink.write('0' + (fraction / divisor) % 10);
+		}
+		sink.write(SPACE);
+	}
+
+	/**
+	 * Write a name operand like /F1 followed by a space
+	 * @param name the name without its leading slash
+	 */
+	protected void writeName(String name)
+	{
+		sink.write('/');
+		sink.write(name);
+		sink.write(SPACE);
+	}
+
+	/**
+	 * Write an operator, which ends the line
+	 * @param operator
+	 */
+	protected void writeOperator(String operator)
+	{
+		sink.write(operator);
+		sink.write(NEW_LINE);
+	}
+
+	/**
+	 * BT: begin a text object
+	 */
+	protected void beginText() { writeOperator("BT"); }
+
+	/**
+	 * ET: end a text object
+	 */
+	protected void endText() { writeOperator("ET"); }
+
+	/**
+	 * Tf: select a font and size
+	 * @param fontName
+	 * @param fontSize
+	 */
+	protected void setFont(String fontName, int fontSize)
+	{
+		writeName(fontName);
+		writeInt(fontSize);
+		writeOperator("Tf");
+	}
+
+	/**
+	 * Tm: place text at x,y without scaling or rotating it
+	 * @param x
+	 * @param y
+	 */
+	protected void setTextPosition(int x, int y)
+	{
+		writeInt(1);
+		writeInt(0);
+		writeInt(0);
+		writeInt(1);
+		writeInt(x);
+		writeInt(y);
+		writeOperator("Tm");
+	}
+
+	/**
+	 * rg: set the fill color
+	 * @param red from 0 to 255
+	 * @param green from 0 to 255
+	 * @param blue from 0 to 255
+	 */
+	protected void setFillColor(int red, int green, int blue)
+	{
+		writeReal(red / 255.0);
+		writeReal(green / 255.0);
+		writeReal(blue / 255.0);
+		writeOperator("rg");
+	}
+
+	/**
+	 * Tj: show the characters of text from start up to (not including) end, encoded as WinAnsiEncoding straight from the String.
+	 * Text is written as a literal string like (Hello) with parentheses and backslashes escaped.
+	 * Text holding control characters is written as a hex string like <48656C6C6F> instead, since those don't survive in a literal string.
+	 * @param text
+	 * @param start
+	 * @param end
+	 * @param suffix a character to show after the text (like a hyphen), or 0 for none
+	 */
+	protected void showText(String text, int start, int end, char suffix)
+	{
+		int stringStart = sink.size();
+		sink.write('(');
+		boolean literal = true;
+		for (int i=start;i<end && literal;i++) literal = writeLiteralCode(WinAnsiEncoding.encode(text.charAt(i)));
+		if (literal && suffix != 0) literal = writeLiteralCode(WinAnsiEncoding.encode(suffix));
+		
+		if (!literal)
+		{
+			//Start over as a hex string, this is rare so text is only walked twice when it happens
+			sink.truncate(stringStart);
+			showHexText(text, start, end, suffix);
+			return;
+		}
+		
+		sink.write(')');
+		sink.write(SPACE);
+		writeOperator("Tj");
+	}
+	
+	//Write a single code into a literal string, returns false if it can't go in one
+	private boolean writeLiteralCode(int code)
+	{
+		if (code == WinAnsiEncoding.NONE) return true;
+		if (code < 0x20 || code == 0x7F) return false;
+		if (code == '(' || code == ')' || code == '\\') sink.write('\\');
+		sink.write(code);
+		return true;
+	}
+	
+	//Tj: show text as a hex string
+	private void showHexText(String text, int start, int end, char suffix)
+	{
+		sink.write('<');
+		for (int i=start;i<end;i++) writeHexCode(WinAnsiEncoding.encode(text.charAt(i)));
+		if (suffix != 0) writeHexCode(WinAnsiEncoding.encode(suffix));
+		sink.write('>');
+		sink.write(SPACE);
+		writeOperator("Tj");
+	}
+	
+	//Write a single byte code as 2 hex digits
+	private void writeHexCode(int code)
+	{
+		if (code == WinAnsiEncoding.NONE) return;
+		sink.write(HEX_DIGITS[code >> 4]);
+		sink.write(HEX_DIGITS[code & 0xF]);
+	}
+	
+	/**
+	 * Start showing a string of 2 byte glyph ids (for fonts with Identity-H encoding), written in hex like <0041 0042>
+	 */
+	protected void beginGlyphs() { sink.write('<'); }
+	
+	/**
+	 * Write a single 2 byte glyph id between beginGlyphs() and endGlyphs()
+	 * @param glyph
+	 */
+	protected void writeGlyph(int glyph)
+	{
+		for (int shift=12;shift>=0;shift-=4) sink.write(HEX_DIGITS[(glyph >> shift) & 0xF]);
+	}
+	
+	/**
+	 * Tj: finish showing a string of glyph ids
+	 */
+	protected void endGlyphs()
+	{
+		sink.write('>');
+		sink.write(SPACE);
+		writeOperator("Tj");
+	}
+
+	/**
+	 * m: begin a new path at x,y
+	 * @param x
+	 * @param y
+	 */
+	protected void moveTo(int x, int y)
+	{
+		writeInt(x);
+		writeInt(y);
+		writeOperator("m");
+	}
+
+	/**
+	 * l: add a straight line to x,y to the path
+	 * @param x
+	 * @param y
+	 */
+	protected void lineTo(int x, int y)
+	{
+		writeInt(x);
+		writeInt(y);
+		writeOperator("l");
+	}
+
+	/**
+	 * f: fill the path
+	 */
+	protected void fill() { writeOperator("f"); }
+
+	/**
+	 * q: save the graphics state
+	 */
+	protected void saveState() { writeOperator("q"); }
+
+	/**
+	 * Q: restore the graphics state
+	 */
+	protected void restoreState() { writeOperator("Q"); }
+
+	/**
+	 * cm: scale by width,height and move to x,y
+	 * @param width
+	 * @param height
+	 * @param x
+	 * @param y
+	 */
+	protected void transform(int width, int height, int x, int y)
+	{
+		writeInt(width);
+		writeInt(0);
+		writeInt(0);
+		writeInt(height);
+		writeInt(x);
+		writeInt(y);
+		writeOperator("cm");
+	}
+
+	/**
+	 * Do: draw an XObject like an image
+	 * @param name the name without its leading slash
+	 */
+	protected void drawXObject(String name)
+	{
+		writeName(name);
+		writeOperator("Do");
+	}
+
+	//Write the digits of a number (without a trailing space)
+	private void writeLong(long value)
+	{
+		if (value < 0)
+		{
+			sink.write('-');
+
+			//Long.MIN_VALUE can't be negated, but nothing in a content stream gets anywhere near it
+			value = -value;
+		}
+
+		int count = 0;
+		do
+		{
+			digits[count++] = (byte)('0' + (value % 10));
+			value /= 10;
+		}
+		while (value > 0);
+
+		while (count > 0) sink.write(digits[--count]);
+	}
+
+	private static int pow10(int exponent)
+	{
+		int ret = 1;
+		for (int i=0;i<exponent;i++) ret *= 10;
+		return ret;
+	}
+}
@@ -0,0 +1,109 @@
+package com.finalhack.pdroidf;
+
+import static com.finalhack.pdroidf.Pdf.NEW_LINE;
+
+import java.io.IOException;
+
+/**
+ * A font text can be written in.
+ * This is the standard (not embedded) Times-Roman font, which only has the characters of WinAnsiEncoding.
+ * Use Pdf.addFont() to add a TrueType font with more characters, and Stream.setFont() to use it.
+ */
+public class Font
+{
+	//Most classes in this PDF library need an objectId
+	//The objectId must be unique across all elements in the PDF
+	private int objectId;  
+	private static final String DEFAULT_FONT = "Times-Roman";
+	
+	//The name content streams use to select this font, like F1
+	private String name;
+	
+	//Glyph widths, for measuring text
+	private FontMetrics metrics = FontMetrics.TIMES_ROMAN;
+	
+	/**
+	 * Simple constructor
+	 * @param objectId
+	 * @param name
+	 */
+	public Font(int objectId, String name)
+	{
+		this.objectId = objectId;
+		this.name = name;
+	}
+	
+	/**
+	 * Simple getter for unique objectId
+	 * @return
+	 */
+	protected int getObjectId() { return this.objectId; }
+	
+	/**
+	 * Simple getter for the name content streams use to select this font
+	 * @return
+	 */
+	protected String getName() { return this.name; }
+	
+	/**
+	 * Get the width of a single character
+	 * @param c
+	 * @return the width in 1/1000ths of the font size
+	 */
+	protected int getWidth(char c) { return metrics.getWidth(c); }
+	
+	/**
+	 * Get the width of the characters of text from start up to (not including) end
+	 * @param text
+	 * @param start
+	 * @param end
+	 * @return the width in 1/1000ths of the font size
+	 */
+	protected int getWidth(String text, int start, int end)
+	{
+		int ret = 0;
+		for (int i=start;i<end;i++) ret += getWidth(text.charAt(i));
+		return ret;
+	}
+	
+	/**
+	 * Show the characters of text from start up to (not including) end in this font
+	 * @param content
+	 * @param text
+	 * @param start
+	 * @param end
+	 * @param suffix a character to show after the text (like a hyphen), or 0 for none
+	 */
+	protected void showText(ContentWriter content, String text, int start, int end, char suffix)
+	{
+		content.showText(text, start, end, suffix);
+	}
+	
+	/**
+	 * Write out this font, adding x-reference data for it
+	 * @param writer
+	 * @throws IOException
+	 */
+	protected void writeTo(PdfWriter writer) throws IOException
+	{
+		writer.writeObject(objectId, toString());
+	}
+	
+	/**
+	 * Output this object in PDF format
+	 */
+	@Override
+	public String toString()
+	{
+		StringBuilder ret = new StringBuilder();
+		ret.append("<<").append(NEW_LINE);
+		ret.append("  /Type /Font").append(NEW_LINE);
+		ret.append("  /Subtype /Type1").append(NEW_LINE);
+		ret.append("  /Name /" + name).append(NEW_LINE);
+		ret.append("  /BaseFont /" + DEFAULT_FONT).append(NEW_LINE);
+		ret.append("  /Encoding /WinAnsiEncoding").append(NEW_LINE);
+		ret.append(">>").append(NEW_LINE);
+		
+		return ret.toString();
+	}
+}
\ No newline at end of file
@@ -0,0 +1,73 @@
+package com.finalhack.pdroidf;
+
+/**
+ * This class represents an internal data structure.
+ * Someone using this code to output a PDF doesn't need to worry about this class.
+ *
+ * Glyph widths of a font, used to measure text for line wrapping and centering.
+ * Widths are in 1/1000ths of the font size (the units of an AFM file), and are looked up by WinAnsiEncoding character code.
+ * Characters are measured as they are encoded, so ones that aren't in WinAnsiEncoding are measured as a '?'.
+ */
+public class FontMetrics
+{
+	//Widths from the standard 14 font AFM metrics, indexed by WinAnsiEncoding character code (0 for codes without a glyph)
+	private static final short[] TIMES_ROMAN_WIDTHS =
+	{
+		//0x00
+		0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+		0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+		//0x20
+		250, 333, 408, 500, 500, 833, 778, 180, 333, 333, 500, 564, 250, 333, 250, 278,
+		500, 500, 500, 500, 500, 500, 500, 500, 500, 500, 278, 278, 564, 564, 564, 444,
+		//0x40
+		921, 722, 667, 667, 722, 611, 556, 722, 722, 333, 389, 722, 611, 889, 722, 722,
+		556, 722, 667, 556, 611, 722, 722, 944, 722, 722, 611, 333, 278, 333, 469, 500,
+		//0x60
+		333, 444, 500, 444, 500, 444, 333, 500, 500, 278, 278, 500, 278, 778, 500, 500,
+		500, 500, 333, 389, 278, 500, 500, 722, 500, 500, 444, 480, 200, 480, 541, 0,
+		//0x80
+		500, 0, 333, 500, 444, 1000, 500, 500, 333, 1000, 556, 333, 889, 0, 611, 0,
+		0, 333, 333, 444, 444, 350, 500, 1000, 333, 980, 389, 333, 722, 0, 444, 722,
+		//0xA0
+		250, 333, 500, 500, 500, 500, 200, 500, 333, 760, 276, 500, 564, 333, 760, 333,
+		400, 564, 300, 300, 333, 500, 453, 250, 333, 300, 310, 500, 750, 750, 750, 444,
+		//0xC0
+		722, 722, 722, 722, 722, 722, 889, 667, 611, 611, 611, 611, 333, 333, 333, 333,
+		722, 722, 722, 722, 722, 722, 722, 564, 722, 722, 722, 722, 722, 722, 556, 500,
+		//0xE0
+		444, 444, 444, 444, 444, 444, 667, 444, 444, 444, 444, 444, 278, 278, 278, 278,
+		500, 500, 500, 500, 500, 500, 500, 564, 500, 500, 500, 500, 500, 500, 500, 500
+	};
+
+	/**
+	 * Times-Roman, the font used for all text
+	 */
+	public static final FontMetrics TIMES_ROMAN = new FontMetrics(TIMES_ROMAN_WIDTHS);
+
+	private short[] widths;
+
+	/**
+	 * Construct metrics from a table of widths indexed by character code
+	 * @param widths
+	 */
+	public FontMetrics(short[] widths) { this.widths = widths; }
+
+	/**
+	 * Get the width of a single character
+	 * @param c
+	 * @return the width in 1/1000ths of the font size
+	 */
+	protected int getWidth(char c)
+	{
+		int code = WinAnsiEncoding.encode(c);
+		return code == WinAnsiEncoding.NONE ? 0 : widths[code];
+	}
+
+	/**
+	 * Convert a width in 1/1000ths of the font size to points
+	 * @param width
+	 * @param fontSize
+	 * @return
+	 */
+	protected static double toPoints(int width, int fontSize) { return width / 1000.0 * fontSize; }
+}
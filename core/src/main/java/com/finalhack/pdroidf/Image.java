@@ -0,0 +1,256 @@
+package com.finalhack.pdroidf;
+
+import static com.finalhack.pdroidf.Pdf.NEW_LINE;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * This class represents an internal data structure.
+ * Someone using this code to output a PDF doesn't need to worry about this class.
+ *
+ * An image XObject. It is written out once, and any number of pages can draw it by name.
+ * JPEG data is either held in memory, or read from an ImageSource while the PDF is written out.
+ * Lossless images (PNG data or raw pixels) use /FlateDecode, and can have a soft mask image for their alpha.
+ */
+public class Image
+{
+	//Most classes in this PDF library need an objectId
+	//The objectId must be unique across all elements in the PDF
+	private int objectId;
+
+	//The name pages use to draw this image, like /Im1
+	private String name;
+
+	//Decoders for JPEG and lossless images
+	private static final int JPEG_BITS_PER_COMPONENT = 8;
+	private static final String JPEG_DECODER = "/DCTDecode";
+	private static final String FLATE_DECODER = "/FlateDecode";
+
+	//The actual image data (or where to read it from) and what it holds
+	private byte[] bytes;
+	private ImageSource source;
+	private int width;
+	private int height;
+	private int components;
+	private int bitsPerComponent;
+	private String filter;
+	private boolean inverted;
+
+	//Lossless images: raw pixels are compressed when they are written out, PNG data is already compressed and may need a PNG predictor
+	private boolean raw;
+	private String decodeParms;
+
+	//Indexed images have a palette of RGB triplets
+	private byte[] palette;
+
+	//Transparency, either a range of colors that aren't drawn (/Mask) or a gray image holding the alpha of each pixel (/SMask)
+	private String colorKeyMask;
+	private Image softMask;
+
+	//The length of a source when it was added, so a source that changes since can't break the PDF
+	//When it isn't known up front, it is written out after the data as an object of its own
+	private long length;
+	private int lengthObjectId;
+
+	/**
+	 * Construct an image XObject from JPEG data
+	 * @param objectId
+	 * @param name
+	 * @param bytes
+	 * @param width
+	 * @param height
+	 * @param components
+	 */
+	public Image(int objectId, String name, byte[] bytes, int width, int height, int components)
+	{
+		this(objectId, name, bytes, width, height, components, JPEG_BITS_PER_COMPONENT, JPEG_DECODER);
+	}
+
+	/**
+	 * Construct a lossless image XObject
+	 * @param objectId
+	 * @param name
+	 * @param bytes
+	 * @param width
+	 * @param height
+	 * @param components
+	 * @param bitsPerComponent
+	 * @param raw true for uncompressed pixels, false for data that is already zlib compressed
+	 */
+	public Image(int objectId, String name, byte[] bytes, int width, int height, int components, int bitsPerComponent, boolean raw)
+	{
+		this(objectId, name, bytes, width, height, components, bitsPerComponent, FLATE_DECODER);
+		this.raw = raw;
+	}
+
+	private Image(int objectId, String name, byte[] bytes, int width, int height, int components, int bitsPerComponent, String filter)
+	{
+		this.objectId = objectId;
+		this.name = name;
+		this.bytes = bytes;
+		this.width = width;
+		this.height = height;
+		this.components = components;
+		this.bitsPerComponent = bitsPerComponent;
+		this.filter = filter;
+	}
+
+	/**
+	 * Construct an image XObject from a JPEG that is read while the PDF is written out
+	 * @param objectId
+	 * @param name
+	 * @param source
+	 * @param jpeg the JPEG's header info
+	 * @param lengthObjectId used if the length of source isn't known up front
+	 */
+	public Image(int objectId, String name, ImageSource source, Jpeg jpeg, int lengthObjectId)
+	{
+		this(objectId, name, null, jpeg.getWidth(), jpeg.getHeight(), jpeg.getComponents());
+		this.source = source;
+		this.length = source.getLength();
+		this.inverted = jpeg.isInverted();
+		this.lengthObjectId = lengthObjectId;
+	}
+
+	/**
+	 * Simple setter for whether the color components are stored inverted (CMYK JPEGs written by Adobe software)
+	 * @param inverted
+	 */
+	protected void setInverted(boolean inverted) { this.inverted = inverted; }
+
+	/**
+	 * Simple setter for the decode parameters of the data, like a PNG predictor
+	 * @param decodeParms a PDF dictionary
+	 */
+	protected void setDecodeParms(String decodeParms) { this.decodeParms = decodeParms; }
+
+	/**
+	 * Simple setter for the palette of an indexed image
+	 * @param palette RGB triplets
+	 */
+	protected void setPalette(byte[] palette) { this.palette = palette; }
+
+	/**
+	 * Simple setter for a color key mask: a min and max value for each component, pixels in that range aren't drawn
+	 * @param colorKeyMask
+	 */
+	protected void setColorKeyMask(int[] colorKeyMask)
+	{
+		StringBuilder ret = new StringBuilder("[");
+		for (int value : colorKeyMask) ret.append(' ').append(value);
+		this.colorKeyMask = ret.append(" ]").toString();
+	}
+
+	/**
+	 * Simple setter for a soft mask: a gray image of the same size, holding the alpha of each pixel
+	 * @param softMask
+	 */
+	protected void setSoftMask(Image softMask) { this.softMask = softMask; }
+
+	/**
+	 * Simple getter for unique objectId
+	 * @return
+	 */
+	protected int getObjectId() { return objectId; }
+
+	/**
+	 * Simple getter for the name pages use to draw this image
+	 * @return
+	 */
+	protected String getName() { return name; }
+
+	/**
+	 * Simple getter for the JPEG data
+	 * @return the data, or null if it is read from a source
+	 */
+	protected byte[] getBytes() { return bytes; }
+
+	//The PDF color space matching the number of color components
+	private String getColorSpace()
+	{
+		if (palette != null)
+		{
+			StringBuilder ret = new StringBuilder("[ /Indexed /DeviceRGB ").append(palette.length / 3 - 1).append(" <");
+			for (byte color : palette) ret.append(Character.forDigit((color >> 4) & 0xF, 16)).append(Character.forDigit(color & 0xF, 16));
+			return ret.append("> ]").toString();
+		}
+		if (components == 1) return "/DeviceGray";
+		if (components == 4) return "/DeviceCMYK";
+		return "/DeviceRGB";
+	}
+
+	/**
+	 * Output the actual object (and its soft mask) in PDF format.
+	 * JPEG and PNG data is written as-is, it is never compressed again.
+	 * @param writer
+	 * @throws IOException
+	 */
+	protected void writeTo(PdfWriter writer) throws IOException
+	{
+		if (softMask != null) softMask.writeTo(writer);
+
+		if (raw)
+		{
+			ByteSink data = writer.compress(bytes, 0, bytes.length);
+			writer.writeStream(objectId, getDictionary(Integer.toString(data.size())), data);
+			written(writer, data.size());
+			return;
+		}
+		if (source == null)
+		{
+			writer.writeStream(objectId, getDictionary(Integer.toString(bytes.length)), bytes, 0, bytes.length);
+			written(writer, bytes.length);
+			return;
+		}
+
+		InputStream inputStream = source.open();
+		try
+		{
+			if (length >= 0)
+			{
+				long copied = writer.writeStream(objectId, getDictionary(Long.toString(length)), inputStream, length);
+				if (copied != length || inputStream.read() >= 0) throw new IOException("Image " + source + " changed after it was added, expected " + length + " bytes");
+				written(writer, copied);
+			}
+			else
+			{
+				long copied = writer.writeStream(objectId, getDictionary(lengthObjectId + " 0 R"), inputStream, Long.MAX_VALUE);
+				writer.writeObject(lengthObjectId, copied + NEW_LINE);
+				written(writer, copied);
+			}
+		}
+		finally
+		{
+			inputStream.close();
+		}
+	}
+
+	//Tell the writer's metrics, if there are any, how much image data was written
+	private void written(PdfWriter writer, long bytes)
+	{
+		PdfMetrics metrics = writer.getMetrics();
+		if (metrics != null) metrics.imageWritten(objectId, bytes);
+	}
+
+	//Image dictionary
+	private String getDictionary(String length)
+	{
+		StringBuilder ret = new StringBuilder();
+		ret.append("<<").append(NEW_LINE);
+		ret.append("  /Type /XObject").append(NEW_LINE);
+		ret.append("  /Subtype /Image").append(NEW_LINE);
+		ret.append("  /Width " + width).append(NEW_LINE);
+		ret.append("  /Height " + height).append(NEW_LINE);
+		ret.append("  /BitsPerComponent " + bitsPerComponent).append(NEW_LINE);
+		ret.append("  /ColorSpace " + getColorSpace()).append(NEW_LINE);
+		if (inverted) ret.append("  /Decode [ 1 0 1 0 1 0 1 0 ]").append(NEW_LINE);
+		if (colorKeyMask != null) ret.append("  /Mask " + colorKeyMask).append(NEW_LINE);
+		if (softMask != null) ret.append("  /SMask " + softMask.getObjectId() + " 0 R").append(NEW_LINE);
+		ret.append("  /Filter " + filter).append(NEW_LINE);
+		if (decodeParms != null) ret.append("  /DecodeParms " + decodeParms).append(NEW_LINE);
+		ret.append("  /Length " + length).append(NEW_LINE);
+		ret.append(">>").append(NEW_LINE);
+		return ret.toString();
+	}
+}
@@ -0,0 +1,24 @@
+package com.finalhack.pdroidf;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decodes, scales and encodes JPEG images, for shrinking images that have far more pixels than their size on the page needs.
+ * Decoding images depends on the platform, so use the codec for yours (like BitmapCodec on Android or ImageIOCodec on a plain JVM)
+ * with Pdf.setImageDownsampling().
+ */
+public interface ImageCodec
+{
+	/**
+	 * Scale a JPEG down to width x height pixels and encode it as a JPEG again
+	 * @param jpeg the JPEG data, which the caller closes
+	 * @param jpegWidth the width of the JPEG in pixels
+	 * @param jpegHeight the height of the JPEG in pixels
+	 * @param width
+	 * @param height
+	 * @return the scaled JPEG data
+	 * @throws IOException if the JPEG can't be decoded (like a CMYK JPEG on some platforms), the image is then used as it is
+	 */
+	byte[] downsample(InputStream jpeg, int jpegWidth, int jpegHeight, int width, int height) throws IOException;
+}
@@ -0,0 +1,104 @@
+package com.finalhack.pdroidf;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Where the data of an image comes from, like a file or an asset.
+ * Only a JPEG's header is read when it is first added to a page, the rest is copied straight into the PDF when it is written out
+ * (unless it is downsampled, see Pdf.setImageDownsampling()).
+ * That way image data never has to sit in memory, but the source must still be there when the PDF is written out.
+ * To read images from anywhere else, override open() (and getLength() if the length is known up front).
+ * Sources that are equal (like two sources for the same file) are only written out once per PDF.
+ */
+public abstract class ImageSource
+{
+	/**
+	 * Open the image data from the start.
+	 * This is called once to read the header when the source is first added, and once more when the PDF is written out.
+	 * A downsampled image is read once per size it is placed at instead.
+	 * @return a stream which the caller closes
+	 * @throws IOException
+	 */
+	public abstract InputStream open() throws IOException;
+
+	/**
+	 * Get the length of the image data, if it is known without reading it
+	 * @return the length in bytes, or -1 if it isn't known
+	 */
+	public long getLength() { return -1; }
+
+	/**
+	 * A source reading an image file
+	 * @param file
+	 * @return
+	 */
+	public static ImageSource fromFile(File file) { return new FileSource(file); }
+
+	/**
+	 * A source reading an image through an AssetLoader (like an Android asset)
+	 * @param assetLoader
+	 * @param fileName
+	 * @return
+	 */
+	public static ImageSource fromAsset(AssetLoader assetLoader, String fileName) { return new AssetSource(assetLoader, fileName); }
+
+	/**
+	 * A simple inner class for image files
+	 */
+	private static class FileSource extends ImageSource
+	{
+		private File file;
+
+		public FileSource(File file) { this.file = file; }
+
+		@Override
+		public InputStream open() throws IOException { return new FileInputStream(file); }
+
+		@Override
+		public long getLength() { return file.length(); }
+
+		@Override
+		public int hashCode() { return file.hashCode(); }
+
+		@Override
+		public boolean equals(Object object) { return object instanceof FileSource && file.equals(((FileSource)object).file); }
+
+		@Override
+		public String toString() { return file.toString(); }
+	}
+
+	/**
+	 * A simple inner class for images read through an AssetLoader
+	 */
+	private static class AssetSource extends ImageSource
+	{
+		private AssetLoader assetLoader;
+		private String fileName;
+
+		public AssetSource(AssetLoader assetLoader, String fileName)
+		{
+			this.assetLoader = assetLoader;
+			this.fileName = fileName;
+		}
+
+		@Override
+		public InputStream open() throws IOException { return assetLoader.open(fileName); }
+
+		@Override
+		public int hashCode() { return fileName.hashCode(); }
+
+		@Override
+		public boolean equals(Object object)
+		{
+			if (!(object instanceof AssetSource)) return false;
+			AssetSource source = (AssetSource)object;
+			return assetLoader.equals(source.assetLoader) && fileName.equals(source.fileName);
+		}
+
+		@Override
+		public String toString() { return fileName; }
+	}
+}
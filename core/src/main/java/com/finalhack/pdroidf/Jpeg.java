@@ -0,0 +1,157 @@
+package com.finalhack.pdroidf;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * This class represents an internal data structure.
+ * Someone using this code to output a PDF doesn't need to worry about this class.
+ *
+ * Reads what a PDF needs to know about a JPEG (size and color components) from its SOF header,
+ * without decoding any of the actual image data. Only the marker segments before the header are read.
+ */
+public class Jpeg
+{
+	//JPEG markers
+	private static final int MARKER = 0xFF;
+	private static final int SOI = 0xD8;
+	private static final int EOI = 0xD9;
+	private static final int SOS = 0xDA;
+	private static final int TEM = 0x01;
+	private static final int RST0 = 0xD0;
+	private static final int RST7 = 0xD7;
+	private static final int APP14 = 0xEE;
+
+	//An APP14 segment starting with this is written by Adobe software, which stores CMYK inverted
+	private static final byte[] ADOBE = { 'A', 'd', 'o', 'b', 'e' };
+
+	//Header info
+	private int width;
+	private int height;
+	private int components;
+	private boolean inverted;
+
+	private Jpeg(int width, int height, int components, boolean inverted)
+	{
+		this.width = width;
+		this.height = height;
+		this.components = components;
+		this.inverted = inverted;
+	}
+
+	/**
+	 * Simple getter for the width in pixels
+	 * @return
+	 */
+	protected int getWidth() { return width; }
+
+	/**
+	 * Simple getter for the height in pixels
+	 * @return
+	 */
+	protected int getHeight() { return height; }
+
+	/**
+	 * Simple getter for the number of color components (1 for gray, 3 for RGB, 4 for CMYK)
+	 * @return
+	 */
+	protected int getComponents() { return components; }
+
+	/**
+	 * Check if the color components are stored inverted (CMYK JPEGs written by Adobe software)
+	 * @return
+	 */
+	protected boolean isInverted() { return inverted; }
+
+	/**
+	 * Read the header info of JPEG data
+	 * @param bytes
+	 * @return the header info, or null if the data doesn't look like a JPEG
+	 */
+	protected static Jpeg readHeader(byte[] bytes)
+	{
+		//Reading from memory never throws
+		try { return readHeader(new ByteArrayInputStream(bytes)); } catch (IOException e) { return null; }
+	}
+
+	/**
+	 * Read the header info of JPEG data, reading no further than the header
+	 * @param inputStream
+	 * @return the header info, or null if the data doesn't look like a JPEG
+	 * @throws IOException
+	 */
+	protected static Jpeg readHeader(InputStream inputStream) throws IOException
+	{
+		if (inputStream.read() != MARKER || inputStream.read() != SOI) return null;
+
+		//Walk the marker segments until a start of frame segment shows up
+		boolean adobe = false;
+		while (true)
+		{
+			if (inputStream.read() != MARKER) return null;
+			int marker = inputStream.read();
+
+			//Fill bytes
+			while (marker == MARKER) marker = inputStream.read();
+			if (marker < 0) return null;
+
+			//Markers without a length
+			if (marker == TEM || (marker >= RST0 && marker <= RST7)) continue;
+			if (marker == SOS || marker == EOI) return null;
+
+			int segmentLength = readShort(inputStream) - 2;
+			if (segmentLength < 0) return null;
+			if (isStartOfFrame(marker))
+			{
+				//Precision, height, width, components
+				if (segmentLength < 6 || inputStream.read() < 0) return null;
+				int height = readShort(inputStream);
+				int width = readShort(inputStream);
+				int components = inputStream.read();
+				if (height <= 0 || width <= 0 || components <= 0) return null;
+				return new Jpeg(width, height, components, adobe && components == 4);
+			}
+
+			if (marker == APP14 && segmentLength >= ADOBE.length)
+			{
+				adobe = true;
+				for (int i=0;i<ADOBE.length;i++) if (inputStream.read() != ADOBE[i]) adobe = false;
+				segmentLength -= ADOBE.length;
+			}
+			if (!skip(inputStream, segmentLength)) return null;
+		}
+	}
+
+	//A big endian 2 byte number, or -1 at the end of the data
+	private static int readShort(InputStream inputStream) throws IOException
+	{
+		int high = inputStream.read();
+		int low = inputStream.read();
+		if (high < 0 || low < 0) return -1;
+		return (high << 8) | low;
+	}
+
+	//Skip count bytes, false if the data ends first
+	private static boolean skip(InputStream inputStream, long count) throws IOException
+	{
+		while (count > 0)
+		{
+			long skipped = inputStream.skip(count);
+			if (skipped <= 0)
+			{
+				//skip() may not move forward without meaning the end of the data
+				if (inputStream.read() < 0) return false;
+				skipped = 1;
+			}
+			count -= skipped;
+		}
+		return true;
+	}
+
+	//SOF0 to SOF15, except for DHT (C4), JPG (C8) and DAC (CC) which share the range
+	private static boolean isStartOfFrame(int marker)
+	{
+		return marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+	}
+}
@@ -0,0 +1,140 @@
+package com.finalhack.pdroidf;
+
+/**
+ * This class represents an internal data structure.
+ * Someone using this code to output a PDF doesn't need to worry about this class.
+ *
+ * Finds where text wraps into lines of a given width, one line at a time in a single pass over the text.
+ * Lines wrap at the last space that fits, at a newline, or in the middle of a word that doesn't fit on a line by itself (adding a hyphen).
+ * Spaces at the start and end of a line are left out. Text with nothing in it is still a single, empty line.
+ * It can be reset and used again for any number of texts.
+ */
+public class LineBreaker
+{
+	//Used to split words that don't fit on a line
+	protected static final char HYPHEN = '-';
+
+	//The text being broken into lines, measured in 1/1000ths of the font size
+	private Font font;
+	private String text;
+	private int maxWidth;
+	private int hyphenWidth;
+
+	//Where the next line starts, and if any line has been found yet
+	private int next;
+	private boolean started;
+
+	//The last line found
+	private int start;
+	private int end;
+	private boolean hyphenate;
+
+	/**
+	 * Start breaking text into lines
+	 * @param font
+	 * @param text
+	 * @param maxWidth the width of a line in 1/1000ths of the font size
+	 */
+	protected void reset(Font font, String text, int maxWidth)
+	{
+		this.font = font;
+		this.text = text;
+		this.maxWidth = maxWidth;
+		this.hyphenWidth = font.getWidth(HYPHEN);
+		next = 0;
+		started = false;
+	}
+
+	/**
+	 * Find the next line
+	 * @return false if the text has no more lines
+	 */
+	protected boolean nextLine()
+	{
+		int length = text.length();
+		if (started && next >= length) return false;
+		started = true;
+
+		//Remove spaces that precede a line
+		int lineStart = next;
+		while (lineStart < length && text.charAt(lineStart) == ' ') lineStart++;
+
+		int lineEnd = lineStart;
+		int width = 0;
+		int lastSpace = -1;
+		hyphenate = false;
+		while (true)
+		{
+			if (lineEnd == length)
+			{
+				next = length;
+				break;
+			}
+
+			char c = text.charAt(lineEnd);
+			if (c == '\n')
+			{
+				next = lineEnd + 1;
+				break;
+			}
+
+			int charWidth = font.getWidth(c);
+			if (width + charWidth > maxWidth && lineEnd > lineStart)
+			{
+				if (c == ' ')
+				{
+					//Wrap at this space, it doesn't need to fit since spaces at the end of a line can't be seen
+				}
+				else if (lastSpace > lineStart)
+				{
+					//Wrap at the last space
+					lineEnd = lastSpace;
+				}
+				else
+				{
+					//The word doesn't fit on a line by itself, so split it, making room for a '-' if it splits letters or digits
+					while (lineEnd > lineStart + 1 && splitsWord(lineEnd) && width + hyphenWidth > maxWidth) width -= font.getWidth(text.charAt(--lineEnd));
+					hyphenate = splitsWord(lineEnd);
+				}
+				next = lineEnd;
+				break;
+			}
+
+			if (c == ' ') lastSpace = lineEnd;
+			width += charWidth;
+			lineEnd++;
+		}
+
+		//Spaces at the end of a line can't be seen
+		while (lineEnd > lineStart && text.charAt(lineEnd - 1) == ' ') lineEnd--;
+
+		start = lineStart;
+		end = lineEnd;
+		return true;
+	}
+
+	/**
+	 * Whether ending a line before this index splits a word, which needs a hyphen
+	 * @param index
+	 * @return
+	 */
+	private boolean splitsWord(int index) { return Character.isLetterOrDigit(text.charAt(index - 1)) && Character.isLetterOrDigit(text.charAt(index)); }
+
+	/**
+	 * Simple getter for where the last line found starts in the text
+	 * @return
+	 */
+	protected int getStart() { return start; }
+
+	/**
+	 * Simple getter for where the last line found ends in the text (not including the character there)
+	 * @return
+	 */
+	protected int getEnd() { return end; }
+
+	/**
+	 * Simple getter for whether the last line found splits a word, and needs a hyphen at its end
+	 * @return
+	 */
+	protected boolean isHyphenated() { return hyphenate; }
+}
@@ -17,19 +17,38 @@ public class Page
 	//References to parent/child PDF objects
 	private int parentObjectId;
 	private Stream stream;
-	private Font font;
+	
+	//All pages share one resource dictionary
+	private int resourcesObjectId;
 	
 	/**
 	 * Construct self and child objects based on unique objectIds
 	 * @param currentObjectId
 	 * @param pages
+	 * @param width
+	 * @param height
 	 */
-	public Page(AtomicInteger currentObjectId, Pages pages)
+	public Page(AtomicInteger currentObjectId, Pages pages, int width, int height)
 	{
 		this.objectId = currentObjectId.getAndAdd(1);
-		stream = new Stream(currentObjectId, pages);
-		font = new Font(currentObjectId.getAndAdd(1));
+		stream = new Stream(currentObjectId, pages, width, height);
 		this.parentObjectId = pages.getObjectId();
+		this.resourcesObjectId = pages.getResources().getObjectId();
+	}
+	
+	/**
+	 * Start over as a new, empty page with new objectIds, keeping the memory its stream has grown
+	 * @param currentObjectId
+	 * @param pages
+	 * @param width
+	 * @param height
+	 */
+	protected void reuse(AtomicInteger currentObjectId, Pages pages, int width, int height)
+	{
+		this.objectId = currentObjectId.getAndAdd(1);
+		stream.reuse(width, height);
+		this.parentObjectId = pages.getObjectId();
+		this.resourcesObjectId = pages.getResources().getObjectId();
 	}
 	
 	/**
@@ -39,10 +58,10 @@ public class Page
 	protected Stream getStream() { return this.stream; }
 	
 	/**
-	 * Simple getter for child Font
-	 * @return
+	 * Simple setter for the page tree node this page hangs off of
+	 * @param parentObjectId
 	 */
-	protected Font getFont() { return this.font; }
+	protected void setParentObjectId(int parentObjectId) { this.parentObjectId = parentObjectId; }
 	
 	/**
 	 * Simple getter for unique objectId
@@ -58,20 +77,13 @@ public class Page
 	public String toString()
 	{
 		StringBuilder ret = new StringBuilder();
-		ret.append("" + objectId + " 0 obj").append(NEW_LINE);
 		ret.append("<<").append(NEW_LINE);
 		ret.append("  /Type /Page").append(NEW_LINE);
 		ret.append("  /Parent " + parentObjectId + " 0 R").append(NEW_LINE);
-		ret.append("  /MediaBox [ 0 0 " + com.finalhack.pdroidf.Pages.PAGE_WIDTH + " " + com.finalhack.pdroidf.Pages.PAGE_HEIGHT + " ]").append(NEW_LINE);
+		ret.append("  /MediaBox [ 0 0 " + stream.getWidth() + " " + stream.getHeight() + " ]").append(NEW_LINE);
 		ret.append("  /Contents " + stream.getObjectId() + " 0 R").append(NEW_LINE);
-		ret.append("  /Resources <<").append(NEW_LINE);
-		ret.append("    /Font <<").append(NEW_LINE);
-		ret.append("      /F1 " + (font.getObjectId()) + " 0 R").append(NEW_LINE);
-		ret.append("    >>").append(NEW_LINE);
-		ret.append("  >>").append(NEW_LINE);
+		ret.append("  /Resources " + resourcesObjectId + " 0 R").append(NEW_LINE);
 		ret.append(">>").append(NEW_LINE);
-		ret.append("endobj").append(NEW_LINE);
-		ret.append(NEW_LINE);
 		
 		return ret.toString();
 	}
@@ -0,0 +1,407 @@
+package com.finalhack.pdroidf;
+
+import static com.finalhack.pdroidf.Pdf.NEW_LINE;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class represents an internal data structure.
+ * Someone using this code to output a PDF doesn't need to worry about this class.
+ *
+ * This is the root of the page tree. Up to fanOut pages hang directly off of it.
+ * Beyond that, intermediate page tree nodes are added as pages come in, so that no node ever has more than fanOut kids
+ * and a viewer can find any page without reading one huge /Kids array.
+ *
+ * When pages are written out as they are finished (see Pdf.startWriting()), every page hangs off of an intermediate node from the start,
+ * so the parent a page is written out with never changes. Written pages are forgotten, only the nodes' kid objectIds are kept.
+ */
+public class Pages
+{
+	//The default page dimensions (US Letter, portrait) based on a 72dpi layout
+	//Each document has its own page size (see Pdf.setPageSize()), and each page can have its own too
+	public static final int PAGE_WIDTH = 612;
+	public static final int PAGE_HEIGHT = 792;
+	
+	//The size of pages added without a size of their own
+	private int pageWidth = PAGE_WIDTH;
+	private int pageHeight = PAGE_HEIGHT;
+	
+	//Most classes in this PDF library need an objectId
+	//The objectId must be unique across all elements in the PDF
+	private int objectId;
+	private List<Page>kidPages = new ArrayList<Page>();
+	
+	//The number of pages added, including the ones already written out and forgotten
+	private int pageCount;
+	
+	//How pages are written out: all at once when the PDF is (WRITE_AT_END), or one by one as they are finished (WRITE_AS_FINISHED),
+	//until the document has been WRITTEN and nothing more can be added
+	protected static final int WRITE_AT_END = 0;
+	protected static final int WRITE_AS_FINISHED = 1;
+	protected static final int WRITTEN = 2;
+	private int writeMode = WRITE_AT_END;
+	
+	//Finished pages still being encoded in the background are written out once they are done, unless more than this many are waiting
+	private static final int MAX_WAITING_PAGES = 16;
+	private int pagesWritten;
+	
+	//The most kids any page tree node has
+	public static final int DEFAULT_FAN_OUT = 32;
+	private int fanOut = DEFAULT_FAN_OUT;
+	
+	//Intermediate page tree nodes, levels.get(0) holds the nodes pages hang off of, the last level hangs off of this object
+	private List<List<Node>> levels = new ArrayList<List<Node>>();
+	
+	//Used to give intermediate page tree nodes unique objectIds
+	private AtomicInteger currentObjectId;
+	
+	//Document wide resources that every page can use
+	private Resources resources;
+	
+	//The PDF this is the page tree of
+	private Pdf document;
+	
+	//When pages are appended to an existing PDF, the kids (like: 5 0 R 9 0 R) and page count it already has
+	private String existingKids;
+	private int existingCount;
+	
+	//Pages of earlier documents, reused for new pages after the PDF is reset
+	//Only a few are kept, enough for typical small documents without holding on to the memory of a huge one
+	private static final int MAX_SPARE_PAGES = 16;
+	private List<Page> sparePages = new ArrayList<Page>();
+	
+	/**
+	 * Construct self
+	 * @param objectId
+	 * @param document
+	 * @param currentObjectId
+	 * @param resources
+	 */
+	public Pages(int objectId, Pdf document, AtomicInteger currentObjectId, Resources resources)
+	{
+		this.objectId = objectId;
+		this.document = document;
+		this.currentObjectId = currentObjectId;
+		this.resources = resources;
+	}
+	
+	/**
+	 * Simple getter for unique objectId
+	 * @return
+	 */
+	protected int getObjectId() { return objectId; }
+	
+	/**
+	 * Simple setter for the size of pages added without a size of their own
+	 * @param pageWidth
+	 * @param pageHeight
+	 */
+	protected void setPageSize(int pageWidth, int pageHeight)
+	{
+		this.pageWidth = pageWidth;
+		this.pageHeight = pageHeight;
+	}
+	
+	/**
+	 * Simple getter for the width of pages added without a size of their own
+	 * @return
+	 */
+	protected int getPageWidth() { return pageWidth; }
+	
+	/**
+	 * Simple getter for the height of pages added without a size of their own
+	 * @return
+	 */
+	protected int getPageHeight() { return pageHeight; }
+	
+	/**
+	 * Simple getter for the PDF this is the page tree of
+	 * @return
+	 */
+	protected Pdf getDocument() { return document; }
+	
+	/**
+	 * Simple getter for the document wide resources
+	 * @return
+	 */
+	protected Resources getResources() { return resources; }
+	
+	/**
+	 * Simple getter for all child Page objects, which are only the ones not written out yet when pages are written out as they are finished
+	 * @return
+	 */
+	protected List<Page> getPages() { return kidPages; }
+	
+	/**
+	 * Simple getter for the number of pages added
+	 * @return
+	 */
+	protected int getPageCount() { return pageCount; }
+	
+	/**
+	 * Simple getter for how pages are written out: WRITE_AT_END, WRITE_AS_FINISHED or WRITTEN
+	 * @return
+	 */
+	protected int getWriteMode() { return writeMode; }
+	
+	/**
+	 * Simple setter for how pages are written out: WRITE_AT_END, WRITE_AS_FINISHED or WRITTEN
+	 * @param writeMode
+	 */
+	protected void setWriteMode(int writeMode) { this.writeMode = writeMode; }
+	
+	/**
+	 * Set the most kids any page tree node may have.
+	 * This can only be changed before any pages have been added.
+	 * @param fanOut
+	 */
+	protected void setFanOut(int fanOut)
+	{
+		if (fanOut < 2) throw new IllegalArgumentException("A page tree fan-out must be at least 2: " + fanOut);
+		if (pageCount > 0) throw new IllegalStateException("The page tree fan-out must be set before adding pages");
+		this.fanOut = fanOut;
+	}
+	
+	/**
+	 * Keep the kids of an existing PDF's page tree root, new pages are added after them
+	 * @param kids references like: 5 0 R 9 0 R
+	 * @param count the number of pages below those kids
+	 */
+	protected void setExistingKids(String kids, int count)
+	{
+		this.existingKids = kids;
+		this.existingCount = count;
+	}
+	
+	/**
+	 * Get a new, empty page, reusing one from an earlier document if there is one.
+	 * It still has to be added with addPage().
+	 * @param width
+	 * @param height
+	 * @return
+	 */
+	protected Page newPage(int width, int height)
+	{
+		if (sparePages.isEmpty()) return new Page(currentObjectId, this, width, height);
+		
+		Page page = sparePages.remove(sparePages.size() - 1);
+		page.reuse(currentObjectId, this, width, height);
+		return page;
+	}
+	
+	/**
+	 * Forget all pages, so that a new document can be started.
+	 * Pages that aren't being encoded in the background anymore are kept for newPage().
+	 */
+	protected void reset()
+	{
+		for (Page page : kidPages) if (sparePages.size() < MAX_SPARE_PAGES && page.getStream().isReusable()) sparePages.add(page);
+		kidPages.clear();
+		pageCount = 0;
+		pagesWritten = 0;
+		writeMode = WRITE_AT_END;
+		levels.clear();
+		existingKids = null;
+		existingCount = 0;
+	}
+	
+	/**
+	 * Add a new child page
+	 * @param page
+	 * @throws IllegalStateException if the document has already been written out
+	 */
+	protected void addPage(Page page)
+	{
+		if (writeMode == WRITTEN) throw new IllegalStateException("Nothing can be added to a PDF that has been written out");
+		kidPages.add(page);
+		pageCount++;
+		
+		//Small documents don't need any intermediate nodes, unless pages are written out before it is known how many there are
+		if (levels.isEmpty() && pageCount <= fanOut && writeMode == WRITE_AT_END)
+		{
+			page.setParentObjectId(objectId);
+			return;
+		}
+		
+		//Once there are too many pages to hang off of this object, push all of them down a level
+		if (levels.isEmpty())
+		{
+			levels.add(new ArrayList<Node>());
+			for (Page kidPage : kidPages) hangPage(kidPage);
+			return;
+		}
+		
+		hangPage(page);
+	}
+	
+	//Hang a page off of the last node of the first level, and count it in every node above it
+	private void hangPage(Page page)
+	{
+		Node node = addKid(0, page.getObjectId());
+		page.setParentObjectId(node.objectId);
+		for (;node != null;node = node.parent) node.count++;
+	}
+	
+	//Add a kid to the last node of a level, starting a new node if the last one is full
+	private Node addKid(int level, int kidObjectId)
+	{
+		List<Node> nodes = levels.get(level);
+		Node node = nodes.isEmpty() ? null : nodes.get(nodes.size() - 1);
+		if (node == null || node.kidCount == fanOut)
+		{
+			node = new Node(currentObjectId.getAndAdd(1), fanOut);
+			nodes.add(node);
+			hangNode(level, node);
+		}
+		node.addKid(kidObjectId);
+		return node;
+	}
+	
+	//Hang a new node off of the level above it, or off of this object if it is on the last level
+	private void hangNode(int level, Node node)
+	{
+		if (level < levels.size() - 1)
+		{
+			node.parent = addKid(level + 1, node.objectId);
+			return;
+		}
+		
+		//This object can take the new node as long as it doesn't end up with too many kids
+		List<Node> nodes = levels.get(level);
+		if (nodes.size() <= fanOut) return;
+		
+		//Otherwise add a new level above, and hang every node of this level off of it
+		levels.add(new ArrayList<Node>());
+		for (Node kidNode : nodes)
+		{
+			kidNode.parent = addKid(level + 1, kidNode.objectId);
+			kidNode.parent.count += kidNode.count;
+		}
+	}
+	
+	/**
+	 * Write out the pages that are finished and forget them, when pages are written out as they are finished.
+	 * Pages still being encoded in the background are left for later, unless too many of them are waiting.
+	 * @param writer
+	 * @param metrics told the content bytes of each page written out, unless it is null
+	 * @param all true to write out every page that is left, finished or not
+	 * @throws IOException
+	 */
+	protected void writeFinishedPages(PdfWriter writer, PdfMetrics metrics, boolean all) throws IOException
+	{
+		int waiting = 0;
+		if (!all) for (Page page : kidPages) if (page.getStream().isFinished()) waiting++;
+		
+		Iterator<Page> iterator = kidPages.iterator();
+		while (iterator.hasNext())
+		{
+			Page page = iterator.next();
+			Stream stream = page.getStream();
+			if (!all)
+			{
+				if (!stream.isFinished() || (!stream.isReusable() && waiting <= MAX_WAITING_PAGES)) continue;
+				waiting--;
+			}
+			
+			writer.writeObject(page.getObjectId(), page.toString());
+			int contentBytes = stream.writeTo(writer);
+			pagesWritten++;
+			if (metrics != null) metrics.pageWritten(pagesWritten, contentBytes);
+			iterator.remove();
+		}
+	}
+	
+	/**
+	 * Forget the pages that are finished without writing them out, after writing out pages as they are finished has failed
+	 */
+	protected void dropFinishedPages()
+	{
+		Iterator<Page> iterator = kidPages.iterator();
+		while (iterator.hasNext()) if (iterator.next().getStream().isFinished()) iterator.remove();
+	}
+	
+	/**
+	 * Write out each child Page object and every intermediate page tree node, adding x-reference data for each of them
+	 * @param writer
+	 * @throws IOException
+	 */
+	protected void addPageDataToXref(PdfWriter writer) throws IOException
+	{
+		for (List<Node> nodes : levels)
+		{
+			for (Node node : nodes) writer.writeObject(node.objectId, node.toString());
+		}
+		for (Page page : kidPages) writer.writeObject(page.getObjectId(), page.toString());
+	}
+	
+	/**
+	 * Output the actual object in PDF format
+	 */
+	@Override
+	public String toString()
+	{
+		StringBuilder ret = new StringBuilder();
+		ret.append("<<").append(NEW_LINE);
+		ret.append("  /Type /Pages").append(NEW_LINE);
+		ret.append("  /Kids [ ");
+		if (existingKids != null && existingKids.length() > 0) ret.append(existingKids).append(' ');
+		
+		if (levels.isEmpty()) for (Page page : kidPages) ret.append(page.getObjectId()).append(" 0 R ");
+		else for (Node node : levels.get(levels.size() - 1)) ret.append(node.objectId).append(" 0 R ");
+		
+		ret.append("]").append(NEW_LINE);
+		ret.append("  /Count ").append(existingCount + pageCount).append(NEW_LINE);
+		ret.append(">>").append(NEW_LINE);
+		
+		return ret.toString();
+	}
+	
+	/**
+	 * A simple inner class to represent an intermediate page tree node
+	 */
+	private class Node
+	{
+		private int objectId;
+		
+		//The node this one hangs off of, null if it hangs off of the root Pages object
+		private Node parent;
+		
+		//The objectIds of the kids
+		private int[] kids;
+		private int kidCount;
+		
+		//The number of pages below this node
+		private int count;
+		
+		public Node(int objectId, int fanOut)
+		{
+			this.objectId = objectId;
+			this.kids = new int[fanOut];
+		}
+		
+		public void addKid(int kidObjectId) { kids[kidCount++] = kidObjectId; }
+		
+		/**
+		 * Output the actual object in PDF format
+		 */
+		@Override
+		public String toString()
+		{
+			StringBuilder ret = new StringBuilder();
+			ret.append("<<").append(NEW_LINE);
+			ret.append("  /Type /Pages").append(NEW_LINE);
+			ret.append("  /Parent ").append(parent == null ? Pages.this.objectId : parent.objectId).append(" 0 R").append(NEW_LINE);
+			ret.append("  /Kids [ ");
+			for (int i=0;i<kidCount;i++) ret.append(kids[i]).append(" 0 R ");
+			ret.append("]").append(NEW_LINE);
+			ret.append("  /Count ").append(count).append(NEW_LINE);
+			ret.append(">>").append(NEW_LINE);
+			
+			return ret.toString();
+		}
+	}
+}
\ No newline at end of file
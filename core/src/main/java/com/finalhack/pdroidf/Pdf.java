@@ -0,0 +1,782 @@
+package com.finalhack.pdroidf;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.zip.Deflater;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class represents a PDF file. By calling its methods, elements can be added to the PDF.
+ * The final output produced by this class is a byte[].
+ *
+ * A Pdf (and everything it hands out, like its Streams, Fonts and Templates) isn't thread safe:
+ * only one thread at a time may use it, from adding the first page until it is written out.
+ * Handing a Pdf over to another thread is fine as long as the hand-over is safe, like submitting it to an ExecutorService.
+ * Different Pdf objects share no mutable state, so any number of them can be made and written out in parallel, one per thread.
+ * The only setting shared by all of them is the logger (see setLogger()).
+ */
+public class Pdf {
+
+	public static final boolean DEBUG_ON = true;
+	public static final String LOG_TAG_DEBUG = "PDroidF";
+	public static final String LOG_STACKTRACE = "PDroidF Stacktrace";
+	
+	//Debug messages go to java.util.logging unless setLogger() is used
+	private static volatile PdfLogger logger = new PdfLogger()
+	{
+		@Override
+		public void debug(String tag, String message, Throwable throwable) { Logger.getLogger(tag).log(Level.FINE, message, throwable); }
+	};
+	
+	//General PDF syntax
+	protected static final String DEFAULT_VERSION = "1.7";
+	//use new line in ShareUtil also
+	public static final String NEW_LINE = "\n";
+	private static final String PDF_HEADER = "%PDF-" + DEFAULT_VERSION + NEW_LINE;
+
+	//Content streams are written uncompressed unless setCompression() is used to turn compression on
+	public static final int COMPRESSION_OFF = -2;
+	private static final int DEFAULT_COMPRESSION_THRESHOLD = 256;
+	private int compressionLevel = COMPRESSION_OFF;
+	private int compressionThreshold = DEFAULT_COMPRESSION_THRESHOLD;
+	
+	//What writePdf() and append() do to make sure the data is actually stored before they return
+	public static final int SYNC_NONE = 0;
+	public static final int SYNC_AT_END = 1;
+	
+	//Finished pages are encoded on this, if it is set
+	private Executor executor;
+	
+	//Write out a classic x-reference table unless setObjectStreams() is used to turn on PDF 1.5 object streams
+	private boolean useObjectStreams;
+	
+	//Nothing is measured while writing out the PDF unless setMetrics() is used
+	private PdfMetrics metrics;
+	
+	//The first objectId of a document, 0 is never used
+	private static final int FIRST_OBJECT_ID = 1;
+	
+	//getPDF() writes the document into a growable primitive byte[] starting out at this size
+	private static final int INITIAL_DOCUMENT_CAPACITY = 64 * 1024;
+	
+	//An AtomicInteger will help keep objectIds unique through the PDF
+	private AtomicInteger currentObjectId;
+	private int catalogId;
+	private int pagesId;
+	
+	//Main components required for a PDF to exist
+	private Catalog catalog;
+	private Xref xref = new Xref();
+	private Resources resources;
+	private Pages pages;
+	
+	//The PDF that pages are appended to, if this was opened with openForAppend()
+	private PdfReader original;
+	
+	//Once reset() is called the PDF is reused for more documents, and keeps its writer and the sink getPDF() collects documents in
+	private boolean reused;
+	private PdfWriter writer;
+	private ByteSink document;
+	
+	//While the PDF is written out page by page (see startWriting()): the writer finished pages go to, the first error writing them
+	//(which finishWriting() throws), and for metrics how long writing pages, and writing in all, has taken so far
+	private PdfWriter pageWriter;
+	private IOException pageWriteError;
+	private long pageWritingNanos;
+	private long writingNanos;
+	
+	/**
+	 * Construct an empty PDF
+	 */
+	public Pdf()
+	{
+		currentObjectId = new AtomicInteger(FIRST_OBJECT_ID);
+		catalogId = currentObjectId.getAndAdd(1);
+		pagesId = currentObjectId.getAndAdd(1);
+		createComponents();
+	}
+	
+	//Construct an update of an existing PDF, which keeps the objectIds of its catalog and page tree root
+	private Pdf(PdfReader original)
+	{
+		this.original = original;
+		currentObjectId = new AtomicInteger(original.getSize());
+		catalogId = original.getRootObjectId();
+		pagesId = original.getPagesObjectId();
+		createComponents();
+		pages.setExistingKids(original.getKids(), original.getPageCount());
+	}
+	
+	private void createComponents()
+	{
+		catalog = new Catalog(catalogId);
+		resources = new Resources(currentObjectId);
+		pages = new Pages(pagesId, this, currentObjectId, resources);
+	}
+	
+	/**
+	 * Open a PDF that was written by this library, so that pages can be added to the end of it.
+	 * Instead of the whole document, only an incremental update is written out: the new pages and their resources,
+	 * the page tree root and the catalog, and an x-reference section pointing back (/Prev) to the original's.
+	 * The original bytes are never changed, so the cost depends only on what is added.
+	 * Use append() to write the update onto the end of the file. getPDF() writes out just the update, which must go right after the original.
+	 * The update uses a cross-reference stream if the original does, and a classic table if it doesn't, whatever setObjectStreams() says.
+	 * @param channel the original PDF, which is only read from here
+	 * @return
+	 * @throws IOException if the PDF can't be read, or wasn't written by this library
+	 */
+	public static Pdf openForAppend(FileChannel channel) throws IOException { return new Pdf(new PdfReader(channel)); }
+	
+	/**
+	 * Start over with an empty document, for making many small documents one after the other (like receipts).
+	 * The settings (page size, compression, object streams, executor, page tree fan-out, image downsampling and metrics) are kept,
+	 * and so is the memory grown while making earlier documents: page buffers, x-reference arrays, output buffers and the compressor.
+	 * After the first few documents, making another one of about the same size hardly allocates anything.
+	 * Everything that was added is forgotten, and Streams, Fonts and Templates from before must not be used anymore.
+	 * Don't call this while the PDF is being written out.
+	 * A reused PDF keeps its compressor's native memory until it is garbage collected.
+	 * @throws IllegalStateException if the PDF was opened with openForAppend()
+	 */
+	public void reset()
+	{
+		if (original != null) throw new IllegalStateException("A PDF opened with openForAppend() can't be reset");
+		reused = true;
+		
+		//A PDF that was being written out page by page is given up on
+		if (pageWriter != null && pageWriter != writer) pageWriter.release();
+		pageWriter = null;
+		pageWriteError = null;
+		
+		//The objectIds are handed out in the same order as for a new PDF, so the same content makes the same document
+		currentObjectId.set(FIRST_OBJECT_ID);
+		catalogId = currentObjectId.getAndAdd(1);
+		pagesId = currentObjectId.getAndAdd(1);
+		resources.reset();
+		pages.reset();
+	}
+	
+	/**
+	 * Adds a new blank page to the PDF.
+	 * This method must be called before adding any elements to the first page, and again for each additional page.
+	 * The returned Stream object can be used to add elements like text and graphics to the page 
+	 * @return Stream
+	 */
+	public Stream addPage() { return addPage(pages.getPageWidth(), pages.getPageHeight()); }
+	
+	/**
+	 * Adds a new blank page of its own size to the PDF, like a landscape page in a portrait document.
+	 * See addPage().
+	 * @param width in points (1/72 inch)
+	 * @param height in points (1/72 inch)
+	 * @return Stream
+	 */
+	public Stream addPage(int width, int height)
+	{
+		checkPageSize(width, height);
+		
+		//Create a new page object and set its parent information
+		Page page = pages.newPage(width, height);
+		pages.addPage(page);
+		
+		//Return the page's Stream so objects can be added to it
+		return page.getStream();
+	}
+	
+	/**
+	 * Set the size of pages added from now on with addPage(), Pages.PAGE_WIDTH x Pages.PAGE_HEIGHT (US Letter) unless this is called.
+	 * For landscape pages, swap the width and height, like setPageSize(Pages.PAGE_HEIGHT, Pages.PAGE_WIDTH).
+	 * Text that flows off of a page continues on a page the same size.
+	 * @param width in points (1/72 inch)
+	 * @param height in points (1/72 inch)
+	 */
+	public void setPageSize(int width, int height)
+	{
+		checkPageSize(width, height);
+		pages.setPageSize(width, height);
+	}
+	
+	private static void checkPageSize(int width, int height)
+	{
+		if (width <= 0 || height <= 0) throw new IllegalArgumentException("Invalid page size: " + width + "x" + height);
+	}
+
+	/**
+	 * Compress page content streams (/FlateDecode) when the PDF is written out.
+	 * Use a java.util.zip.Deflater level like Deflater.BEST_SPEED, or COMPRESSION_OFF to turn compression back off.
+	 * Image data is never compressed again since JPEG data is already compressed.
+	 * @param level
+	 */
+	public void setCompression(int level)
+	{
+		if (level != COMPRESSION_OFF && (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION)) throw new IllegalArgumentException("Invalid compression level: " + level);
+		this.compressionLevel = level;
+	}
+	
+	/**
+	 * Only compress content streams that are at least minimumSize bytes long.
+	 * Compressing tiny streams costs more time than it saves space.
+	 * @param minimumSize
+	 */
+	public void setCompressionThreshold(int minimumSize) { this.compressionThreshold = minimumSize; }
+	
+	/**
+	 * Pack everything that isn't a stream (pages, fonts, the catalog...) into compressed object streams,
+	 * and write the x-reference data as a compressed cross-reference stream instead of a classic table.
+	 * This makes large documents noticeably smaller, but needs a PDF 1.5 or newer viewer.
+	 * @param useObjectStreams
+	 */
+	public void setObjectStreams(boolean useObjectStreams) { this.useObjectStreams = useObjectStreams; }
+	
+	/**
+	 * Encode (and compress) pages on executor as soon as they are finished, instead of all at once in getPDF().
+	 * A page is finished when Stream.finish() is called, or when auto-wrapped text flows off of it onto a new page.
+	 * This lets large documents use more than one core: the next page is laid out while finished pages are encoded,
+	 * and getPDF() picks up the results in order.
+	 * The compression settings in effect when a page is finished are the ones used for it.
+	 * Pass null to encode everything in getPDF() again.
+	 * @param executor
+	 */
+	public void setExecutor(Executor executor) { this.executor = executor; }
+	
+	/**
+	 * Have metrics told how long each phase of writing out the PDF takes, the size of each object,
+	 * the content bytes of each page, the image bytes and the page count, like for finding the documents that are slow to make.
+	 * Pass null to stop measuring, which is how a PDF starts out: then nothing is timed or counted at all.
+	 * @param metrics
+	 */
+	public void setMetrics(PdfMetrics metrics) { this.metrics = metrics; }
+	
+	/**
+	 * Called when nothing more will be added to a Stream
+	 * @param stream
+	 */
+	protected void finishPage(Stream stream)
+	{
+		if (executor != null) stream.encodeInBackground(executor, compressionLevel, compressionThreshold);
+		if (pageWriter == null) return;
+		
+		//Stream.finish() can't throw an IOException, so the first one is kept for finishWriting(),
+		//and pages that can't be written out anymore aren't held on to either
+		if (pageWriteError == null)
+		{
+			try { writeFinishedPages(pageWriter, false); }
+			catch (IOException e)
+			{
+				log(LOG_STACKTRACE, e);
+				pageWriteError = e;
+			}
+		}
+		if (pageWriteError != null) pages.dropFinishedPages();
+	}
+	
+	//Write out the finished pages (or all of them) of a PDF written out page by page, counting the time it takes
+	private void writeFinishedPages(PdfWriter writer, boolean all) throws IOException
+	{
+		PdfMetrics metrics = this.metrics;
+		long start = metrics != null ? System.nanoTime() : 0;
+		pages.writeFinishedPages(writer, metrics, all);
+		if (metrics != null) pageWritingNanos += System.nanoTime() - start;
+	}
+	
+	/**
+	 * Shrink images that have far more pixels than their size on the page needs, like camera photos placed as thumbnails.
+	 * Images added from now on with more pixels than dpi needs for their placed size are scaled down and encoded as a JPEG again by codec.
+	 * Each image is only scaled once per placed size. Images the codec can't decode are used as they are.
+	 * Pass a null codec to turn downsampling back off.
+	 * @param codec like BitmapCodec on Android or ImageIOCodec on a plain JVM
+	 * @param dpi like 150 for screens and 300 for print
+	 */
+	public void setImageDownsampling(ImageCodec codec, int dpi)
+	{
+		if (codec != null && dpi <= 0) throw new IllegalArgumentException("Invalid DPI: " + dpi);
+		resources.setImageDownsampling(codec, dpi);
+	}
+	
+	/**
+	 * Set the most kids any node of the page tree may have (Pages.DEFAULT_FAN_OUT unless this is called).
+	 * Documents with more pages than this get a balanced tree of intermediate nodes, so viewers can show any page quickly.
+	 * This must be called before any pages are added.
+	 * @param fanOut
+	 */
+	public void setPageTreeFanOut(int fanOut) { pages.setFanOut(fanOut); }
+
+	/**
+	 * Add a TrueType font, for text with characters that the default Times-Roman font doesn't have (like Greek, Cyrillic, or CJK).
+	 * Only the glyphs that are actually used get embedded in the PDF.
+	 * Use the returned Font with Stream.setFont().
+	 * The data is copied, so the array can be changed or reused as soon as this returns.
+	 * @param trueTypeData the contents of a .ttf file
+	 * @return
+	 * @throws IllegalArgumentException if the data isn't a TrueType font that can be used
+	 */
+	public Font addFont(byte[] trueTypeData) { return resources.addTrueTypeFont(trueTypeData); }
+	
+	/**
+	 * Add a template of the given size, for drawing that repeats on many pages like headers, footers and watermarks.
+	 * Draw into the template's Stream once, then place it on any page with Stream.addTemplate().
+	 * Its content is written out once, each page it is placed on only refers to it.
+	 * @param width
+	 * @param height
+	 * @return
+	 */
+	public Template addTemplate(int width, int height) { return resources.addTemplate(pages, width, height); }
+	
+	/**
+	 * Call this when you are ready to write out the PDF.
+	 * This method gets the final byte[] representing the PDF.
+	 * The returned byte[] could be written to a file, and that file could then be opened up as a PDF
+	 * @return
+	 */
+	public byte[] getPDF()
+	{
+		ByteSink document = this.document;
+		if (document == null) document = new ByteSink(INITIAL_DOCUMENT_CAPACITY);
+		else document.reset();
+		if (reused) this.document = document;
+		
+		//An in-memory sink never throws, so there is nothing to recover from here
+		try { getPDF(document.asOutputStream()); } catch (IOException e) { throw new IllegalStateException(e); }
+		
+		//Return the PDF byte data, this is a single bulk copy at most.
+		//A kept sink gets written over by the next document, so its buffer is never handed out even when it is exactly full.
+		if (reused) return Arrays.copyOf(document.getBuffer(), document.size());
+		return document.toByteArray();
+	}
+	
+	/**
+	 * Write out the pages added to a PDF opened with openForAppend(), as an incremental update at the end of its file.
+	 * @param channel the original PDF's file, open for writing
+	 * @param sync SYNC_AT_END to have the update on the storage device before this returns, or SYNC_NONE to leave that up to the OS
+	 * @throws IOException if writing fails, or the file has changed since it was opened
+	 */
+	public void append(FileChannel channel, int sync) throws IOException
+	{
+		checkSync(sync);
+		if (original == null) throw new IllegalStateException("Only a PDF opened with openForAppend() can be appended to");
+		if (channel.size() != original.getLength()) throw new IOException("The PDF has changed since it was opened for appending");
+		
+		channel.position(original.getLength());
+		getPDF(channel, null);
+		if (sync == SYNC_AT_END) channel.force(true);
+	}
+	
+	/**
+	 * Write out the PDF to sink on executor, see getPDF(OutputStream).
+	 * Cancelling the returned Future (or interrupting the thread doing the work) stops writing before the next page.
+	 * Nothing may be added to the PDF while it is being written out.
+	 * @param sink flushed but not closed
+	 * @param executor
+	 * @param listener told about each page written and when writing is over, may be null
+	 * @return a Future to wait for the PDF to be written out with, or to cancel writing with
+	 */
+	public Future<Void> renderAsync(final OutputStream sink, Executor executor, ProgressListener listener)
+	{
+		return submit(executor, new RenderTask(listener)
+		{
+			@Override
+			protected void render() throws IOException { getPDF(sink, this); }
+		});
+	}
+	
+	/**
+	 * Write out the PDF into a file on executor, see writePdf(File, int).
+	 * Cancelling the returned Future (or interrupting the thread doing the work) stops writing before the next page,
+	 * and the partly written file is deleted.
+	 * Nothing may be added to the PDF while it is being written out.
+	 * @param file
+	 * @param sync
+	 * @param executor
+	 * @param listener told about each page written and when writing is over, may be null
+	 * @return a Future to wait for the PDF to be written out with, or to cancel writing with
+	 */
+	public Future<Void> renderAsync(final File file, final int sync, Executor executor, ProgressListener listener)
+	{
+		checkSync(sync);
+		return submit(executor, new RenderTask(listener)
+		{
+			@Override
+			protected void render() throws IOException { writePdf(file, sync, this); }
+		});
+	}
+	
+	private static Future<Void> submit(Executor executor, RenderTask task)
+	{
+		executor.execute(task.future);
+		return task.future;
+	}
+	
+	/**
+	 * Write out the PDF straight into a file, without ever holding the whole document in memory.
+	 * Page data goes to the file's channel as-is, in gathering writes together with the data around it.
+	 * @param file the file to create, or to replace if it exists
+	 * @param sync SYNC_AT_END to have everything on the storage device before this returns (slower), or SYNC_NONE to leave that up to the OS
+	 * @throws IOException if anything can't be written, the partly written file is deleted then
+	 */
+	public void writePdf(File file, int sync) throws IOException { writePdf(file, sync, null); }
+	
+	private void writePdf(File file, int sync, RenderTask task) throws IOException
+	{
+		checkSync(sync);
+		FileOutputStream outputStream = new FileOutputStream(file);
+		boolean written = false;
+		try
+		{
+			FileChannel channel = outputStream.getChannel();
+			getPDF(channel, task);
+			if (sync == SYNC_AT_END) channel.force(true);
+			written = true;
+		}
+		finally
+		{
+			if (written) outputStream.close();
+			else
+			{
+				//The error that got us here is the one that matters, and a partly written PDF is of no use
+				try { outputStream.close(); } catch (IOException e) { log(LOG_STACKTRACE, e); }
+				if (!file.delete()) log("Couldn't delete partly written " + file, null);
+			}
+		}
+	}
+	
+	private static void checkSync(int sync)
+	{
+		if (sync != SYNC_NONE && sync != SYNC_AT_END) throw new IllegalArgumentException("Invalid sync policy: " + sync);
+	}
+	
+	/**
+	 * Call this when you are ready to write out the PDF to a channel, like a FileChannel or a socket.
+	 * See getPDF(OutputStream).
+	 * Channels that take gathering writes (like FileChannel and SocketChannel) get large page data as-is,
+	 * together with the buffered data before it, instead of in separate writes.
+	 * @param channel
+	 * @throws IOException
+	 */
+	public void getPDF(WritableByteChannel channel) throws IOException { getPDF(channel, null); }
+	
+	private void getPDF(WritableByteChannel channel, RenderTask task) throws IOException
+	{
+		if (!(channel instanceof GatheringByteChannel))
+		{
+			getPDF(Channels.newOutputStream(channel), task);
+			return;
+		}
+		
+		writeDocument(getWriter(null, (GatheringByteChannel)channel), task);
+	}
+	
+	/**
+	 * Call this when you are ready to write out the PDF.
+	 * This method writes the PDF straight to outputStream, object by object, without ever holding the whole document in memory.
+	 * Beyond what the pages themselves hold, only a small buffer is needed, so this is the way to write out very large documents.
+	 * The outputStream is flushed but not closed.
+	 * @param outputStream
+	 * @throws IOException
+	 */
+	public void getPDF(OutputStream outputStream) throws IOException { getPDF(outputStream, null); }
+	
+	private void getPDF(OutputStream outputStream, RenderTask task) throws IOException
+	{
+		writeDocument(getWriter(outputStream, null), task);
+	}
+	
+	/**
+	 * Start writing out the PDF to outputStream, for documents too large to hold all of their pages in memory (like huge tables, see Stream.addTable()).
+	 * From now on each page is written out as soon as it is finished and then forgotten, so memory stays the same however many pages are added.
+	 * A page is finished when Stream.finish() is called, or when auto-placed content (like auto-line text and tables) flows off of it onto a new page.
+	 * Pages can be finished in any order, they still end up in the order they were added.
+	 * With setExecutor() a finished page is written out once it has been encoded in the background.
+	 * Call finishWriting() once everything has been added, which writes out the pages that are left, fonts, images, templates and the x-references.
+	 * This must be called before any pages are added, and settings must not be changed until the PDF has been written out.
+	 * getPDF() and writePdf() can't be used on a PDF written out this way.
+	 * @param outputStream
+	 * @throws IOException
+	 * @throws IllegalStateException if pages have already been added, the PDF is already being written out, or it was opened with openForAppend()
+	 */
+	public void startWriting(OutputStream outputStream) throws IOException
+	{
+		if (original != null) throw new IllegalStateException("A PDF opened with openForAppend() is written out with append()");
+		if (pages.getWriteMode() != Pages.WRITE_AT_END) throw new IllegalStateException("The PDF is already being written out");
+		if (pages.getPageCount() > 0) throw new IllegalStateException("startWriting() must be called before any pages are added");
+		
+		PdfMetrics metrics = this.metrics;
+		long start = metrics != null ? System.nanoTime() : 0;
+		PdfWriter writer = getWriter(outputStream, null);
+		prepareWriter(writer, metrics);
+		
+		//Objects the writer makes (like object streams) are numbered along with the pages that are still to come
+		writer.shareObjectIds(currentObjectId);
+		writer.write(PDF_HEADER);
+		writingNanos = phaseFinished(metrics, PdfMetrics.PHASE_HEADER, start) - start;
+		pageWritingNanos = 0;
+		
+		pageWriter = writer;
+		pages.setWriteMode(Pages.WRITE_AS_FINISHED);
+	}
+	
+	/**
+	 * Finish writing out a PDF started with startWriting(): the pages that haven't been written out yet (finished or not),
+	 * the page tree, the catalog, fonts, images, templates and the x-references. The outputStream is flushed but not closed.
+	 * Nothing more can be added to the PDF afterwards, unless it is reset().
+	 * @throws IOException if this fails, or writing out an earlier page did
+	 * @throws IllegalStateException if startWriting() wasn't called, or the PDF has already been written out
+	 */
+	public void finishWriting() throws IOException
+	{
+		if (pages.getWriteMode() != Pages.WRITE_AS_FINISHED) throw new IllegalStateException("Only a PDF started with startWriting() can be finished");
+		pages.setWriteMode(Pages.WRITTEN);
+		PdfWriter writer = pageWriter;
+		IOException error = pageWriteError;
+		pageWriter = null;
+		pageWriteError = null;
+		
+		PdfMetrics metrics = this.metrics;
+		try
+		{
+			if (error != null) throw new IOException("Writing out a finished page failed", error);
+			
+			//Write out the pages that are left
+			writeFinishedPages(writer, true);
+			if (metrics != null) metrics.phaseFinished(PdfMetrics.PHASE_STREAMS, pageWritingNanos);
+			long start = metrics != null ? System.nanoTime() : 0;
+			long time = start;
+			
+			//Write out the catalog and the page tree, whose pages are already out
+			catalog.setPages(pagesId);
+			writer.writeObject(catalogId, catalog.toString());
+			time = phaseFinished(metrics, PdfMetrics.PHASE_CATALOG, time);
+			writer.writeObject(pagesId, pages.toString());
+			pages.addPageDataToXref(writer);
+			time = phaseFinished(metrics, PdfMetrics.PHASE_PAGES, time);
+			
+			//Write out shared resources like fonts and images
+			resources.writeFontsTo(writer);
+			time = phaseFinished(metrics, PdfMetrics.PHASE_FONTS, time);
+			resources.writeImagesTo(writer);
+			time = phaseFinished(metrics, PdfMetrics.PHASE_IMAGES, time);
+			
+			//Write out the x-references and the footer
+			writer.finishDocument(catalogId);
+			time = phaseFinished(metrics, PdfMetrics.PHASE_XREF, time);
+			
+			if (metrics != null) metrics.documentWritten(pages.getPageCount(), writer.getPosition(), writingNanos + pageWritingNanos + time - start);
+		}
+		finally
+		{
+			//Compression holds on to native memory until it is released, unless it is kept for the next document
+			if (!reused) writer.release();
+		}
+	}
+	
+	//Get a writer for outputStream or channel (one of them is null), which is the same one every time once the PDF is reused
+	private PdfWriter getWriter(OutputStream outputStream, GatheringByteChannel channel)
+	{
+		if (pages.getWriteMode() != Pages.WRITE_AT_END) throw new IllegalStateException("A PDF written out with startWriting() is finished with finishWriting()");
+		
+		//Offsets are counted as the data goes out
+		xref.reset();
+		
+		if (reused && writer != null)
+		{
+			writer.reuse(outputStream, channel, currentObjectId.get());
+			return writer;
+		}
+		PdfWriter ret = outputStream != null ? new PdfWriter(outputStream, xref, currentObjectId.get()) : new PdfWriter(channel, xref, currentObjectId.get());
+		if (reused) writer = ret;
+		return ret;
+	}
+	
+	//Write out the whole document, or the update of an existing one
+	//task is the background render doing this, if there is one
+	private void writeDocument(PdfWriter writer, RenderTask task) throws IOException
+	{
+		PdfMetrics metrics = this.metrics;
+		long start = metrics != null ? System.nanoTime() : 0;
+		prepareWriter(writer, metrics);
+		
+		//An update is counted from the end of the original, and its x-references point back to the original's
+		if (original != null)
+		{
+			writer.setPosition(original.getLength());
+			xref.setPrevious(original.getXrefOffset());
+		}
+		
+		long startPosition = writer.getPosition();
+		long time = start;
+		try
+		{
+			//Write out the header, an update just starts on a new line after the original's footer
+			writer.write(original == null ? PDF_HEADER : NEW_LINE);
+			time = phaseFinished(metrics, PdfMetrics.PHASE_HEADER, time);
+			
+			//Write out the catalog
+			catalog.setPages(pagesId);
+			writer.writeObject(catalogId, catalog.toString());
+			time = phaseFinished(metrics, PdfMetrics.PHASE_CATALOG, time);
+
+			//Write out the 'Pages' element (not to be confused with each page)
+			writer.writeObject(pagesId, pages.toString());
+			
+			//Write out each page
+			pages.addPageDataToXref(writer);
+			time = phaseFinished(metrics, PdfMetrics.PHASE_PAGES, time);
+			List<Page> individualPages = pages.getPages();
+			int pagesWritten = 0;
+			for (Page page : individualPages)
+			{
+				if (task != null) task.checkCancelled();
+				Stream stream = page.getStream();
+				int contentBytes = stream.writeTo(writer);
+				pagesWritten++;
+				if (metrics != null) metrics.pageWritten(pagesWritten, contentBytes);
+				if (task != null) task.pageWritten(pagesWritten, individualPages.size());
+			}
+			time = phaseFinished(metrics, PdfMetrics.PHASE_STREAMS, time);
+			//Write out shared resources like fonts and images
+			resources.writeFontsTo(writer);
+			time = phaseFinished(metrics, PdfMetrics.PHASE_FONTS, time);
+			resources.writeImagesTo(writer);
+			time = phaseFinished(metrics, PdfMetrics.PHASE_IMAGES, time);
+			//Write out the x-references and the footer
+			writer.finishDocument(catalogId);
+			time = phaseFinished(metrics, PdfMetrics.PHASE_XREF, time);
+			
+			if (metrics != null) metrics.documentWritten(individualPages.size(), writer.getPosition() - startPosition, time - start);
+		}
+		finally
+		{
+			//Compression holds on to native memory until it is released, unless it is kept for the next document
+			if (!reused) writer.release();
+		}
+	}
+	
+	//Apply the compression, object stream and metrics settings to writer
+	private void prepareWriter(PdfWriter writer, PdfMetrics metrics)
+	{
+		if (compressionLevel != COMPRESSION_OFF) writer.setCompression(compressionLevel, compressionThreshold);
+		writer.setObjectStreams(original != null ? original.isXrefStream() : useObjectStreams);
+		writer.setMetrics(metrics);
+	}
+	
+	//Tell metrics (if there are any) how long a phase took since start, and return when it finished
+	private static long phaseFinished(PdfMetrics metrics, int phase, long start)
+	{
+		if (metrics == null) return 0;
+		long now = System.nanoTime();
+		metrics.phaseFinished(phase, now - start);
+		return now;
+	}
+	
+	/**
+	 * Send debug messages somewhere else, like android.util.Log
+	 * @param pdfLogger
+	 */
+	public static void setLogger(PdfLogger pdfLogger) { logger = pdfLogger; }
+	
+	/**
+	 * Log a debug message, if debugging is on
+	 * @param message
+	 * @param throwable may be null
+	 */
+	protected static void log(String message, Throwable throwable)
+	{
+		if (DEBUG_ON) logger.debug(LOG_TAG_DEBUG, message, throwable);
+	}
+	
+	//Get a byte array representing a BMP file
+	public static byte[] getAssetJpgBytes(AssetLoader assetLoader, String fileName)
+	{
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		InputStream inputStream;
+		try
+		{
+			inputStream = assetLoader.open(fileName);
+			byte[] byteChunk = new byte[4096];
+			int n;
+
+			//As long as we need to, read in BMP data
+			while ( (n = inputStream.read(byteChunk)) > 0 ) baos.write(byteChunk, 0, n);
+			  
+			inputStream.close();
+			
+			//If successful, return the BMP data
+			return baos.toByteArray();
+		}
+		catch (IOException e)
+		{
+			log(LOG_STACKTRACE, e);
+		}
+		
+		//Return null on error and let us know we have a real problem (because there are no known reasons for this failing)
+		return null;
+	}
+	
+	/**
+	 * A simple inner class to run a render on an executor.
+	 * It stops between pages once it is cancelled, and keeps its listener up to date.
+	 */
+	private abstract static class RenderTask implements Callable<Void>
+	{
+		private ProgressListener listener;
+		
+		//What the caller waits on and cancels
+		private FutureTask<Void> future = new FutureTask<Void>(this)
+		{
+			@Override
+			protected void done() { finished(); }
+		};
+		
+		public RenderTask(ProgressListener listener) { this.listener = listener; }
+		
+		//Write out the PDF
+		protected abstract void render() throws IOException;
+		
+		@Override
+		public Void call() throws IOException
+		{
+			render();
+			return null;
+		}
+		
+		//Called before each page, cancelling isn't noticed in the middle of a page
+		protected void checkCancelled() throws InterruptedIOException
+		{
+			if (future.isCancelled() || Thread.currentThread().isInterrupted()) throw new InterruptedIOException("Writing the PDF was cancelled");
+		}
+		
+		protected void pageWritten(int pagesWritten, int pageCount)
+		{
+			if (listener != null) listener.onProgress(pagesWritten, pageCount);
+		}
+		
+		private void finished()
+		{
+			if (listener == null) return;
+			
+			Throwable error = null;
+			try { future.get(); }
+			catch (CancellationException e) { error = e; }
+			catch (ExecutionException e) { error = e.getCause(); }
+			catch (InterruptedException e) { error = e; }
+			listener.onFinished(error);
+		}
+	}
+}
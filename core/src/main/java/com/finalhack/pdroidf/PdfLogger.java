@@ -0,0 +1,16 @@
+package com.finalhack.pdroidf;
+
+/**
+ * Where pDroidF sends its debug messages.
+ * By default they go to java.util.logging, use Pdf.setLogger() to send them somewhere else (like android.util.Log).
+ */
+public interface PdfLogger
+{
+	/**
+	 * Log a debug message
+	 * @param tag
+	 * @param message
+	 * @param throwable may be null
+	 */
+	void debug(String tag, String message, Throwable throwable);
+}
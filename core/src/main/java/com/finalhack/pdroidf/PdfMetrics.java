@@ -0,0 +1,58 @@
+package com.finalhack.pdroidf;
+
+/**
+ * Gets told how long each part of writing out a PDF took and how big its parts are, for exporting to a metrics system.
+ * Set it with Pdf.setMetrics(). PDFs without one don't measure anything.
+ * Its methods are called on the thread writing out the PDF, in the order the PDF is written, so they should be quick.
+ */
+public interface PdfMetrics
+{
+	//The phases of writing out a PDF, in the order they happen
+	int PHASE_HEADER = 0;
+	int PHASE_CATALOG = 1;
+	int PHASE_PAGES = 2;
+	int PHASE_STREAMS = 3;
+	int PHASE_FONTS = 4;
+	int PHASE_IMAGES = 5;
+	int PHASE_XREF = 6;
+
+	/**
+	 * Called when a phase of writing out the PDF is over
+	 * @param phase PHASE_HEADER, PHASE_CATALOG, PHASE_PAGES (the page tree and page dictionaries), PHASE_STREAMS (page content),
+	 * PHASE_FONTS (the resource dictionary and fonts), PHASE_IMAGES (images and templates) or PHASE_XREF (x-references and the footer).
+	 * For a PDF written out page by page (see Pdf.startWriting()), PHASE_STREAMS is all the time spent writing out pages (dictionaries too),
+	 * and comes right after PHASE_HEADER once Pdf.finishWriting() is called.
+	 * @param nanos
+	 */
+	void phaseFinished(int phase, long nanos);
+
+	/**
+	 * Called after each object has been written out.
+	 * Objects packed into an object stream are counted before compression, and the object stream is counted as an object too.
+	 * @param objectId
+	 * @param bytes
+	 */
+	void objectWritten(int objectId, long bytes);
+
+	/**
+	 * Called after the content stream of each page has been written out
+	 * @param pageNumber starting at 1, in the order pages are written out
+	 * @param contentBytes the length of the content stream's data, after compression
+	 */
+	void pageWritten(int pageNumber, long contentBytes);
+
+	/**
+	 * Called after each image (including the soft mask holding the alpha of another image) has been written out
+	 * @param objectId
+	 * @param bytes the length of the image data
+	 */
+	void imageWritten(int objectId, long bytes);
+
+	/**
+	 * Called once the whole PDF has been written out, not if writing failed
+	 * @param pageCount the number of pages written out (just the added ones for an update of an existing PDF)
+	 * @param bytes
+	 * @param nanos
+	 */
+	void documentWritten(int pageCount, long bytes, long nanos);
+}
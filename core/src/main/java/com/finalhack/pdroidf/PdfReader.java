@@ -0,0 +1,455 @@
+package com.finalhack.pdroidf;
+
+import static com.finalhack.pdroidf.Pdf.NEW_LINE;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * This class represents an internal data structure.
+ * Someone using this code to output a PDF doesn't need to worry about this class.
+ *
+ * Reads just enough of a PDF written by this library to append pages to it: the newest trailer, the catalog, and the root of the page tree.
+ * Only the x-reference sections and the few objects needed are read, never the whole file.
+ * Both classic x-reference tables and cross-reference streams (with object streams) can be read, including ones from earlier updates.
+ */
+public class PdfReader
+{
+	//The end of the file is searched for startxref
+	private static final int TAIL_SIZE = 1024;
+
+	//Objects are read in chunks of this size until their end is found
+	private static final int CHUNK_SIZE = 4096;
+
+	//Each entry of a classic x-reference table is exactly this many bytes
+	private static final int ENTRY_LENGTH = 20;
+
+	private static final String STREAM_START = ">>" + NEW_LINE + "stream" + NEW_LINE;
+
+	private FileChannel channel;
+	private long length;
+
+	//The newest x-reference section comes first, each later one is the /Prev of the one before it
+	private List<Section> sections = new ArrayList<Section>();
+	private boolean xrefStream;
+
+	//From the newest trailer
+	private int size;
+	private int rootObjectId;
+
+	//From the catalog and the root of the page tree
+	private int pagesObjectId;
+	private String kids;
+	private int pageCount;
+
+	/**
+	 * Read the structure of a PDF
+	 * @param channel
+	 * @throws IOException if the PDF can't be read, or wasn't written by this library
+	 */
+	public PdfReader(FileChannel channel) throws IOException
+	{
+		this.channel = channel;
+		this.length = channel.size();
+
+		//The offset of the newest x-reference section is at the very end
+		String tail = readText(Math.max(0, length - TAIL_SIZE), TAIL_SIZE);
+		int startXref = tail.lastIndexOf("startxref");
+		if (startXref < 0) throw new IOException("Not a PDF, startxref is missing");
+		long offset = parseNumbers(tail.substring(startXref + "startxref".length()), 1)[0];
+
+		for (long previous=offset;previous>=0;)
+		{
+			Section section = readSection(previous);
+			if (sections.isEmpty()) xrefStream = section.entries != null;
+			sections.add(section);
+
+			//Earlier sections always come earlier in the file, this also stops a loop of /Prev offsets
+			long next = getNumber(section.trailer, "/Prev", -1);
+			if (next >= previous) throw new IOException("Invalid /Prev offset: " + next);
+			previous = next;
+		}
+
+		String trailer = sections.get(0).trailer;
+		size = (int)getNumber(trailer, "/Size", -1);
+		rootObjectId = (int)getNumber(trailer, "/Root", -1);
+		if (size < 1 || rootObjectId < 1) throw new IOException("Invalid trailer: " + trailer);
+
+		pagesObjectId = (int)getNumber(readObject(rootObjectId), "/Pages", -1);
+		String pages = readObject(pagesObjectId);
+		kids = getArray(pages, "/Kids");
+		pageCount = (int)getNumber(pages, "/Count", -1);
+		if (kids == null || pageCount < 0) throw new IOException("Invalid page tree root: " + pages);
+	}
+
+	/**
+	 * Simple getter for the length of the file when it was read
+	 * @return
+	 */
+	protected long getLength() { return length; }
+
+	/**
+	 * Simple getter for the byte offset of the newest x-reference section
+	 * @return
+	 */
+	protected long getXrefOffset() { return sections.get(0).offset; }
+
+	/**
+	 * Check if the newest x-reference section is a cross-reference stream
+	 * @return
+	 */
+	protected boolean isXrefStream() { return xrefStream; }
+
+	/**
+	 * Simple getter for the number of x-reference entries, which is the first objectId free for new objects
+	 * @return
+	 */
+	protected int getSize() { return size; }
+
+	/**
+	 * Simple getter for the objectId of the catalog
+	 * @return
+	 */
+	protected int getRootObjectId() { return rootObjectId; }
+
+	/**
+	 * Simple getter for the objectId of the root of the page tree
+	 * @return
+	 */
+	protected int getPagesObjectId() { return pagesObjectId; }
+
+	/**
+	 * Simple getter for the references in the page tree root's /Kids, like: 5 0 R 9 0 R
+	 * @return
+	 */
+	protected String getKids() { return kids; }
+
+	/**
+	 * Simple getter for the number of pages
+	 * @return
+	 */
+	protected int getPageCount() { return pageCount; }
+
+	//Read the x-reference section at offset, either a classic table or a cross-reference stream
+	private Section readSection(long offset) throws IOException
+	{
+		Section section = new Section(offset);
+		long position = offset;
+		String line = readLine(position);
+		if (!line.equals("xref"))
+		{
+			//A cross-reference stream
+			StreamObject stream = readStream(offset);
+			section.trailer = stream.dictionary;
+			section.entries = stream.data;
+			long[] widths = parseNumbers(getArray(stream.dictionary, "/W"), 3);
+			section.widths = new int[] { (int)widths[0], (int)widths[1], (int)widths[2] };
+			String index = getArray(stream.dictionary, "/Index");
+			long[] runs = index != null ? parseNumbers(index, -1) : new long[] { 0, getNumber(stream.dictionary, "/Size", 0) };
+			long first = 0;
+			for (int i=0;i+1<runs.length;i+=2)
+			{
+				section.runs.add(new long[] { runs[i], runs[i + 1], first });
+				first += runs[i + 1];
+			}
+			return section;
+		}
+
+		//A classic table: subsections of a line like "0 12" followed by 20 byte entries, then the trailer
+		position += line.length() + 1;
+		while (true)
+		{
+			line = readLine(position);
+			position += line.length() + 1;
+			if (line.startsWith("trailer"))
+			{
+				String trailer = readText(position, TAIL_SIZE);
+				int end = trailer.indexOf("startxref");
+				section.trailer = end >= 0 ? trailer.substring(0, end) : trailer;
+				return section;
+			}
+
+			long[] run = parseNumbers(line, 2);
+			section.runs.add(new long[] { run[0], run[1], position });
+			position += run[1] * ENTRY_LENGTH;
+			if (position > length) throw new IOException("Truncated x-reference table at " + offset);
+		}
+	}
+
+	//Find where an object is, looking through the newest x-reference section first
+	private Location find(int objectId) throws IOException
+	{
+		for (Section section : sections)
+		{
+			for (long[] run : section.runs)
+			{
+				if (objectId < run[0] || objectId >= run[0] + run[1]) continue;
+				long entry = objectId - run[0];
+
+				if (section.entries == null)
+				{
+					String text = readText(run[2] + entry * ENTRY_LENGTH, ENTRY_LENGTH);
+					if (text.length() < ENTRY_LENGTH || text.charAt(17) != 'n') return null;
+					return new Location(parseNumbers(text, 1)[0], -1);
+				}
+
+				int[] widths = section.widths;
+				int position = (int)((run[2] + entry) * (widths[0] + widths[1] + widths[2]));
+				long type = widths[0] == 0 ? 1 : readField(section.entries, position, widths[0]);
+				long second = readField(section.entries, position + widths[0], widths[1]);
+				long third = readField(section.entries, position + widths[0] + widths[1], widths[2]);
+				if (type == 1) return new Location(second, -1);
+				if (type == 2) return new Location(second, (int)third);
+				return null;
+			}
+		}
+		return null;
+	}
+
+	//A big endian number from a cross-reference stream entry
+	private static long readField(ByteSink entries, int position, int width) throws IOException
+	{
+		if (position + width > entries.size()) throw new IOException("Truncated cross-reference stream");
+		byte[] buffer = entries.getBuffer();
+		long ret = 0;
+		for (int i=0;i<width;i++) ret = (ret << 8) | (buffer[position + i] & 0xFF);
+		return ret;
+	}
+
+	/**
+	 * Read an object that isn't a stream, checking that the x-reference data points at the right object
+	 * @param objectId
+	 * @return what is between obj and endobj
+	 * @throws IOException if the object is missing, or isn't where the x-reference data says it is
+	 */
+	protected String readObject(int objectId) throws IOException
+	{
+		Location location = find(objectId);
+		if (location == null) throw new IOException("Object " + objectId + " is missing");
+
+		//An object packed into an object stream, which starts with pairs of objectId and offset
+		if (location.index >= 0)
+		{
+			Location objectStream = find((int)location.offset);
+			if (objectStream == null || objectStream.index >= 0) throw new IOException("Object stream " + location.offset + " is missing");
+			StreamObject stream = readStream(objectStream.offset);
+			int count = (int)getNumber(stream.dictionary, "/N", -1);
+			int first = (int)getNumber(stream.dictionary, "/First", -1);
+			if (location.index >= count || first < 0 || first > stream.data.size()) throw new IOException("Invalid object stream: " + stream.dictionary);
+
+			String text = toText(stream.data.getBuffer(), 0, stream.data.size());
+			long[] pairs = parseNumbers(text.substring(0, first), count * 2);
+			if (pairs[location.index * 2] != objectId) throw new IOException("Object " + objectId + " isn't at index " + location.index + " of object stream " + location.offset);
+			int start = first + (int)pairs[location.index * 2 + 1];
+			int end = location.index + 1 < count ? first + (int)pairs[location.index * 2 + 3] : text.length();
+			return text.substring(start, end);
+		}
+
+		for (int chunk=CHUNK_SIZE;;chunk*=2)
+		{
+			String text = readText(location.offset, chunk);
+			if (!text.startsWith(objectId + " 0 obj")) throw new IOException("Object " + objectId + " isn't at " + location.offset);
+			int start = text.indexOf("obj");
+			int end = text.indexOf("endobj");
+			if (start >= 0 && end > start) return text.substring(start + "obj".length(), end);
+			if (location.offset + text.length() >= length) throw new IOException("Object " + objectId + " is truncated");
+		}
+	}
+
+	//Read a stream object, inflating its data if it is compressed
+	private StreamObject readStream(long offset) throws IOException
+	{
+		for (int chunk=CHUNK_SIZE;;chunk*=2)
+		{
+			String text = readText(offset, chunk);
+			int start = text.indexOf("obj");
+			int end = text.indexOf(STREAM_START);
+			if (start < 0 || end < 0)
+			{
+				if (offset + text.length() >= length) throw new IOException("Invalid stream at " + offset);
+				continue;
+			}
+
+			StreamObject ret = new StreamObject();
+			ret.dictionary = text.substring(start + "obj".length(), end + 2);
+			long dataLength = getNumber(ret.dictionary, "/Length", -1);
+			if (dataLength < 0 || dataLength > Integer.MAX_VALUE) throw new IOException("Invalid stream length at " + offset);
+			byte[] data = read(offset + end + STREAM_START.length(), (int)dataLength);
+			if (data.length < dataLength) throw new IOException("Truncated stream at " + offset);
+
+			if (ret.dictionary.indexOf("/FlateDecode") >= 0) ret.data = inflate(data);
+			else
+			{
+				ret.data = new ByteSink(data.length);
+				ret.data.write(data);
+			}
+			return ret;
+		}
+	}
+
+	private static ByteSink inflate(byte[] data) throws IOException
+	{
+		Inflater inflater = new Inflater();
+		try
+		{
+			inflater.setInput(data);
+			ByteSink ret = new ByteSink(data.length * 4);
+			byte[] chunk = new byte[CHUNK_SIZE];
+			while (!inflater.finished())
+			{
+				int count = inflater.inflate(chunk);
+				if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) throw new IOException("Truncated compressed stream");
+				ret.write(chunk, 0, count);
+			}
+			return ret;
+		}
+		catch (DataFormatException e)
+		{
+			throw new IOException(e);
+		}
+		finally
+		{
+			inflater.end();
+		}
+	}
+
+	//Read a single line starting at position, without its line feed
+	private String readLine(long position) throws IOException
+	{
+		String text = readText(position, 64);
+		int end = text.indexOf(NEW_LINE);
+		return end >= 0 ? text.substring(0, end) : text;
+	}
+
+	//Read up to length bytes starting at position as ISO-8859-1 text, less if the file ends first
+	private String readText(long position, int length) throws IOException
+	{
+		byte[] bytes = read(position, length);
+		return toText(bytes, 0, bytes.length);
+	}
+
+	private static String toText(byte[] bytes, int offset, int length)
+	{
+		char[] chars = new char[length];
+		for (int i=0;i<length;i++) chars[i] = (char)(bytes[offset + i] & 0xFF);
+		return new String(chars);
+	}
+
+	//Read up to length bytes starting at position, less if the file ends first
+	private byte[] read(long position, int length) throws IOException
+	{
+		if (position < 0 || position > this.length) throw new IOException("Invalid offset: " + position);
+		ByteBuffer buffer = ByteBuffer.allocate((int)Math.min(length, this.length - position));
+		while (buffer.hasRemaining())
+		{
+			if (channel.read(buffer, position + buffer.position()) < 0) throw new IOException("Unexpected end of file");
+		}
+		return buffer.array();
+	}
+
+	//The position right after key in a dictionary, or -1 if it isn't there
+	private static int findKey(String dictionary, String key)
+	{
+		for (int i=dictionary.indexOf(key);i>=0;i=dictionary.indexOf(key, i + 1))
+		{
+			int end = i + key.length();
+			if (end == dictionary.length() || !Character.isLetterOrDigit(dictionary.charAt(end))) return end;
+		}
+		return -1;
+	}
+
+	//The number (or the objectId of the reference) after key in a dictionary
+	private static long getNumber(String dictionary, String key, long missing) throws IOException
+	{
+		int position = findKey(dictionary, key);
+		if (position < 0) return missing;
+		return parseNumbers(dictionary.substring(position), 1)[0];
+	}
+
+	//What is between the brackets of the array after key in a dictionary, or null if it isn't there
+	private static String getArray(String dictionary, String key)
+	{
+		int position = findKey(dictionary, key);
+		if (position < 0) return null;
+		int start = dictionary.indexOf('[', position);
+		int end = dictionary.indexOf(']', position);
+		if (start < 0 || end < start) return null;
+		return dictionary.substring(start + 1, end).trim();
+	}
+
+	//The first count whole numbers in text (all of them if count is -1), skipping anything else
+	private static long[] parseNumbers(String text, int count) throws IOException
+	{
+		long[] ret = new long[count >= 0 ? count : 8];
+		int found = 0;
+		int i = 0;
+		while (i < text.length() && found != count)
+		{
+			if (!Character.isDigit(text.charAt(i)))
+			{
+				i++;
+				continue;
+			}
+
+			long value = 0;
+			while (i < text.length() && Character.isDigit(text.charAt(i))) value = value * 10 + (text.charAt(i++) - '0');
+			if (found == ret.length) ret = Arrays.copyOf(ret, found * 2);
+			ret[found++] = value;
+		}
+
+		if (count >= 0 && found < count) throw new IOException("Expected " + count + " numbers in: " + text);
+		return count >= 0 ? ret : Arrays.copyOf(ret, found);
+	}
+
+	/**
+	 * A simple inner class to hold one x-reference section and its trailer
+	 */
+	private static class Section
+	{
+		private long offset;
+
+		//The runs of objectIds in the section: the first objectId, the number of entries,
+		//and where the entries start (a byte offset for a classic table, an entry number for a cross-reference stream)
+		private List<long[]> runs = new ArrayList<long[]>();
+
+		//The trailer dictionary, or the cross-reference stream's dictionary
+		private String trailer;
+
+		//For a cross-reference stream, the decoded entries and the widths of their three fields
+		private ByteSink entries;
+		private int[] widths;
+
+		public Section(long offset) { this.offset = offset; }
+	}
+
+	/**
+	 * A simple inner class to hold where an object is:
+	 * its byte offset, or the objectId of the object stream holding it and its index there
+	 */
+	private static class Location
+	{
+		private long offset;
+		private int index;
+
+		public Location(long offset, int index)
+		{
+			this.offset = offset;
+			this.index = index;
+		}
+	}
+
+	/**
+	 * A simple inner class to hold a stream's dictionary and its decoded data
+	 */
+	private static class StreamObject
+	{
+		private String dictionary;
+		private ByteSink data;
+	}
+}
@@ -0,0 +1,483 @@
+package com.finalhack.pdroidf;
+
+import static com.finalhack.pdroidf.Pdf.NEW_LINE;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+
+/**
+ * This class represents an internal data structure.
+ * Someone using this code to output a PDF doesn't need to worry about this class.
+ *
+ * Writes PDF objects straight to an OutputStream or a channel while counting bytes, so that x-reference offsets are known
+ * without ever holding the whole document in memory.
+ * Small pieces of data are collected in a small buffer, large pieces (like Stream data) are passed through as-is.
+ * A channel (like a FileChannel) gets a large piece together with the buffered data before it in a single gathering write.
+ *
+ * When object streams are turned on, objects that aren't streams are packed into compressed /ObjStm object streams,
+ * and the x-reference data is written as a compressed cross-reference stream (PDF 1.5) instead of a classic table.
+ */
+public class PdfWriter
+{
+	//Small writes are collected until there is about this much data
+	private static final int BUFFER_SIZE = 8192;
+
+	//The most objects packed into a single object stream
+	private static final int OBJECTS_PER_STREAM = 100;
+
+	private static final String PDF_FOOTER = "%%EOF";
+
+	//Data goes out to one of these
+	private OutputStream outputStream;
+	private GatheringByteChannel channel;
+	private ByteSink buffer = new ByteSink(BUFFER_SIZE);
+
+	//Data read from an InputStream passes through this on its way out
+	private byte[] copyBuffer;
+
+	//The number of bytes written so far, which is the byte offset of whatever gets written next
+	private long position;
+
+	//Every object written is recorded here
+	private Xref xref;
+
+	//Objects the writer creates itself (like object streams) get objectIds starting here,
+	//or from the document's own counter when it is written out while pages are still being added
+	private int nextObjectId;
+	private AtomicInteger documentObjectIds;
+
+	//Compression, content streams are only compressed if setCompression() is called
+	private Deflater deflater;
+	private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+	private boolean compressContent;
+	private int compressionThreshold;
+	private ByteSink compressed;
+
+	//The object stream currently being filled, if object streams are turned on
+	private boolean useObjectStreams;
+	private int objectStreamId;
+	private int objectStreamCount;
+	private ByteSink objectStreamOffsets;
+	private ByteSink objectStreamObjects;
+
+	//Told the size of every object written, if it is set
+	private PdfMetrics metrics;
+
+	/**
+	 * Construct a writer that writes to outputStream and records object offsets in xref
+	 * @param outputStream
+	 * @param xref
+	 * @param nextObjectId the first objectId not used by the document
+	 */
+	public PdfWriter(OutputStream outputStream, Xref xref, int nextObjectId)
+	{
+		this.outputStream = outputStream;
+		this.xref = xref;
+		this.nextObjectId = nextObjectId;
+	}
+
+	/**
+	 * Construct a writer that writes to channel and records object offsets in xref
+	 * @param channel
+	 * @param xref
+	 * @param nextObjectId the first objectId not used by the document
+	 */
+	public PdfWriter(GatheringByteChannel channel, Xref xref, int nextObjectId)
+	{
+		this.channel = channel;
+		this.xref = xref;
+		this.nextObjectId = nextObjectId;
+	}
+
+	/**
+	 * Start writing another document, keeping the buffers and the Deflater from the documents before
+	 * @param outputStream null if channel is used
+	 * @param channel null if outputStream is used
+	 * @param nextObjectId the first objectId not used by the document
+	 */
+	protected void reuse(OutputStream outputStream, GatheringByteChannel channel, int nextObjectId)
+	{
+		this.outputStream = outputStream;
+		this.channel = channel;
+		this.nextObjectId = nextObjectId;
+		documentObjectIds = null;
+		buffer.reset();
+		position = 0;
+		compressContent = false;
+		compressionThreshold = 0;
+
+		//Font files are compressed even without setCompression(), at the level a new writer would use
+		if (compressionLevel != Deflater.DEFAULT_COMPRESSION)
+		{
+			compressionLevel = Deflater.DEFAULT_COMPRESSION;
+			if (deflater != null) deflater.setLevel(compressionLevel);
+		}
+		useObjectStreams = false;
+		objectStreamCount = 0;
+		if (objectStreamOffsets != null)
+		{
+			objectStreamOffsets.reset();
+			objectStreamObjects.reset();
+		}
+	}
+
+	/**
+	 * Turn on /FlateDecode compression for content streams that hold at least minimumSize bytes
+	 * @param level a java.util.zip.Deflater compression level
+	 * @param minimumSize
+	 */
+	protected void setCompression(int level, int minimumSize)
+	{
+		compressionLevel = level;
+		if (deflater != null) deflater.setLevel(level);
+		compressContent = true;
+		compressionThreshold = minimumSize;
+	}
+
+	/**
+	 * Turn on packing objects into object streams, and writing x-reference data as a cross-reference stream
+	 * @param useObjectStreams
+	 */
+	protected void setObjectStreams(boolean useObjectStreams) { this.useObjectStreams = useObjectStreams; }
+
+	/**
+	 * Take the objectIds of objects the writer creates itself from the document's counter,
+	 * for a document that is written out while pages are still being added to it
+	 * @param currentObjectId
+	 */
+	protected void shareObjectIds(AtomicInteger currentObjectId) { this.documentObjectIds = currentObjectId; }
+
+	//The objectId for an object the writer creates itself
+	private int newObjectId() { return documentObjectIds != null ? documentObjectIds.getAndAdd(1) : nextObjectId++; }
+
+	/**
+	 * Simple setter for what is told the size of every object written
+	 * @param metrics may be null
+	 */
+	protected void setMetrics(PdfMetrics metrics) { this.metrics = metrics; }
+
+	/**
+	 * Simple getter for what is told the size of every object written
+	 * @return null if nothing is measured
+	 */
+	protected PdfMetrics getMetrics() { return metrics; }
+
+	/**
+	 * Check if content stream data of the given size should be compressed
+	 * @param size
+	 * @return
+	 */
+	protected boolean shouldCompress(int size) { return compressContent && size >= compressionThreshold; }
+
+	/**
+	 * Compress data for use with /FlateDecode.
+	 * The returned sink is reused, so it is only valid until the next call.
+	 * @param data
+	 * @return
+	 */
+	protected ByteSink compress(ByteSink data) { return compress(data.getBuffer(), 0, data.size()); }
+
+	/**
+	 * Compress data for use with /FlateDecode.
+	 * The returned sink is reused, so it is only valid until the next call.
+	 * @param bytes
+	 * @param offset
+	 * @param length
+	 * @return
+	 */
+	protected ByteSink compress(byte[] bytes, int offset, int length)
+	{
+		if (deflater == null)
+		{
+			deflater = new Deflater(compressionLevel);
+			compressed = new ByteSink();
+		}
+		compressed.reset();
+		compressed.writeDeflated(deflater, bytes, offset, length);
+		return compressed;
+	}
+
+	/**
+	 * Start counting bytes at position instead of 0, for data that goes after existing data (like an incremental update)
+	 * @param position
+	 */
+	protected void setPosition(long position) { this.position = position; }
+
+	/**
+	 * Simple getter for the byte offset of whatever gets written next
+	 * @return
+	 */
+	protected long getPosition() { return position; }
+
+	/**
+	 * Simple getter for the x-reference data of everything written so far
+	 * @return
+	 */
+	protected Xref getXref() { return xref; }
+
+	/**
+	 * Record that the object with objectId starts at the current position.
+	 * Call this right before writing out the object.
+	 * @param objectId
+	 */
+	protected void beginObject(int objectId) { xref.addXref(objectId, position); }
+
+	/**
+	 * Write out an object that isn't a stream, like a dictionary.
+	 * The writer wraps it up as an indirect object, or packs it into an object stream.
+	 * @param objectId
+	 * @param object the object itself, like << /Type /Page ... >>
+	 * @throws IOException
+	 */
+	protected void writeObject(int objectId, String object) throws IOException
+	{
+		if (useObjectStreams)
+		{
+			if (metrics != null) metrics.objectWritten(objectId, object.length());
+			addToObjectStream(objectId, object);
+			return;
+		}
+
+		long start = position;
+		beginObject(objectId);
+		write(objectId + " 0 obj" + NEW_LINE);
+		write(object);
+		write("endobj" + NEW_LINE + NEW_LINE);
+		if (metrics != null) metrics.objectWritten(objectId, position - start);
+	}
+
+	/**
+	 * Write out a stream object
+	 * @param objectId
+	 * @param dictionary the stream dictionary, which must hold the correct /Length
+	 * @param data
+	 * @throws IOException
+	 */
+	protected void writeStream(int objectId, String dictionary, ByteSink data) throws IOException
+	{
+		writeStream(objectId, dictionary, data.getBuffer(), 0, data.size());
+	}
+
+	/**
+	 * Write out a stream object
+	 * @param objectId
+	 * @param dictionary the stream dictionary, which must hold the correct /Length
+	 * @param data
+	 * @param offset
+	 * @param length
+	 * @throws IOException
+	 */
+	protected void writeStream(int objectId, String dictionary, byte[] data, int offset, int length) throws IOException
+	{
+		long start = position;
+		beginObject(objectId);
+		write(objectId + " 0 obj" + NEW_LINE);
+		write(dictionary);
+		write("stream" + NEW_LINE);
+		write(data, offset, length);
+		write(NEW_LINE + "endstream" + NEW_LINE + "endobj" + NEW_LINE);
+		if (metrics != null) metrics.objectWritten(objectId, position - start);
+	}
+
+	/**
+	 * Write out a stream object whose data is read from inputStream as it is written
+	 * @param objectId
+	 * @param dictionary the stream dictionary, which must hold the correct /Length (or an indirect reference to it)
+	 * @param inputStream
+	 * @param maxLength no more than this many bytes are read
+	 * @return the number of bytes of data written
+	 * @throws IOException
+	 */
+	protected long writeStream(int objectId, String dictionary, InputStream inputStream, long maxLength) throws IOException
+	{
+		if (copyBuffer == null) copyBuffer = new byte[BUFFER_SIZE];
+
+		long start = position;
+		beginObject(objectId);
+		write(objectId + " 0 obj" + NEW_LINE);
+		write(dictionary);
+		write("stream" + NEW_LINE);
+		long copied = 0;
+		while (copied < maxLength)
+		{
+			int count = inputStream.read(copyBuffer, 0, (int)Math.min(copyBuffer.length, maxLength - copied));
+			if (count < 0) break;
+			write(copyBuffer, 0, count);
+			copied += count;
+		}
+		write(NEW_LINE + "endstream" + NEW_LINE + "endobj" + NEW_LINE);
+		if (metrics != null) metrics.objectWritten(objectId, position - start);
+		return copied;
+	}
+
+	//Add an object to the current object stream, starting a new one if needed
+	private void addToObjectStream(int objectId, String object) throws IOException
+	{
+		if (objectStreamOffsets == null)
+		{
+			objectStreamOffsets = new ByteSink();
+			objectStreamObjects = new ByteSink();
+		}
+		if (objectStreamCount == 0) objectStreamId = newObjectId();
+
+		//The object stream starts with pairs of objectId and offset, followed by the objects themselves
+		xref.addCompressedXref(objectId, objectStreamId, objectStreamCount);
+		objectStreamOffsets.write(objectId + " " + objectStreamObjects.size() + " ");
+		objectStreamObjects.write(object);
+		objectStreamCount++;
+
+		if (objectStreamCount == OBJECTS_PER_STREAM) flushObjectStream();
+	}
+
+	//Write out the current object stream, if it holds anything
+	private void flushObjectStream() throws IOException
+	{
+		if (objectStreamCount == 0) return;
+
+		int first = objectStreamOffsets.size();
+		objectStreamOffsets.write(objectStreamObjects);
+		ByteSink data = compress(objectStreamOffsets);
+
+		StringBuilder ret = new StringBuilder();
+		ret.append("<<").append(NEW_LINE);
+		ret.append("  /Type /ObjStm").append(NEW_LINE);
+		ret.append("  /N " + objectStreamCount).append(NEW_LINE);
+		ret.append("  /First " + first).append(NEW_LINE);
+		ret.append("  /Filter /FlateDecode").append(NEW_LINE);
+		ret.append("  /Length " + data.size()).append(NEW_LINE);
+		ret.append(">>").append(NEW_LINE);
+		writeStream(objectStreamId, ret.toString(), data);
+
+		objectStreamOffsets.reset();
+		objectStreamObjects.reset();
+		objectStreamCount = 0;
+	}
+
+	/**
+	 * Write out the x-reference data, the trailer and the footer, and flush everything out.
+	 * This finishes the document, nothing may be written after this.
+	 * @param rootObjectId the objectId of the document's Catalog
+	 * @throws IOException
+	 */
+	protected void finishDocument(int rootObjectId) throws IOException
+	{
+		if (useObjectStreams)
+		{
+			flushObjectStream();
+
+			//The cross-reference stream lists itself too
+			int xrefStreamId = newObjectId();
+			xref.setRefOffset(position);
+			beginObject(xrefStreamId);
+			xref.writeStreamTo(this, xrefStreamId, rootObjectId);
+		}
+		else
+		{
+			xref.setRefOffset(position);
+			xref.writeTo(this, rootObjectId);
+		}
+
+		write(PDF_FOOTER);
+		flush();
+	}
+
+	/**
+	 * Write out a single byte
+	 * @param b
+	 * @throws IOException
+	 */
+	protected void write(int b) throws IOException
+	{
+		buffer.write(b);
+		position++;
+		if (buffer.size() >= BUFFER_SIZE) flushBuffer();
+	}
+
+	/**
+	 * Write out a String encoded as ISO-8859-1
+	 * @param text
+	 * @throws IOException
+	 */
+	protected void write(String text) throws IOException
+	{
+		buffer.write(text);
+		position += text.length();
+		if (buffer.size() >= BUFFER_SIZE) flushBuffer();
+	}
+
+	/**
+	 * Write out length bytes of an array, starting at offset
+	 * @param bytes
+	 * @param offset
+	 * @param length
+	 * @throws IOException
+	 */
+	protected void write(byte[] bytes, int offset, int length) throws IOException
+	{
+		//Large data is not copied into the buffer, it goes straight out
+		if (length >= BUFFER_SIZE && channel != null) writeGathered(bytes, offset, length);
+		else if (length >= BUFFER_SIZE)
+		{
+			flushBuffer();
+			outputStream.write(bytes, offset, length);
+		}
+		else
+		{
+			buffer.write(bytes, offset, length);
+			if (buffer.size() >= BUFFER_SIZE) flushBuffer();
+		}
+		position += length;
+	}
+
+	/**
+	 * Write out everything a sink holds
+	 * @param sink
+	 * @throws IOException
+	 */
+	protected void write(ByteSink sink) throws IOException { write(sink.getBuffer(), 0, sink.size()); }
+
+	/**
+	 * Push all buffered data out to the underlying OutputStream or channel
+	 * @throws IOException
+	 */
+	protected void flush() throws IOException
+	{
+		flushBuffer();
+		if (outputStream != null) outputStream.flush();
+	}
+
+	/**
+	 * Release everything the writer holds on to, this must be called even if writing failed.
+	 * Nothing may be written after this.
+	 */
+	protected void release()
+	{
+		if (deflater != null) deflater.end();
+		deflater = null;
+	}
+
+	private void flushBuffer() throws IOException
+	{
+		if (buffer.size() == 0) return;
+		if (channel != null)
+		{
+			ByteBuffer data = ByteBuffer.wrap(buffer.getBuffer(), 0, buffer.size());
+			while (data.hasRemaining()) channel.write(data);
+		}
+		else buffer.writeTo(outputStream);
+		buffer.reset();
+	}
+
+	//Write out the buffered data followed by bytes in a single gathering write, without copying bytes anywhere
+	private void writeGathered(byte[] bytes, int offset, int length) throws IOException
+	{
+		ByteBuffer[] data = { ByteBuffer.wrap(buffer.getBuffer(), 0, buffer.size()), ByteBuffer.wrap(bytes, offset, length) };
+		while (data[1].hasRemaining()) channel.write(data);
+		buffer.reset();
+	}
+}
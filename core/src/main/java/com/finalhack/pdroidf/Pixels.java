@@ -0,0 +1,136 @@
+package com.finalhack.pdroidf;
+
+/**
+ * An image made of raw 8 bit pixels (gray, RGB, or indexed into a palette), with optional alpha.
+ * Rows go from the top of the image to the bottom, with no padding between them.
+ * The pixels are compressed losslessly (/FlateDecode) when the PDF is written out, so they must not change until then.
+ * Add it to a page with Stream.addPixels(). A Pixels object is only written out once per PDF, no matter how many times it is added.
+ */
+public class Pixels
+{
+	public static final int GRAY = 1;
+	public static final int RGB = 3;
+
+	//Most colors an indexed image can have
+	private static final int MAX_PALETTE_SIZE = 256;
+
+	private byte[] data;
+	private int width;
+	private int height;
+	private int components;
+	private byte[] palette;
+	private byte[] alpha;
+
+	/**
+	 * Construct gray or RGB pixels
+	 * @param data one byte per component of each pixel, like R G B R G B...
+	 * @param width
+	 * @param height
+	 * @param components GRAY or RGB
+	 * @throws IllegalArgumentException if data doesn't hold width x height pixels
+	 */
+	public Pixels(byte[] data, int width, int height, int components)
+	{
+		if (components != GRAY && components != RGB) throw new IllegalArgumentException("Invalid number of components: " + components);
+		if (width <= 0 || height <= 0 || data.length != (long)width * height * components) throw new IllegalArgumentException("Expected " + width + "x" + height + " pixels with " + components + " components, got " + data.length + " bytes");
+		this.data = data;
+		this.width = width;
+		this.height = height;
+		this.components = components;
+	}
+
+	/**
+	 * Construct pixels which are indexes into a palette, which keeps images with few colors (like charts) small
+	 * @param indexes one byte per pixel
+	 * @param width
+	 * @param height
+	 * @param palette RGB triplets, at most 256 of them
+	 * @return
+	 * @throws IllegalArgumentException if indexes doesn't hold width x height pixels, or the palette is invalid
+	 */
+	public static Pixels indexed(byte[] indexes, int width, int height, byte[] palette)
+	{
+		if (palette.length == 0 || palette.length % 3 != 0 || palette.length > MAX_PALETTE_SIZE * 3) throw new IllegalArgumentException("Invalid palette length: " + palette.length);
+		Pixels pixels = new Pixels(indexes, width, height, GRAY);
+		pixels.palette = palette;
+		return pixels;
+	}
+
+	/**
+	 * Construct RGB pixels from packed ARGB ints, like those from android.graphics.Bitmap.getPixels() or java.awt.image.BufferedImage.getRGB().
+	 * The alpha of the pixels is only kept if some of them aren't opaque.
+	 * @param argb one int per pixel
+	 * @param width
+	 * @param height
+	 * @return
+	 * @throws IllegalArgumentException if argb doesn't hold width x height pixels
+	 */
+	public static Pixels fromArgb(int[] argb, int width, int height)
+	{
+		if (width <= 0 || height <= 0 || argb.length != (long)width * height) throw new IllegalArgumentException("Expected " + width + "x" + height + " pixels, got " + argb.length);
+
+		byte[] rgb = new byte[argb.length * 3];
+		byte[] alpha = new byte[argb.length];
+		boolean opaque = true;
+		for (int i=0;i<argb.length;i++)
+		{
+			int pixel = argb[i];
+			rgb[i * 3] = (byte)(pixel >> 16);
+			rgb[i * 3 + 1] = (byte)(pixel >> 8);
+			rgb[i * 3 + 2] = (byte)pixel;
+			alpha[i] = (byte)(pixel >>> 24);
+			if (alpha[i] != (byte)0xFF) opaque = false;
+		}
+
+		Pixels pixels = new Pixels(rgb, width, height, RGB);
+		if (!opaque) pixels.alpha = alpha;
+		return pixels;
+	}
+
+	/**
+	 * Give the pixels transparency
+	 * @param alpha one byte per pixel, from 0 (transparent) to 255 (opaque), or null for none
+	 * @throws IllegalArgumentException if alpha doesn't hold width x height pixels
+	 */
+	public void setAlpha(byte[] alpha)
+	{
+		if (alpha != null && alpha.length != (long)width * height) throw new IllegalArgumentException("Expected " + width + "x" + height + " alpha values, got " + alpha.length);
+		this.alpha = alpha;
+	}
+
+	/**
+	 * Simple getter for the pixel data
+	 * @return
+	 */
+	protected byte[] getData() { return data; }
+
+	/**
+	 * Simple getter for the width in pixels
+	 * @return
+	 */
+	protected int getWidth() { return width; }
+
+	/**
+	 * Simple getter for the height in pixels
+	 * @return
+	 */
+	protected int getHeight() { return height; }
+
+	/**
+	 * Simple getter for the number of components per pixel
+	 * @return
+	 */
+	protected int getComponents() { return components; }
+
+	/**
+	 * Simple getter for the palette
+	 * @return RGB triplets, or null if the pixels aren't indexed
+	 */
+	protected byte[] getPalette() { return palette; }
+
+	/**
+	 * Simple getter for the alpha of each pixel
+	 * @return null if the pixels are opaque
+	 */
+	protected byte[] getAlpha() { return alpha; }
+}
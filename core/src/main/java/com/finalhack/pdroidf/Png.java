@@ -0,0 +1,267 @@
+package com.finalhack.pdroidf;
+
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * This class represents an internal data structure.
+ * Someone using this code to output a PDF doesn't need to worry about this class.
+ *
+ * Reads the chunks of a PNG file that a PDF needs (IHDR, PLTE, tRNS and IDAT).
+ * The IDAT data is a zlib stream of scanlines with PNG filters, which PDF readers can decode themselves with
+ * /FlateDecode and a PNG /Predictor, so it is only ever decompressed when an alpha channel has to be split out of it.
+ */
+public class Png
+{
+	private static final byte[] SIGNATURE = { (byte)137, 'P', 'N', 'G', 13, 10, 26, 10 };
+
+	//Chunk types
+	private static final int IHDR = 0x49484452;
+	private static final int PLTE = 0x504C5445;
+	private static final int TRNS = 0x74524E53;
+	private static final int IDAT = 0x49444154;
+	private static final int IEND = 0x49454E44;
+
+	//Color types
+	protected static final int GRAY = 0;
+	protected static final int RGB = 2;
+	protected static final int INDEXED = 3;
+	protected static final int GRAY_ALPHA = 4;
+	protected static final int RGB_ALPHA = 6;
+
+	//Scanline filters
+	private static final int FILTER_SUB = 1;
+	private static final int FILTER_UP = 2;
+	private static final int FILTER_AVERAGE = 3;
+	private static final int FILTER_PAETH = 4;
+
+	//The largest array a JVM can make, and the most a zlib stream can expand to (about 1032:1 for data that is all the same byte)
+	private static final long MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+	private static final long MAX_DEFLATE_RATIO = 1032;
+
+	//Header info
+	private int width;
+	private int height;
+	private int bitDepth;
+	private int colorType;
+
+	//The palette (RGB triplets) and transparency chunk, if there are any
+	private byte[] palette;
+	private byte[] transparency;
+
+	//All IDAT chunks joined together
+	private ByteSink data = new ByteSink();
+
+	/**
+	 * Read a PNG file
+	 * @param bytes
+	 * @throws IllegalArgumentException if the data isn't a PNG that can be used
+	 */
+	public Png(byte[] bytes)
+	{
+		if (!isPng(bytes)) throw new IllegalArgumentException("Not a PNG image");
+		try
+		{
+			readChunks(bytes);
+		}
+		catch (ArrayIndexOutOfBoundsException e)
+		{
+			throw new IllegalArgumentException("Truncated PNG image", e);
+		}
+	}
+
+	/**
+	 * Check if data starts like a PNG file
+	 * @param bytes
+	 * @return
+	 */
+	protected static boolean isPng(byte[] bytes)
+	{
+		if (bytes.length < SIGNATURE.length) return false;
+		for (int i=0;i<SIGNATURE.length;i++) if (bytes[i] != SIGNATURE[i]) return false;
+		return true;
+	}
+
+	private void readChunks(byte[] bytes)
+	{
+		int offset = SIGNATURE.length;
+		boolean ended = false;
+		while (!ended)
+		{
+			int length = (int)u32(bytes, offset);
+			int type = (int)u32(bytes, offset + 4);
+			int start = offset + 8;
+			if (length < 0 || length > bytes.length - start) throw new IllegalArgumentException("Truncated PNG image");
+
+			if (type == IHDR)
+			{
+				width = (int)u32(bytes, start);
+				height = (int)u32(bytes, start + 4);
+				bitDepth = bytes[start + 8] & 0xFF;
+				colorType = bytes[start + 9] & 0xFF;
+				if (bytes[start + 12] != 0) throw new IllegalArgumentException("Interlaced PNG images aren't supported");
+			}
+			else if (type == PLTE) palette = copy(bytes, start, length);
+			else if (type == TRNS) transparency = copy(bytes, start, length);
+			else if (type == IDAT) data.write(bytes, start, length);
+			else if (type == IEND) ended = true;
+
+			//Skip the CRC too
+			offset = start + length + 4;
+		}
+
+		if (width <= 0 || height <= 0) throw new IllegalArgumentException("PNG image has no size");
+		if (colorType == INDEXED && palette == null) throw new IllegalArgumentException("PNG image has no palette");
+		if (colorType != GRAY && colorType != RGB && colorType != INDEXED && colorType != GRAY_ALPHA && colorType != RGB_ALPHA) throw new IllegalArgumentException("Unknown PNG color type: " + colorType);
+		if (data.size() == 0) throw new IllegalArgumentException("PNG image has no image data");
+	}
+
+	/**
+	 * Simple getter for the width in pixels
+	 * @return
+	 */
+	protected int getWidth() { return width; }
+
+	/**
+	 * Simple getter for the height in pixels
+	 * @return
+	 */
+	protected int getHeight() { return height; }
+
+	/**
+	 * Simple getter for the bits per sample (1, 2, 4, 8 or 16)
+	 * @return
+	 */
+	protected int getBitDepth() { return bitDepth; }
+
+	/**
+	 * Simple getter for the color type, like RGB or INDEXED
+	 * @return
+	 */
+	protected int getColorType() { return colorType; }
+
+	/**
+	 * Simple getter for the palette
+	 * @return RGB triplets, or null if the image isn't INDEXED
+	 */
+	protected byte[] getPalette() { return palette; }
+
+	/**
+	 * Simple getter for the tRNS chunk: a color that is transparent for GRAY and RGB images, or the alpha of each palette entry for INDEXED images
+	 * @return null if there is no tRNS chunk
+	 */
+	protected byte[] getTransparency() { return transparency; }
+
+	/**
+	 * Simple getter for the zlib compressed image data
+	 * @return
+	 */
+	protected ByteSink getData() { return data; }
+
+	/**
+	 * Check if every pixel has an alpha sample, which has to be split out of the image data
+	 * @return
+	 */
+	protected boolean hasAlphaChannel() { return colorType == GRAY_ALPHA || colorType == RGB_ALPHA; }
+
+	/**
+	 * Get the number of color samples per pixel, not counting alpha
+	 * @return
+	 */
+	protected int getColors() { return colorType == RGB || colorType == RGB_ALPHA ? 3 : 1; }
+
+	//The number of samples per pixel, counting alpha
+	private int getChannels()
+	{
+		if (colorType == RGB_ALPHA) return 4;
+		if (colorType == RGB) return 3;
+		if (colorType == GRAY_ALPHA) return 2;
+		return 1;
+	}
+
+	/**
+	 * Decompress and unfilter the image data
+	 * @return rows of samples, each row starting on a byte boundary, without filter type bytes
+	 * @throws IllegalArgumentException if the image data is corrupt
+	 */
+	protected byte[] decode()
+	{
+		int bitsPerPixel = getChannels() * bitDepth;
+
+		//Each row starts with its filter type
+		//The size comes from the header, so it is checked against what the image data can hold before anything that big is made
+		long filteredLength = (((long)width * bitsPerPixel + 7) / 8 + 1) * height;
+		if (filteredLength > MAX_ARRAY_LENGTH || (long)width * height * getChannels() > MAX_ARRAY_LENGTH) throw new IllegalArgumentException("PNG image too large: " + width + "x" + height);
+		if (filteredLength > (long)data.size() * MAX_DEFLATE_RATIO) throw new IllegalArgumentException("Truncated PNG image data");
+		int rowLength = (int)(filteredLength / height) - 1;
+		int bytesPerPixel = Math.max(1, bitsPerPixel / 8);
+		byte[] filtered = new byte[(int)filteredLength];
+		Inflater inflater = new Inflater();
+		try
+		{
+			inflater.setInput(data.getBuffer(), 0, data.size());
+			int read = 0;
+			while (read < filtered.length && !inflater.finished())
+			{
+				int count = inflater.inflate(filtered, read, filtered.length - read);
+				if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+				read += count;
+			}
+			if (read < filtered.length) throw new IllegalArgumentException("Truncated PNG image data");
+		}
+		catch (DataFormatException e)
+		{
+			throw new IllegalArgumentException("Corrupt PNG image data", e);
+		}
+		finally
+		{
+			inflater.end();
+		}
+
+		byte[] rows = new byte[rowLength * height];
+		for (int y=0;y<height;y++)
+		{
+			int filter = filtered[y * (rowLength + 1)];
+			int in = y * (rowLength + 1) + 1;
+			int out = y * rowLength;
+			for (int x=0;x<rowLength;x++)
+			{
+				int raw = filtered[in + x] & 0xFF;
+				int left = x >= bytesPerPixel ? rows[out + x - bytesPerPixel] & 0xFF : 0;
+				int up = y > 0 ? rows[out + x - rowLength] & 0xFF : 0;
+				int upLeft = x >= bytesPerPixel && y > 0 ? rows[out + x - rowLength - bytesPerPixel] & 0xFF : 0;
+				if (filter == FILTER_SUB) raw += left;
+				else if (filter == FILTER_UP) raw += up;
+				else if (filter == FILTER_AVERAGE) raw += (left + up) / 2;
+				else if (filter == FILTER_PAETH) raw += paeth(left, up, upLeft);
+				else if (filter != 0) throw new IllegalArgumentException("Unknown PNG filter: " + filter);
+				rows[out + x] = (byte)raw;
+			}
+		}
+		return rows;
+	}
+
+	//The neighbor closest to left + up - upLeft
+	private static int paeth(int left, int up, int upLeft)
+	{
+		int estimate = left + up - upLeft;
+		int toLeft = Math.abs(estimate - left);
+		int toUp = Math.abs(estimate - up);
+		int toUpLeft = Math.abs(estimate - upLeft);
+		if (toLeft <= toUp && toLeft <= toUpLeft) return left;
+		if (toUp <= toUpLeft) return up;
+		return upLeft;
+	}
+
+	private static long u32(byte[] bytes, int offset)
+	{
+		return ((long)(bytes[offset] & 0xFF) << 24) | ((bytes[offset + 1] & 0xFF) << 16) | ((bytes[offset + 2] & 0xFF) << 8) | (bytes[offset + 3] & 0xFF);
+	}
+
+	private static byte[] copy(byte[] bytes, int offset, int length)
+	{
+		byte[] ret = new byte[length];
+		System.arraycopy(bytes, offset, ret, 0, length);
+		return ret;
+	}
+}
@@ -0,0 +1,21 @@
+package com.finalhack.pdroidf;
+
+/**
+ * Gets told how a PDF being written out with Pdf.renderAsync() is coming along.
+ * Its methods are called on the thread doing the writing, not on the thread that called renderAsync().
+ */
+public interface ProgressListener
+{
+	/**
+	 * Called after each page has been written out
+	 * @param pagesWritten
+	 * @param pageCount
+	 */
+	void onProgress(int pagesWritten, int pageCount);
+
+	/**
+	 * Called once when writing is over, whether the PDF was written out, writing failed, or it was cancelled
+	 * @param error null if the PDF was written out, a CancellationException if it was cancelled, otherwise what went wrong
+	 */
+	void onFinished(Throwable error);
+}
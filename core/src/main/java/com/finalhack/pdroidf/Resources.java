@@ -0,0 +1,553 @@
+package com.finalhack.pdroidf;
+
+import static com.finalhack.pdroidf.Pdf.NEW_LINE;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class represents an internal data structure.
+ * Someone using this code to output a PDF doesn't need to worry about this class.
+ *
+ * A document wide registry of resources (like fonts, images and templates) that pages use.
+ * Each distinct resource is written out once no matter how many pages use it,
+ * and a single resource dictionary listing all of them is shared by every page.
+ */
+public class Resources
+{
+	//Resource names look like /F1, /Im1, /Im2, /Fm1...
+	private static final String FONT_NAME_PREFIX = "F";
+	private static final String IMAGE_NAME_PREFIX = "Im";
+	private static final String TEMPLATE_NAME_PREFIX = "Fm";
+
+	//Lossless images
+	private static final int PNG_SIGNATURE_LENGTH = 8;
+	private static final int PNG_PREDICTOR = 15;
+	private static final int BITS_PER_PIXEL_SAMPLE = 8;
+	private static final int READ_BUFFER_SIZE = 8192;
+
+	//Most classes in this PDF library need an objectId
+	//The objectId must be unique across all elements in the PDF
+	private int objectId;
+
+	//Used to give each new resource a unique objectId
+	private AtomicInteger currentObjectId;
+
+	//Fonts, the first one is the default font used for all text
+	private List<Font> fonts = new ArrayList<Font>();
+
+	//Images are looked up by their content, so the same JPEG data always maps to the same image
+	private Map<ContentKey, Image> imagesByContent = new HashMap<ContentKey, Image>();
+	private Map<ImageSource, Image> imagesBySource = new HashMap<ImageSource, Image>();
+	private Map<ImageSource, Jpeg> jpegsBySource = new HashMap<ImageSource, Jpeg>();
+	private Map<Pixels, Image> imagesByPixels = new HashMap<Pixels, Image>();
+	private List<Image> images = new ArrayList<Image>();
+
+	//The same array is usually passed again for every page (like a logo), so an array seen before is compared with a copy of what it held then,
+	//which is much quicker than working out its digest again. Arrays are keys by identity, and an entry goes away with the caller's array.
+	private Map<byte[], ArrayContent> contentByArray = new WeakHashMap<byte[], ArrayContent>();
+
+	//Every Java platform has this algorithm
+	private static final String DIGEST_ALGORITHM = "SHA-256";
+	private MessageDigest digest;
+
+	//Images with more pixels than their placed size needs at imageDpi get downsampled by imageCodec (off when it's null)
+	//Downsampled images are looked up by what they were made from and their size, so each is only made once
+	private static final double POINTS_PER_INCH = 72;
+	private ImageCodec imageCodec;
+	private int imageDpi;
+	private Map<ScaledKey, Image> scaledImages = new HashMap<ScaledKey, Image>();
+	
+	//Templates, which are Form XObjects
+	private List<Template> templates = new ArrayList<Template>();
+
+	/**
+	 * Construct an empty registry
+	 * @param currentObjectId
+	 */
+	public Resources(AtomicInteger currentObjectId)
+	{
+		this.currentObjectId = currentObjectId;
+		try
+		{
+			this.digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			throw new IllegalStateException(e);
+		}
+		reset();
+	}
+
+	/**
+	 * Forget all resources, so that a new document can be started.
+	 * The resource dictionary and the default font get new objectIds.
+	 */
+	protected void reset()
+	{
+		objectId = currentObjectId.getAndAdd(1);
+		fonts.clear();
+		fonts.add(new Font(currentObjectId.getAndAdd(1), FONT_NAME_PREFIX + 1));
+		imagesByContent.clear();
+		contentByArray.clear();
+		imagesBySource.clear();
+		jpegsBySource.clear();
+		imagesByPixels.clear();
+		scaledImages.clear();
+		images.clear();
+		templates.clear();
+	}
+
+	/**
+	 * Simple getter for the objectId of the shared resource dictionary
+	 * @return
+	 */
+	protected int getObjectId() { return objectId; }
+
+	/**
+	 * Simple getter for the font used for all text
+	 * @return
+	 */
+	protected Font getDefaultFont() { return fonts.get(0); }
+	
+	/**
+	 * Register a TrueType font
+	 * @param data the font file
+	 * @return
+	 */
+	protected Font addTrueTypeFont(byte[] data)
+	{
+		Font font = new TrueTypeFont(currentObjectId, FONT_NAME_PREFIX + (fonts.size() + 1), data);
+		fonts.add(font);
+		return font;
+	}
+
+	/**
+	 * Downsample images added from now on which have more pixels than dpi needs for their placed size
+	 * @param imageCodec null to stop downsampling
+	 * @param dpi
+	 */
+	protected void setImageDownsampling(ImageCodec imageCodec, int dpi)
+	{
+		this.imageCodec = imageCodec;
+		this.imageDpi = dpi;
+	}
+
+	/**
+	 * Get the image for JPEG or PNG data, registering it if this data hasn't been seen before
+	 * @param bytes JPEG or PNG data
+	 * @param width the placed width in points, also used if the JPEG header can't be read
+	 * @param height the placed height in points, also used if the JPEG header can't be read
+	 * @return
+	 */
+	protected Image addImage(final byte[] bytes, int width, int height)
+	{
+		ArrayContent content = getContent(bytes);
+		ContentKey key = content.key;
+		if (Png.isPng(bytes))
+		{
+			Image image = imagesByContent.get(key);
+			if (image == null)
+			{
+				image = addPngImage(bytes);
+				imagesByContent.put(key, image);
+			}
+			return image;
+		}
+		Jpeg jpeg = Jpeg.readHeader(bytes);
+		
+		//A downsampled copy replaces the original if the original has more pixels than needed
+		Image image = addScaledImage(key, jpeg, width, height, new ImageSource()
+		{
+			@Override
+			public InputStream open() { return new ByteArrayInputStream(bytes); }
+		});
+		if (image != null) return image;
+		
+		image = imagesByContent.get(key);
+		if (image != null) return image;
+
+		//The data is written out later, so it is the copy kept in case the caller changes or reuses its array
+		byte[] data = content.copy;
+
+		//Use the actual size and color components of the JPEG if it can be read, otherwise fall back to an 8 bit RGB image
+		if (jpeg != null) image = newImage(data, jpeg);
+		else image = new Image(currentObjectId.getAndAdd(1), IMAGE_NAME_PREFIX + (images.size() + 1), data, width, height, 3);
+
+		imagesByContent.put(key, image);
+		images.add(image);
+		return image;
+	}
+
+	/**
+	 * Get the image for a source, registering it if this source hasn't been seen before.
+	 * A source is only opened here the first time it is seen, after that its JPEG header is kept.
+	 * Of a JPEG source only the header is read, unless it is downsampled, which reads the whole image (once per placed size).
+	 * PNG sources are read completely here, since their image data is split up into chunks.
+	 * @param source
+	 * @param width the placed width in points
+	 * @param height the placed height in points
+	 * @return
+	 * @throws IOException if the source can't be read
+	 * @throws IllegalArgumentException if the source isn't a JPEG or a PNG that can be used
+	 */
+	protected Image addImage(ImageSource source, int width, int height) throws IOException
+	{
+		//A PNG source has an image but no JPEG header, and isn't downsampled
+		Image image = imagesBySource.get(source);
+		Jpeg jpeg = jpegsBySource.get(source);
+		if (image != null && jpeg == null) return image;
+		if (jpeg == null) jpeg = readSource(source);
+		if (jpeg == null) return imagesBySource.get(source);
+
+		Image scaled = addScaledImage(source, jpeg, width, height, source);
+		if (scaled != null) return scaled;
+		if (image != null) return image;
+
+		//Sources without a known length need an objectId for their length too
+		int objectId = currentObjectId.getAndAdd(1);
+		int lengthObjectId = source.getLength() < 0 ? currentObjectId.getAndAdd(1) : 0;
+		image = new Image(objectId, IMAGE_NAME_PREFIX + (images.size() + 1), source, jpeg, lengthObjectId);
+
+		imagesBySource.put(source, image);
+		images.add(image);
+		return image;
+	}
+
+	//Read a source that hasn't been seen before: keep the header of a JPEG and return it,
+	//or register the image of a PNG and return null
+	private Jpeg readSource(ImageSource source) throws IOException
+	{
+		Jpeg jpeg;
+		InputStream inputStream = new BufferedInputStream(source.open());
+		try
+		{
+			if (isPng(inputStream))
+			{
+				ByteSink bytes = new ByteSink();
+				byte[] buffer = new byte[READ_BUFFER_SIZE];
+				for (int read=inputStream.read(buffer);read>=0;read=inputStream.read(buffer)) bytes.write(buffer, 0, read);
+				imagesBySource.put(source, addPngImage(bytes.toByteArray()));
+				return null;
+			}
+			jpeg = Jpeg.readHeader(inputStream);
+		}
+		finally
+		{
+			inputStream.close();
+		}
+		if (jpeg == null) throw new IllegalArgumentException("Not a JPEG or PNG image: " + source);
+
+		jpegsBySource.put(source, jpeg);
+		return jpeg;
+	}
+
+	//Get the digest and a copy of an array's content, reusing them if the array still holds what it held when it was last seen
+	private ArrayContent getContent(byte[] bytes)
+	{
+		ArrayContent content = contentByArray.get(bytes);
+		if (content != null && Arrays.equals(content.copy, bytes)) return content;
+
+		content = new ArrayContent(bytes.clone(), new ContentKey(digest, bytes));
+		contentByArray.put(bytes, content);
+		return content;
+	}
+
+	//Check if a stream starts like a PNG file, without moving past its start
+	private static boolean isPng(InputStream inputStream) throws IOException
+	{
+		byte[] signature = new byte[PNG_SIGNATURE_LENGTH];
+		inputStream.mark(signature.length);
+		int read = 0;
+		while (read < signature.length)
+		{
+			int count = inputStream.read(signature, read, signature.length - read);
+			if (count < 0) break;
+			read += count;
+		}
+		inputStream.reset();
+		return read == signature.length && Png.isPng(signature);
+	}
+
+	/**
+	 * Get the image for raw pixels, registering it if these pixels haven't been seen before
+	 * @param pixels
+	 * @return
+	 */
+	protected Image addPixels(Pixels pixels)
+	{
+		Image image = imagesByPixels.get(pixels);
+		if (image != null) return image;
+
+		image = new Image(currentObjectId.getAndAdd(1), IMAGE_NAME_PREFIX + (images.size() + 1), pixels.getData(), pixels.getWidth(), pixels.getHeight(), pixels.getComponents(), BITS_PER_PIXEL_SAMPLE, true);
+		if (pixels.getPalette() != null) image.setPalette(pixels.getPalette());
+		if (pixels.getAlpha() != null) image.setSoftMask(new Image(currentObjectId.getAndAdd(1), null, pixels.getAlpha(), pixels.getWidth(), pixels.getHeight(), 1, BITS_PER_PIXEL_SAMPLE, true));
+
+		imagesByPixels.put(pixels, image);
+		images.add(image);
+		return image;
+	}
+
+	//Register an image for a PNG file
+	//The compressed image data is used as-is, unless alpha has to be split out of it
+	private Image addPngImage(byte[] bytes)
+	{
+		Png png = new Png(bytes);
+		int width = png.getWidth();
+		int height = png.getHeight();
+		int depth = png.getBitDepth();
+		Image image;
+		if (png.hasAlphaChannel())
+		{
+			//Every pixel has its color and alpha samples next to each other, split them up into an image and its soft mask
+			byte[] rows = png.decode();
+			int sampleLength = Math.max(1, depth / 8);
+			int colorLength = png.getColors() * sampleLength;
+			byte[] color = new byte[width * height * colorLength];
+			byte[] alpha = new byte[width * height * sampleLength];
+			for (int pixel=0;pixel<width*height;pixel++)
+			{
+				int offset = pixel * (colorLength + sampleLength);
+				System.arraycopy(rows, offset, color, pixel * colorLength, colorLength);
+				System.arraycopy(rows, offset + colorLength, alpha, pixel * sampleLength, sampleLength);
+			}
+			image = new Image(currentObjectId.getAndAdd(1), IMAGE_NAME_PREFIX + (images.size() + 1), color, width, height, png.getColors(), depth, true);
+			image.setSoftMask(new Image(currentObjectId.getAndAdd(1), null, alpha, width, height, 1, depth, true));
+		}
+		else
+		{
+			//PDF readers undo the PNG filters themselves with a PNG predictor
+			image = new Image(currentObjectId.getAndAdd(1), IMAGE_NAME_PREFIX + (images.size() + 1), png.getData().toByteArray(), width, height, png.getColors(), depth, false);
+			image.setDecodeParms("<< /Predictor " + PNG_PREDICTOR + " /Colors " + png.getColors() + " /BitsPerComponent " + depth + " /Columns " + width + " >>");
+			if (png.getColorType() == Png.INDEXED) image.setPalette(png.getPalette());
+
+			byte[] transparency = png.getTransparency();
+			if (transparency != null && png.getColorType() == Png.INDEXED) image.setSoftMask(new Image(currentObjectId.getAndAdd(1), null, getPaletteAlpha(png, transparency), width, height, 1, BITS_PER_PIXEL_SAMPLE, true));
+			else if (transparency != null && transparency.length >= png.getColors() * 2)
+			{
+				//A single color that isn't drawn, stored as 2 byte samples
+				int[] colorKeyMask = new int[png.getColors() * 2];
+				for (int i=0;i<png.getColors();i++) colorKeyMask[i * 2] = colorKeyMask[i * 2 + 1] = ((transparency[i * 2] & 0xFF) << 8) | (transparency[i * 2 + 1] & 0xFF);
+				image.setColorKeyMask(colorKeyMask);
+			}
+		}
+
+		images.add(image);
+		return image;
+	}
+
+	//The alpha of each pixel of an indexed PNG, from the alpha of each palette entry
+	private static byte[] getPaletteAlpha(Png png, byte[] transparency)
+	{
+		byte[] rows = png.decode();
+		int width = png.getWidth();
+		int depth = png.getBitDepth();
+		int rowLength = (width * depth + 7) / 8;
+		byte[] alpha = new byte[width * png.getHeight()];
+		for (int y=0;y<png.getHeight();y++)
+		{
+			for (int x=0;x<width;x++)
+			{
+				int bit = x * depth;
+				int index = ((rows[y * rowLength + bit / 8] & 0xFF) >> (8 - depth - bit % 8)) & ((1 << depth) - 1);
+				alpha[y * width + x] = index < transparency.length ? transparency[index] : (byte)0xFF;
+			}
+		}
+		return alpha;
+	}
+
+	//Register an image for JPEG data in memory
+	private Image newImage(byte[] bytes, Jpeg jpeg)
+	{
+		Image image = new Image(currentObjectId.getAndAdd(1), IMAGE_NAME_PREFIX + (images.size() + 1), bytes, jpeg.getWidth(), jpeg.getHeight(), jpeg.getComponents());
+		image.setInverted(jpeg.isInverted());
+		return image;
+	}
+
+	//Get a downsampled copy of an image placed at width x height points, making it if it hasn't been made before
+	//Returns null if the image doesn't need downsampling or can't be downsampled, so the original is used instead
+	private Image addScaledImage(Object original, Jpeg jpeg, int width, int height, ImageSource source)
+	{
+		if (imageCodec == null || jpeg == null) return null;
+
+		//The pixels needed for the placed size at imageDpi, keeping the image's shape
+		double scale = Math.max(Math.abs(width) / POINTS_PER_INCH * imageDpi / jpeg.getWidth(), Math.abs(height) / POINTS_PER_INCH * imageDpi / jpeg.getHeight());
+		if (scale >= 1) return null;
+		int scaledWidth = Math.max(1, (int)Math.ceil(jpeg.getWidth() * scale));
+		int scaledHeight = Math.max(1, (int)Math.ceil(jpeg.getHeight() * scale));
+
+		ScaledKey key = new ScaledKey(original, scaledWidth, scaledHeight);
+		Image image = scaledImages.get(key);
+		if (image != null) return image;
+
+		try
+		{
+			byte[] bytes;
+			InputStream inputStream = source.open();
+			try
+			{
+				bytes = imageCodec.downsample(inputStream, jpeg.getWidth(), jpeg.getHeight(), scaledWidth, scaledHeight);
+			}
+			finally
+			{
+				inputStream.close();
+			}
+
+			Jpeg scaledJpeg = Jpeg.readHeader(bytes);
+			if (scaledJpeg == null) throw new IOException("The image codec didn't return a JPEG");
+			image = newImage(bytes, scaledJpeg);
+		}
+		catch (IOException e)
+		{
+			Pdf.log("Downsampling failed, using the image as it is", e);
+			return null;
+		}
+
+		scaledImages.put(key, image);
+		images.add(image);
+		return image;
+	}
+
+	/**
+	 * Register a new, empty template
+	 * @param pages
+	 * @param width
+	 * @param height
+	 * @return
+	 */
+	protected Template addTemplate(Pages pages, int width, int height)
+	{
+		Template template = new Template(currentObjectId, pages, TEMPLATE_NAME_PREFIX + (templates.size() + 1), width, height);
+		templates.add(template);
+		return template;
+	}
+
+	/**
+	 * Write out the shared resource dictionary and every registered font, adding x-reference data for each of them
+	 * @param writer
+	 * @throws IOException
+	 */
+	protected void writeFontsTo(PdfWriter writer) throws IOException
+	{
+		writer.writeObject(objectId, toString());
+		
+		for (Font font : fonts) font.writeTo(writer);
+	}
+	
+	/**
+	 * Write out every registered image and template, adding x-reference data for each of them
+	 * @param writer
+	 * @throws IOException
+	 */
+	protected void writeImagesTo(PdfWriter writer) throws IOException
+	{
+		for (Image image : images) image.writeTo(writer);
+		for (Template template : templates) template.getStream().writeTo(writer);
+	}
+
+	/**
+	 * Output the shared resource dictionary in PDF format
+	 */
+	@Override
+	public String toString()
+	{
+		StringBuilder ret = new StringBuilder();
+		ret.append("<<").append(NEW_LINE);
+		ret.append("  /Font <<").append(NEW_LINE);
+		for (Font font : fonts) ret.append("    /").append(font.getName()).append(' ').append(font.getObjectId()).append(" 0 R").append(NEW_LINE);
+		ret.append("  >>").append(NEW_LINE);
+		if (!images.isEmpty() || !templates.isEmpty())
+		{
+			ret.append("  /XObject <<").append(NEW_LINE);
+			for (Image image : images) ret.append("    /").append(image.getName()).append(' ').append(image.getObjectId()).append(" 0 R").append(NEW_LINE);
+			for (Template template : templates) ret.append("    /").append(template.getName()).append(' ').append(template.getObjectId()).append(" 0 R").append(NEW_LINE);
+			ret.append("  >>").append(NEW_LINE);
+		}
+		ret.append(">>").append(NEW_LINE);
+
+		return ret.toString();
+	}
+
+	/**
+	 * A simple inner class to look byte[]s up by their content instead of their identity.
+	 * It keeps a digest of the content rather than the byte[] itself, so changing the byte[] afterwards doesn't change the key.
+	 */
+	private static class ContentKey
+	{
+		private byte[] digest;
+		private int length;
+		private int hash;
+
+		public ContentKey(MessageDigest messageDigest, byte[] bytes)
+		{
+			this.digest = messageDigest.digest(bytes);
+			this.length = bytes.length;
+			this.hash = Arrays.hashCode(digest);
+		}
+
+		@Override
+		public int hashCode() { return hash; }
+
+		@Override
+		public boolean equals(Object object)
+		{
+			if (!(object instanceof ContentKey)) return false;
+			ContentKey key = (ContentKey)object;
+			return hash == key.hash && length == key.length && Arrays.equals(digest, key.digest);
+		}
+	}
+
+	/**
+	 * A simple inner class to hold what an array held when it was added, and the key for that content
+	 */
+	private static class ArrayContent
+	{
+		private byte[] copy;
+		private ContentKey key;
+
+		public ArrayContent(byte[] copy, ContentKey key)
+		{
+			this.copy = copy;
+			this.key = key;
+		}
+	}
+
+	/**
+	 * A simple inner class to look downsampled images up by what they were made from and their size
+	 */
+	private static class ScaledKey
+	{
+		private Object original;
+		private int width;
+		private int height;
+
+		public ScaledKey(Object original, int width, int height)
+		{
+			this.original = original;
+			this.width = width;
+			this.height = height;
+		}
+
+		@Override
+		public int hashCode() { return (original.hashCode() * 31 + width) * 31 + height; }
+
+		@Override
+		public boolean equals(Object object)
+		{
+			if (!(object instanceof ScaledKey)) return false;
+			ScaledKey key = (ScaledKey)object;
+			return original.equals(key.original) && width == key.width && height == key.height;
+		}
+	}
+}
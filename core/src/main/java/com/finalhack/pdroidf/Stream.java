@@ -0,0 +1,619 @@
+package com.finalhack.pdroidf;
+
+import static com.finalhack.pdroidf.Pdf.NEW_LINE;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+
+/**
+ * This class is used to add elements such as text and graphics to a PDF.
+ * Each stream is hooked to a PDF page.
+ * This class is where much of the PDF work is done.
+ */
+public class Stream
+{
+	//For auto-text adds
+	private static final int DEFAULT_FONT_SIZE = 12;
+
+	//Can be used to center text in a PDF via addText(String, int, int, int)
+	public static final int CENTER = -1;
+	
+	//This tracks the entire stream as elements are added.
+	//Data is appended to a primitive growable byte[] (text is written as ISO-8859-1)
+	private ByteSink streamList = new ByteSink();
+	
+	//Operators are written into the stream through this
+	private ContentWriter content = new ContentWriter(streamList);
+	
+	//Once a stream is finished nothing more can be added to it, and it may already be getting encoded in the background
+	private boolean finished;
+	private Future<EncodedData> encoded;
+	
+	//Most classes in this PDF library need an objectId
+	//The objectId must be unique across all elements in the PDF
+	private int objectId;
+	
+	//The height of a horizontal line's row
+	private static final double GLYPH_HEIGHT = 13.8;
+	
+	//Lines of text are this many times the font size apart
+	protected static final double LINE_SPACING = 1.15;
+	
+	//Finds where auto-line text wraps, kept for the next addText()
+	private LineBreaker lineBreaker;
+
+	//Margins to keep clean
+	public static final double MARGIN_VERTICAL = 72.00;
+	public static final double MARGIN_HORIZONTAL = 72.00;
+
+	//The coordinates for the next auto-placed line
+	private double nextLineX = MARGIN_HORIZONTAL;
+	private double nextLineY;
+	
+	//Used in case a line wraps to a new page...
+	//A new page and new stream will need to be added to that the wrapped text can be written
+	private Stream streamToAddTo = this;
+	
+	//A parent reference
+	private Pages pages;
+	
+	//The font text is written in, or null for the default font
+	private Font font;
+	
+	//The size of the area being drawn on, which is the page unless this stream is a template's
+	private int width;
+	private int height;
+	
+	//The template this stream draws, or null if it is a page's stream
+	private Template template;
+	
+	//A reference to the last unique objectId created
+	//This is used in case new pages are created on the fly, which need their own unique objectIds
+	private AtomicInteger currentObjectId;
+	
+	/**
+	 * Construct the stream, and save off info for future on the fly page construction
+	 * @param currentObjectId
+	 * @param pages
+	 */
+	public Stream(AtomicInteger currentObjectId, Pages pages)
+	{
+		this(currentObjectId, pages, pages.getPageWidth(), pages.getPageHeight());
+	}
+	
+	/**
+	 * Construct the stream of a page with its own size
+	 * @param currentObjectId
+	 * @param pages
+	 * @param width
+	 * @param height
+	 */
+	protected Stream(AtomicInteger currentObjectId, Pages pages, int width, int height)
+	{
+		this(currentObjectId, pages, null, width, height);
+	}
+	
+	/**
+	 * Construct the stream of a template, which becomes a Form XObject instead of a page's content
+	 * @param currentObjectId
+	 * @param pages
+	 * @param template
+	 */
+	protected Stream(AtomicInteger currentObjectId, Pages pages, Template template)
+	{
+		this(currentObjectId, pages, template, template.getWidth(), template.getHeight());
+	}
+	
+	private Stream(AtomicInteger currentObjectId, Pages pages, Template template, int width, int height)
+	{
+		this.currentObjectId = currentObjectId;
+		this.objectId = currentObjectId.getAndAdd(1);
+		this.pages = pages;
+		this.template = template;
+		this.width = width;
+		this.height = height;
+		
+		nextLineY = height - MARGIN_VERTICAL;
+	}
+	
+	/**
+	 * Start over as an empty page stream with a new objectId and size, keeping the memory grown for its content
+	 * @param width
+	 * @param height
+	 */
+	protected void reuse(int width, int height)
+	{
+		objectId = currentObjectId.getAndAdd(1);
+		streamList.reset();
+		finished = false;
+		encoded = null;
+		streamToAddTo = this;
+		font = null;
+		this.width = width;
+		this.height = height;
+		nextLineX = MARGIN_HORIZONTAL;
+		nextLineY = height - MARGIN_VERTICAL;
+	}
+	
+	/**
+	 * Check if this stream can be reused, which it can't while it is still being encoded in the background
+	 * @return
+	 */
+	protected boolean isReusable() { return encoded == null || encoded.isDone(); }
+	
+	/**
+	 * Simple getter for whether nothing more can be added to this stream (see finish())
+	 * @return
+	 */
+	protected boolean isFinished() { return finished; }
+	
+	/**
+	 * Simple getter for the object's uniqueId
+	 * @return
+	 */
+	public int getObjectId() { return this.objectId; }
+	
+	/**
+	 * Simple getter for the width of the page (or template) this stream draws on, in points
+	 * @return
+	 */
+	public int getWidth() { return width; }
+	
+	/**
+	 * Simple getter for the height of the page (or template) this stream draws on, in points
+	 * @return
+	 */
+	public int getHeight() { return height; }
+	
+	/**
+	 * Draw an actual line using hex color codes on the PDF at the next auto-text position.
+	 * This will happen either at the top of the file if addText() has not yet been called, or below the last line added via addText().
+	 * An example hex color code would be 2A58CB.
+	 * @param hexColorCode
+	 * @param lineHeight
+	 */
+	public void addHorizontalLine(String hexColorCode, int lineHeight)
+	{
+		checkNotFinished();
+		
+		//Convert hex codes to RGB components
+		int rgb = convertHexColorCodeToRgb(hexColorCode);
+		
+		int left = (int)MARGIN_HORIZONTAL;
+		int right = (int)(width - MARGIN_HORIZONTAL);
+		int top = (int)nextLineY;
+		int bottom = (int)(nextLineY-lineHeight);
+		fillRectangle(left, top, right, bottom, rgb);
+
+		nextLineY -= GLYPH_HEIGHT;
+	}
+	
+	/**
+	 * Fill a rectangle with a color
+	 * @param left
+	 * @param top
+	 * @param right
+	 * @param bottom
+	 * @param rgb 0xRRGGBB
+	 */
+	protected void fillRectangle(int left, int top, int right, int bottom, int rgb)
+	{
+		content.setFillColor(red(rgb), green(rgb), blue(rgb));
+		content.moveTo(left, top);
+		content.lineTo(right, top);
+		content.lineTo(right, bottom);
+		content.lineTo(left, bottom);
+		content.fill();
+	}
+	
+	/**
+	 * Convert an HTML hex code such as 2A58CB to an int holding the R, G, B components ranging from 0 to 255 as 0xRRGGBB
+	 * @param hexColorCode
+	 * @return
+	 */
+	protected static int convertHexColorCodeToRgb(String hexColorCode)
+	{
+		//If the hex color code is not the correct length, return black (0,0,0)
+		if (hexColorCode.length() != 6) return 0;
+		
+		//Convert the digits from hex without breaking the String apart
+		int rgb = 0;
+		for (int i=0;i<6;i++)
+		{
+			int digit = Character.digit(hexColorCode.charAt(i), 16);
+			if (digit < 0) throw new NumberFormatException("Invalid hex color code: " + hexColorCode);
+			rgb = (rgb << 4) | digit;
+		}
+		
+		return rgb;
+	}
+	
+	//Get single components out of an int holding 0xRRGGBB
+	private static int red(int rgb) { return (rgb >> 16) & 0xFF; }
+	private static int green(int rgb) { return (rgb >> 8) & 0xFF; }
+	private static int blue(int rgb) { return rgb & 0xFF; }
+		
+	/**
+	 * Add a line of text to this Stream's Page at x,y using fontSize, in the font set with setFont() (Times-Roman unless it is set).
+	 * Adding a line using this method does not affect the x,y auto line tracking that addText(<the one with no parameters>) uses
+	 * Text may be centered when using this method by using this class's static CENTER property as x and or y coordinate values
+	 * x,y is based of an origin (0,0) that is in the bottom left corner of the page
+	 * @param text
+	 * @param fontSize
+	 * @param x
+	 * @param y
+	 */
+	public void addText(String text, int fontSize, int x, int y, String hexColorCode)
+	{
+		checkNotFinished();
+		
+		//Centering mechanics, based on the actual width of the text in this font size
+		Font font = getFont();
+		if (x == CENTER) x = (int)((width - FontMetrics.toPoints(font.getWidth(text, 0, text.length()), fontSize)) / 2);
+		if (y == CENTER) y = (int)((height - (fontSize * LINE_SPACING)) / 2);
+		
+		writeText(font, text, 0, text.length(), false, fontSize, x, y, convertHexColorCodeToRgb(hexColorCode));
+	}
+	
+	/**
+	 * Write the characters of text from start up to (not including) end at x,y, followed by a hyphen if needed
+	 * @param font
+	 * @param text
+	 * @param start
+	 * @param end
+	 * @param hyphenate
+	 * @param fontSize
+	 * @param x
+	 * @param y
+	 * @param rgb 0xRRGGBB
+	 */
+	protected void writeText(Font font, String text, int start, int end, boolean hyphenate, int fontSize, int x, int y, int rgb)
+	{
+		content.beginText();
+		content.setFont(font.getName(), fontSize);
+		content.setTextPosition(x, y);
+		content.setFillColor(red(rgb), green(rgb), blue(rgb));
+		font.showText(content, text, start, end, hyphenate ? LineBreaker.HYPHEN : 0);
+		content.endText();
+	}
+	
+	/**
+	 * Use a font added with Pdf.addFont() for all text added to this Stream from now on
+	 * @param font the font, or null to go back to the default Times-Roman font
+	 */
+	public void setFont(Font font) { this.font = font; }
+	
+	/**
+	 * Get the font text is written in
+	 * @return
+	 */
+	protected Font getFont() { return font != null ? font : pages.getResources().getDefaultFont(); }
+	
+	/**
+	 * A helper method for using default font size
+	 */
+	public void addText(String text, String hexColorCode)
+	{
+		addText(text, hexColorCode, DEFAULT_FONT_SIZE);
+	}
+	
+	/**
+	 * Add an auto-line (don't worry about specifying an x,y coordinate pair.
+	 * This is useful if you don't know how many lines will be added.
+	 * Each new line added with this method starts either at the top left (if it is the first line) or below and left aligned with the previous line.
+	 * Each line will auto wrap if it is too long. If a line wraps off the page, a new page is created, and the remaining text will flow onto that new page.
+	 * This method does not take into account any text that was added via the addText(String, fontSize, x, y). It only takes into account text that was added with addText().
+	 */
+	public void addText(String text, String hexColorCode, int fontSize)
+	{
+		checkNotFinished();
+		
+		int rgb = convertHexColorCodeToRgb(hexColorCode);
+		Font font = getFont();
+		if (lineBreaker == null) lineBreaker = new LineBreaker();
+		
+		//Everything is measured in 1/1000ths of the font size, so the width of a line is just a sum of glyph widths
+		//A single pass over the text, each line is written out as soon as its end is found
+		lineBreaker.reset(font, text, (int)((width - (MARGIN_HORIZONTAL * 2)) * 1000 / fontSize));
+		while (lineBreaker.nextLine()) addLine(font, text, lineBreaker.getStart(), lineBreaker.getEnd(), lineBreaker.isHyphenated(), fontSize, rgb);
+	}
+	
+	//Write a single line at the next auto-text position, flowing onto a new page if this one is full
+	private void addLine(Font font, String text, int start, int end, boolean hyphenate, int fontSize, int rgb)
+	{
+		//A template has no next page to flow onto, so text below its bottom edge is just cut off
+		if ((streamToAddTo.nextLineY < MARGIN_VERTICAL) && template == null) flowOntoNewPage();
+		
+		streamToAddTo.checkNotFinished();
+		streamToAddTo.writeText(font, text, start, end, hyphenate, fontSize, (int)streamToAddTo.nextLineX, (int)streamToAddTo.nextLineY, rgb);
+		streamToAddTo.nextLineY -= fontSize * LINE_SPACING;
+	}
+
+	/**
+	 * Start a new page for auto-placed content (like auto-line text and tables) to flow onto
+	 * @return the new page's Stream
+	 */
+	protected Stream flowOntoNewPage()
+	{
+		//The new page is the same size as this one
+		Page page = this.pages.newPage(width, height);
+		streamToAddTo.pages.addPage(page);
+		
+		//A page that content flowed onto is done once the content flows off of it again
+		if (streamToAddTo != this) streamToAddTo.finish();
+		streamToAddTo = page.getStream();
+		return streamToAddTo;
+	}
+	
+	/**
+	 * Get the Stream auto-placed content goes to next, which is this one unless content has flowed onto new pages
+	 * @return
+	 */
+	protected Stream getFlowStream() { return streamToAddTo; }
+	
+	/**
+	 * Simple getter for where the next auto-placed line goes
+	 * @return
+	 */
+	protected double getNextLineY() { return nextLineY; }
+	
+	/**
+	 * Simple setter for where the next auto-placed line goes
+	 * @param nextLineY
+	 */
+	protected void setNextLineY(double nextLineY) { this.nextLineY = nextLineY; }
+	
+	/**
+	 * Add a table at the next auto-text position, with rows taken one at a time from rows.
+	 * The table is as wide as the page between its margins (unless it has fixed column widths), and flows onto new pages
+	 * like auto-line text does, repeating its header at the top of each one.
+	 * Auto-line text added afterwards goes below the table.
+	 * Only the rows used to work out column widths are read ahead, so any number of rows can be added, see Table.
+	 * @param table
+	 * @param rows each row holds the text of its cells, one for each column (null or missing cells are empty)
+	 * @throws IllegalStateException if this is a template's stream, which has no pages to flow onto
+	 * @throws IllegalArgumentException if a row has more cells than the table has columns
+	 */
+	public void addTable(Table table, Iterator<String[]> rows)
+	{
+		checkNotFinished();
+		if (template != null) throw new IllegalStateException("A table can't be added to a template");
+		table.addTo(this, rows);
+	}
+	
+	/**
+	 * Add a template to the PDF this stream belongs to
+	 * @param width
+	 * @param height
+	 * @return
+	 */
+	protected Template newTemplate(int width, int height) { return pages.getResources().addTemplate(pages, width, height); }
+	
+	/**
+	 * Add a BMP image who's top corner is at x,y based on the standard PDF coordinate system.
+	 * The standard PDF coordinate system places the origin (0,0) at the bottom left corner of the page.
+	 * Increase x to move right, and increase y to move up.
+	 * The image data is only written out once per PDF, no matter how many times it is added.
+	 * The data is copied, so the array can be changed or reused as soon as this returns.
+	 * The data can be a JPEG, or a PNG (which stays lossless, and keeps its transparency).
+	 * With Pdf.setImageDownsampling() on, a JPEG with more pixels than its placed size needs is scaled down first.
+	 * @param width
+	 * @param height
+	 * @param bytes
+	 * @throws IllegalArgumentException if the data is a PNG that can't be used (like an interlaced one)
+	 */
+	public void addBmpImage(int x, int y, int width, int height, byte[] bytes)
+	{
+		checkNotFinished();
+		
+		//Images are shared by all pages, this page only needs to refer to it by name
+		drawImage(x, y, width, height, pages.getResources().addImage(bytes, width, height));
+	}
+	
+	/**
+	 * Add a JPEG or PNG image with its bottom left corner at x,y, scaled to width x height points.
+	 * Only a JPEG's header is read now, to get its real size and colors (gray, RGB or CMYK).
+	 * The image data is copied straight from the source into the PDF when it is written out, and only once per PDF no matter how many times it is added.
+	 * With Pdf.setImageDownsampling() on, a JPEG with more pixels than its placed size needs is read and scaled down now instead.
+	 * A PNG is read completely now.
+	 * @param x
+	 * @param y
+	 * @param width
+	 * @param height
+	 * @param source
+	 * @throws IOException if the source can't be read
+	 * @throws IllegalArgumentException if the source isn't a JPEG or a PNG that can be used
+	 */
+	public void addImage(int x, int y, int width, int height, ImageSource source) throws IOException
+	{
+		checkNotFinished();
+		drawImage(x, y, width, height, pages.getResources().addImage(source, width, height));
+	}
+	
+	/**
+	 * Add an image made of raw pixels with its bottom left corner at x,y, scaled to width x height points.
+	 * The pixels are compressed losslessly, which suits charts and screenshots better than JPEG.
+	 * @param x
+	 * @param y
+	 * @param width
+	 * @param height
+	 * @param pixels
+	 */
+	public void addPixels(int x, int y, int width, int height, Pixels pixels)
+	{
+		checkNotFinished();
+		drawImage(x, y, width, height, pages.getResources().addPixels(pixels));
+	}
+	
+	//Scale an image to the requested size and draw it
+	private void drawImage(int x, int y, int width, int height, Image image)
+	{
+		content.saveState();
+		content.transform(width, height, x, y);
+		content.drawXObject(image.getName());
+		content.restoreState();
+	}
+	
+	/**
+	 * Draw a template with its bottom left corner at x,y based on the standard PDF coordinate system.
+	 * The template's content is only written out once per PDF, no matter how many times it is added.
+	 * @param template
+	 * @param x
+	 * @param y
+	 */
+	public void addTemplate(Template template, int x, int y)
+	{
+		checkNotFinished();
+		if (template == this.template) throw new IllegalArgumentException("A template can't be drawn inside of itself");
+		
+		content.saveState();
+		content.transform(1, 1, x, y);
+		content.drawXObject(template.getName());
+		content.restoreState();
+	}
+	
+	/**
+	 * Let the PDF know that nothing more will be added to this Stream's Page.
+	 * If the PDF has a background executor (see Pdf.setExecutor()), the page is encoded and compressed on it right away,
+	 * while the next page is being laid out. If the PDF is written out page by page (see Pdf.startWriting()), the page is written out now.
+	 * Adding anything to a finished Stream throws an IllegalStateException.
+	 * Pages that auto-wrapped text flows through are finished automatically when the text flows off of them.
+	 */
+	public void finish()
+	{
+		if (finished) return;
+		finished = true;
+		pages.getDocument().finishPage(this);
+	}
+	
+	private void checkNotFinished()
+	{
+		if (finished) throw new IllegalStateException("Nothing can be added to a finished page");
+	}
+	
+	/**
+	 * Encode (and possibly compress) this finished stream on executor
+	 * @param executor
+	 * @param compressionLevel a java.util.zip.Deflater level, or Pdf.COMPRESSION_OFF
+	 * @param compressionThreshold
+	 */
+	protected void encodeInBackground(Executor executor, final int compressionLevel, final int compressionThreshold)
+	{
+		FutureTask<EncodedData> task = new FutureTask<EncodedData>(new Callable<EncodedData>()
+		{
+			@Override
+			public EncodedData call() { return encode(compressionLevel, compressionThreshold); }
+		});
+		
+		//If the executor won't take it, the stream just gets encoded when the PDF is written out
+		try
+		{
+			executor.execute(task);
+			encoded = task;
+		}
+		catch (RejectedExecutionException e) { Pdf.log(Pdf.LOG_STACKTRACE, e); }
+	}
+	
+	//Encode the stream with its own Deflater, since this may run on any thread
+	private EncodedData encode(int compressionLevel, int compressionThreshold)
+	{
+		if (compressionLevel == Pdf.COMPRESSION_OFF || streamList.size() < compressionThreshold) return new EncodedData(streamList, false);
+		
+		Deflater deflater = new Deflater(compressionLevel);
+		try
+		{
+			ByteSink data = new ByteSink(Math.max(streamList.size() / 2, 1));
+			data.writeDeflated(deflater, streamList.getBuffer(), 0, streamList.size());
+			
+			//The uncompressed data isn't needed anymore
+			streamList.release();
+			return new EncodedData(data, true);
+		}
+		finally
+		{
+			deflater.end();
+		}
+	}
+	
+	//Wait for background encoding to be done
+	private EncodedData getEncoded() throws IOException
+	{
+		try
+		{
+			return encoded.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for a page to be encoded");
+		}
+		catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+			if (cause instanceof Error) throw (Error)cause;
+			throw new IOException(cause);
+		}
+	}
+	
+	/**
+	 * Output the actual object in PDF format straight to a document's writer
+	 * @param writer
+	 * @return the length of the stream's data, after compression
+	 * @throws IOException
+	 */
+	protected int writeTo(PdfWriter writer) throws IOException
+	{
+		//Pages that were encoded in the background just need to be picked up, in order
+		if (encoded != null)
+		{
+			EncodedData data = getEncoded();
+			writer.writeStream(objectId, getDictionary(data.bytes.size(), data.compressed), data.bytes);
+			return data.bytes.size();
+		}
+		
+		//Compress the content if it is turned on
+		ByteSink data = streamList;
+		boolean compress = writer.shouldCompress(streamList.size());
+		if (compress) data = writer.compress(streamList);
+		
+		writer.writeStream(objectId, getDictionary(data.size(), compress), data);
+		return data.size();
+	}
+	
+	//Stream dictionary
+	private String getDictionary(int length, boolean compressed)
+	{
+		StringBuilder stringData = new StringBuilder();
+		stringData.append("<<").append(NEW_LINE);
+		if (template != null) template.appendFormEntries(stringData, pages.getResources().getObjectId());
+		stringData.append("  /Length " + length).append(NEW_LINE);
+		if (compressed) stringData.append("  /Filter /FlateDecode").append(NEW_LINE);
+		stringData.append(">>").append(NEW_LINE);
+		return stringData.toString();
+	}
+	
+	/**
+	 * A simple inner class to hold the result of encoding a stream
+	 */
+	private static class EncodedData
+	{
+		private ByteSink bytes;
+		private boolean compressed;
+		
+		public EncodedData(ByteSink bytes, boolean compressed)
+		{
+			this.bytes = bytes;
+			this.compressed = compressed;
+		}
+	}
+}
\ No newline at end of file
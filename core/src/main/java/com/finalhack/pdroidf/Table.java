@@ -0,0 +1,347 @@
+package com.finalhack.pdroidf;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * How a table added with Stream.addTable() looks: its columns, header, font size and colors.
+ * The rows themselves come from an Iterator, and are laid out one at a time as they are read, so a table can have any number of them.
+ * Cells that don't fit their column wrap onto more lines, and a row that doesn't fit on a page goes on the next one,
+ * below the header which is repeated at the top of every page. The header is drawn once as a template, each page only refers to it.
+ *
+ * Column widths are either fixed (see setColumnWidths()), or worked out from the header and the first rows (see setSampleSize()).
+ * Only those first rows are ever held in memory at once. The pages the table flows onto are finished as soon as it flows off of them,
+ * so with Pdf.setExecutor() and Pdf.setCompression() each page is compressed (and its uncompressed content dropped) while the next one is laid out.
+ * The pages themselves are held until the PDF is written out, unless it is written out page by page with Pdf.startWriting():
+ * then each page is written out as the table flows off of it, and memory stays the same however many rows there are.
+ * A Table can be added any number of times.
+ */
+public class Table
+{
+	//Rows read to work out column widths, unless setSampleSize() is used
+	private static final int DEFAULT_SAMPLE_SIZE = 100;
+	private static final int DEFAULT_FONT_SIZE = 10;
+
+	//Space between the text of a cell and its edges
+	private static final int CELL_PADDING = 3;
+
+	//Columns worked out from a sample are at least this wide, and none of them takes up more than half of the table
+	private static final int MIN_COLUMN_WIDTH = 24;
+	private static final double MAX_COLUMN_SHARE = 0.5;
+
+	//The thickness of the lines between rows
+	private static final int RULE_WIDTH = 1;
+
+	//Colors are 0xRRGGBB, or NO_COLOR for nothing drawn
+	private static final int NO_COLOR = -1;
+
+	private int columns;
+	private String[] header;
+	private int[] columnWidths;
+	private int sampleSize = DEFAULT_SAMPLE_SIZE;
+	private int fontSize = DEFAULT_FONT_SIZE;
+	private int textColor = 0x000000;
+	private int headerColor = 0xDDDDDD;
+	private int lineColor = 0x999999;
+
+	/**
+	 * Construct a table with no header, whose column widths are worked out from its first rows
+	 * @param columns
+	 */
+	public Table(int columns)
+	{
+		if (columns <= 0) throw new IllegalArgumentException("Invalid number of columns: " + columns);
+		this.columns = columns;
+	}
+
+	/**
+	 * Set the header, which goes at the top of the table on every page it flows onto
+	 * @param header the text of each column's header, or null for no header
+	 */
+	public void setHeader(String... header)
+	{
+		if (header != null) checkColumns(header.length);
+		this.header = header;
+	}
+
+	/**
+	 * Give the columns fixed widths, instead of working them out from the first rows
+	 * @param widths in points (1/72 inch), or null to work them out again
+	 */
+	public void setColumnWidths(int... widths)
+	{
+		if (widths != null)
+		{
+			checkColumns(widths.length);
+			for (int width : widths) if (width <= CELL_PADDING * 2) throw new IllegalArgumentException("Invalid column width: " + width);
+		}
+		this.columnWidths = widths;
+	}
+
+	/**
+	 * Set how many rows are read ahead to work out column widths from, DEFAULT_SAMPLE_SIZE unless this is called.
+	 * These rows are held in memory until they are laid out.
+	 * @param rows
+	 */
+	public void setSampleSize(int rows)
+	{
+		if (rows < 0) throw new IllegalArgumentException("Invalid sample size: " + rows);
+		this.sampleSize = rows;
+	}
+
+	/**
+	 * Simple setter for the font size of the header and the cells
+	 * @param fontSize
+	 */
+	public void setFontSize(int fontSize)
+	{
+		if (fontSize <= 0) throw new IllegalArgumentException("Invalid font size: " + fontSize);
+		this.fontSize = fontSize;
+	}
+
+	/**
+	 * Simple setter for the color of the text, like 000000
+	 * @param hexColorCode
+	 */
+	public void setTextColor(String hexColorCode) { textColor = Stream.convertHexColorCodeToRgb(hexColorCode); }
+
+	/**
+	 * Simple setter for the background color of the header, like DDDDDD
+	 * @param hexColorCode null for no background
+	 */
+	public void setHeaderColor(String hexColorCode) { headerColor = hexColorCode != null ? Stream.convertHexColorCodeToRgb(hexColorCode) : NO_COLOR; }
+
+	/**
+	 * Simple setter for the color of the lines between rows, like 999999
+	 * @param hexColorCode null for no lines
+	 */
+	public void setLineColor(String hexColorCode) { lineColor = hexColorCode != null ? Stream.convertHexColorCodeToRgb(hexColorCode) : NO_COLOR; }
+
+	private void checkColumns(int count)
+	{
+		if (count != columns) throw new IllegalArgumentException("Expected " + columns + " columns, got " + count);
+	}
+
+	/**
+	 * Lay out the table at the next auto-text position of stream, flowing onto new pages as needed
+	 * @param stream
+	 * @param rows
+	 */
+	protected void addTo(Stream stream, Iterator<String[]> rows)
+	{
+		Font font = stream.getFont();
+
+		//The rows read to work out column widths are laid out first
+		List<String[]> sample = new ArrayList<String[]>();
+		int[] widths = columnWidths;
+		if (widths == null)
+		{
+			while (sample.size() < sampleSize && rows.hasNext()) sample.add(rows.next());
+			widths = measureColumns(font, sample, (int)(stream.getWidth() - Stream.MARGIN_HORIZONTAL * 2));
+		}
+
+		Layout layout = new Layout(stream, font, widths);
+		for (String[] row : sample) layout.addRow(row);
+		sample.clear();
+		while (rows.hasNext()) layout.addRow(rows.next());
+		layout.finish();
+	}
+
+	//Work out column widths from how wide the text of the header and the sample rows is, filling availableWidth
+	private int[] measureColumns(Font font, List<String[]> sample, int availableWidth)
+	{
+		double[] wanted = new double[columns];
+		if (header != null) measureRow(font, header, wanted);
+		for (String[] row : sample) measureRow(font, row, wanted);
+
+		double maxWidth = columns > 1 ? availableWidth * MAX_COLUMN_SHARE : availableWidth;
+		double total = 0;
+		for (int i=0;i<columns;i++)
+		{
+			wanted[i] = Math.min(Math.max(wanted[i] + CELL_PADDING * 2, MIN_COLUMN_WIDTH), maxWidth);
+			total += wanted[i];
+		}
+
+		//Scale the columns to fill the width, the last one gets whatever rounding leaves over
+		int[] widths = new int[columns];
+		int used = 0;
+		for (int i=0;i<columns - 1;i++)
+		{
+			widths[i] = Math.max((int)(wanted[i] * availableWidth / total), CELL_PADDING * 2 + 1);
+			used += widths[i];
+		}
+		widths[columns - 1] = Math.max(availableWidth - used, CELL_PADDING * 2 + 1);
+		return widths;
+	}
+
+	//Keep the widest unwrapped text of each column, in points
+	private void measureRow(Font font, String[] row, double[] wanted)
+	{
+		for (int i=0;i<row.length && i<columns;i++)
+		{
+			if (row[i] == null) continue;
+			wanted[i] = Math.max(wanted[i], FontMetrics.toPoints(font.getWidth(row[i], 0, row[i].length()), fontSize));
+		}
+	}
+
+	/**
+	 * A simple inner class to hold the state of a table being laid out: the page it is on, and where the next row goes
+	 */
+	private class Layout
+	{
+		private Stream stream;
+		private Stream page;
+		private Font font;
+		private int[] widths;
+		private int tableWidth;
+		private double lineHeight;
+
+		//Each column wraps its cell with its own LineBreaker, which is reused for every row
+		private LineBreaker[] lineBreakers;
+
+		//The header is drawn once into a template, which is placed at the top of each page
+		private Template headerTemplate;
+
+		//The top of the next row, and how many rows are on the current page
+		private double y;
+		private int rowsOnPage;
+		private boolean started;
+
+		public Layout(Stream stream, Font font, int[] widths)
+		{
+			this.stream = stream;
+			this.page = stream.getFlowStream();
+			this.font = font;
+			this.widths = widths;
+			this.lineHeight = fontSize * Stream.LINE_SPACING;
+			for (int width : widths) tableWidth += width;
+
+			lineBreakers = new LineBreaker[columns];
+			for (int i=0;i<columns;i++) lineBreakers[i] = new LineBreaker();
+			y = page.getNextLineY();
+
+			if (header != null)
+			{
+				int lineCount = countLines(header);
+				int headerHeight = (int)Math.ceil(getHeight(lineCount));
+				headerTemplate = stream.newTemplate(tableWidth, headerHeight);
+				Stream headerStream = headerTemplate.getStream();
+				if (headerColor != NO_COLOR) headerStream.fillRectangle(0, headerHeight, tableWidth, 0, headerColor);
+				drawCells(headerStream, header, lineCount, 0, headerHeight, false);
+			}
+		}
+
+		//Lay out a row, on a new page if it doesn't fit on this one
+		public void addRow(String[] row)
+		{
+			if (row.length > columns) throw new IllegalArgumentException("Expected at most " + columns + " cells, got " + row.length);
+			int lineCount = countLines(row);
+			double height = getHeight(lineCount);
+
+			if (!started)
+			{
+				//Don't leave the header alone at the bottom of a page, unless the row wouldn't fit on an empty page either
+				if (y - getHeaderHeight() - height < Stream.MARGIN_VERTICAL && y < getTop()) newPage();
+				else addHeader();
+				started = true;
+			}
+			else if (y - height < Stream.MARGIN_VERTICAL && rowsOnPage > 0) newPage();
+
+			y = drawCells(page, row, lineCount, (int)Stream.MARGIN_HORIZONTAL, y, true);
+			if (lineColor != NO_COLOR) page.fillRectangle((int)Stream.MARGIN_HORIZONTAL, (int)y + RULE_WIDTH, (int)Stream.MARGIN_HORIZONTAL + tableWidth, (int)y, lineColor);
+			rowsOnPage++;
+		}
+
+		//Leave the auto-text position below the table
+		public void finish()
+		{
+			if (!started)
+			{
+				if (y - getHeaderHeight() < Stream.MARGIN_VERTICAL && y < getTop()) newPage();
+				else addHeader();
+			}
+			page.setNextLineY(y - lineHeight);
+		}
+
+		//Draw the lineCount lines of a row's cells with their top at top, splitting the row onto new pages if it is allowed to
+		//Returns the bottom of the row
+		private double drawCells(Stream target, String[] row, int lineCount, int left, double top, boolean split)
+		{
+			for (int i=0;i<columns;i++) startCell(i, row);
+
+			double lineTop = top - CELL_PADDING;
+			for (int line=0;line<lineCount;line++)
+			{
+				if (split && line > 0 && lineTop - lineHeight < Stream.MARGIN_VERTICAL)
+				{
+					newPage();
+					target = page;
+					lineTop = y - CELL_PADDING;
+				}
+
+				int x = left;
+				int baseline = (int)(lineTop - fontSize);
+				for (int i=0;i<columns;i++)
+				{
+					LineBreaker lineBreaker = lineBreakers[i];
+					if (hasText(i, row) && lineBreaker.nextLine() && lineBreaker.getEnd() > lineBreaker.getStart())
+					{
+						target.writeText(font, row[i], lineBreaker.getStart(), lineBreaker.getEnd(), lineBreaker.isHyphenated(), fontSize, x + CELL_PADDING, baseline, textColor);
+					}
+					x += widths[i];
+				}
+				lineTop -= lineHeight;
+			}
+			return lineTop - CELL_PADDING;
+		}
+
+		//The number of lines the most wrapped cell of a row has, even an empty row is a line high
+		private int countLines(String[] row)
+		{
+			int lineCount = 0;
+			for (int i=0;i<columns;i++)
+			{
+				if (!startCell(i, row)) continue;
+				int lines = 0;
+				while (lineBreakers[i].nextLine()) lines++;
+				lineCount = Math.max(lineCount, lines);
+			}
+			return Math.max(lineCount, 1);
+		}
+
+		//The height of a row with lineCount lines
+		private double getHeight(int lineCount) { return lineCount * lineHeight + CELL_PADDING * 2; }
+
+		//Start wrapping the cell in column i, if it has text
+		private boolean startCell(int i, String[] row)
+		{
+			if (!hasText(i, row)) return false;
+			lineBreakers[i].reset(font, row[i], (widths[i] - CELL_PADDING * 2) * 1000 / fontSize);
+			return true;
+		}
+
+		private boolean hasText(int i, String[] row) { return i < row.length && row[i] != null; }
+
+		private double getHeaderHeight() { return headerTemplate != null ? headerTemplate.getHeight() : 0; }
+
+		//The top of an empty page
+		private double getTop() { return page.getHeight() - Stream.MARGIN_VERTICAL; }
+
+		//Move on to a new page, with the header at its top
+		private void newPage()
+		{
+			page = stream.flowOntoNewPage();
+			y = page.getNextLineY();
+			rowsOnPage = 0;
+			addHeader();
+		}
+
+		private void addHeader()
+		{
+			if (headerTemplate == null) return;
+			y -= headerTemplate.getHeight();
+			page.addTemplate(headerTemplate, (int)Stream.MARGIN_HORIZONTAL, (int)y);
+		}
+	}
+}
@@ -0,0 +1,85 @@
+package com.finalhack.pdroidf;
+
+import static com.finalhack.pdroidf.Pdf.NEW_LINE;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A block of drawing that is recorded once and can be placed on any number of pages, like a header, a footer or a watermark.
+ * It is written out once per PDF as a Form XObject, and each page it is placed on only needs a single Do operator to draw it.
+ * Draw into it through getStream() just like into a page, then place it with Stream.addTemplate().
+ * Text added with the auto-line addText() doesn't flow onto new pages, anything below the template's bottom edge is cut off.
+ */
+public class Template
+{
+	//The name content streams use to draw this template, like Fm1
+	private String name;
+
+	//The size of the template, anything drawn outside of it is cut off
+	private int width;
+	private int height;
+
+	//The drawing operations, which become the Form XObject's content
+	private Stream stream;
+
+	/**
+	 * Construct an empty template
+	 * @param currentObjectId
+	 * @param pages
+	 * @param name
+	 * @param width
+	 * @param height
+	 */
+	public Template(AtomicInteger currentObjectId, Pages pages, String name, int width, int height)
+	{
+		if (width <= 0 || height <= 0) throw new IllegalArgumentException("Invalid template size: " + width + "x" + height);
+		this.name = name;
+		this.width = width;
+		this.height = height;
+		this.stream = new Stream(currentObjectId, pages, this);
+	}
+
+	/**
+	 * Get the Stream used to draw into this template.
+	 * Coordinates are based on an origin (0,0) in the bottom left corner of the template.
+	 * @return
+	 */
+	public Stream getStream() { return stream; }
+
+	/**
+	 * Simple getter for the template's width
+	 * @return
+	 */
+	public int getWidth() { return width; }
+
+	/**
+	 * Simple getter for the template's height
+	 * @return
+	 */
+	public int getHeight() { return height; }
+
+	/**
+	 * Simple getter for unique objectId
+	 * @return
+	 */
+	protected int getObjectId() { return stream.getObjectId(); }
+
+	/**
+	 * Simple getter for the name content streams use to draw this template
+	 * @return
+	 */
+	protected String getName() { return name; }
+
+	/**
+	 * Add the entries that make a stream dictionary a Form XObject
+	 * @param ret
+	 * @param resourcesObjectId
+	 */
+	protected void appendFormEntries(StringBuilder ret, int resourcesObjectId)
+	{
+		ret.append("  /Type /XObject").append(NEW_LINE);
+		ret.append("  /Subtype /Form").append(NEW_LINE);
+		ret.append("  /BBox [ 0 0 " + width + " " + height + " ]").append(NEW_LINE);
+		ret.append("  /Resources " + resourcesObjectId + " 0 R").append(NEW_LINE);
+	}
+}
@@ -0,0 +1,556 @@
+package com.finalhack.pdroidf;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * This class represents an internal data structure.
+ * Someone using this code to output a PDF doesn't need to worry about this class.
+ *
+ * Reads what a PDF needs from a TrueType font file (metrics, the character to glyph map and glyph outlines),
+ * and writes out a subset of it holding only the glyphs a document uses.
+ * Glyph ids are kept as they are in the subset, glyphs that aren't used are simply left empty.
+ */
+public class TrueTypeFile
+{
+	//Tables copied into a subset as-is (besides a few fields), in the tag order a font file lists them.
+	//Only the glyph tables are needed by a PDF, the naming tables (and a small cmap) are kept since some font consumers insist on them.
+	private static final String[] SUBSET_TABLES = { "OS/2", "cmap", "cvt ", "fpgm", "glyf", "head", "hhea", "hmtx", "loca", "maxp", "name", "post", "prep" };
+
+	//A post table without glyph names (format 3) is just its header
+	private static final int POST_HEADER_LENGTH = 32;
+	private static final int POST_FORMAT_3 = 0x00030000;
+
+	//Composite glyph flags
+	private static final int ARG_1_AND_2_ARE_WORDS = 0x0001;
+	private static final int WE_HAVE_A_SCALE = 0x0008;
+	private static final int MORE_COMPONENTS = 0x0020;
+	private static final int WE_HAVE_AN_X_AND_Y_SCALE = 0x0040;
+	private static final int WE_HAVE_A_TWO_BY_TWO = 0x0080;
+
+	//The checksum of a whole font file must come out to this
+	private static final long CHECKSUM_MAGIC = 0xB1B0AFBAL;
+
+	//Characters are looked up in the Basic Multilingual Plane
+	private static final int CMAP_SIZE = 0x10000;
+
+	private static final String DEFAULT_NAME = "TrueTypeFont";
+
+	//The whole font file
+	private byte[] data;
+
+	//The table directory
+	private String[] tableTags;
+	private int[] tableOffsets;
+	private int[] tableLengths;
+
+	//Font wide values, in font units
+	private int unitsPerEm;
+	private int indexToLocFormat;
+	private int xMin;
+	private int yMin;
+	private int xMax;
+	private int yMax;
+	private int ascent;
+	private int descent;
+	private int capHeight;
+	private double italicAngle;
+	private boolean fixedPitch;
+	private int numberOfHMetrics;
+	private int numGlyphs;
+	private String postScriptName = DEFAULT_NAME;
+
+	//The glyph id of each character, and the advance width of each glyph
+	private char[] cmap = new char[CMAP_SIZE];
+	private int[] advances;
+
+	/**
+	 * Read a TrueType font file.
+	 * The data is copied, since glyphs are only taken out of it when the PDF is written out.
+	 * @param data
+	 * @throws IllegalArgumentException if data isn't a TrueType font that can be used
+	 */
+	public TrueTypeFile(byte[] data)
+	{
+		this.data = data.clone();
+		try
+		{
+			readTableDirectory();
+			readHead();
+			readHorizontalMetrics();
+			readCmap();
+			readPost();
+			readOs2();
+			readName();
+		}
+		catch (ArrayIndexOutOfBoundsException e)
+		{
+			throw new IllegalArgumentException("Truncated TrueType font", e);
+		}
+	}
+
+	private void readTableDirectory()
+	{
+		int version = (int)u32(0);
+		if (version != 0x00010000 && version != 0x74727565) throw new IllegalArgumentException("Not a TrueType font");
+
+		int numTables = u16(4);
+		tableTags = new String[numTables];
+		tableOffsets = new int[numTables];
+		tableLengths = new int[numTables];
+		for (int i=0;i<numTables;i++)
+		{
+			int record = 12 + i * 16;
+			tableTags[i] = new String(new char[] { (char)u8(record), (char)u8(record + 1), (char)u8(record + 2), (char)u8(record + 3) });
+			tableOffsets[i] = (int)u32(record + 8);
+			tableLengths[i] = (int)u32(record + 12);
+		}
+
+		for (String tag : new String[] { "head", "hhea", "hmtx", "maxp", "loca", "glyf", "cmap" })
+		{
+			if (findTable(tag) < 0) throw new IllegalArgumentException("TrueType font has no " + tag + " table");
+		}
+	}
+
+	private void readHead()
+	{
+		int head = tableOffset("head");
+		unitsPerEm = u16(head + 18);
+		xMin = s16(head + 36);
+		yMin = s16(head + 38);
+		xMax = s16(head + 40);
+		yMax = s16(head + 42);
+		indexToLocFormat = s16(head + 50);
+
+		numGlyphs = u16(tableOffset("maxp") + 4);
+	}
+
+	private void readHorizontalMetrics()
+	{
+		int hhea = tableOffset("hhea");
+		ascent = s16(hhea + 4);
+		descent = s16(hhea + 6);
+		capHeight = ascent;
+		numberOfHMetrics = u16(hhea + 34);
+
+		//Glyphs past the last metric have the same advance width as the last one
+		int hmtx = tableOffset("hmtx");
+		advances = new int[numGlyphs];
+		for (int i=0;i<numGlyphs;i++) advances[i] = u16(hmtx + Math.min(i, numberOfHMetrics - 1) * 4);
+	}
+
+	//Build the character to glyph lookup table from the best subtable available
+	private void readCmap()
+	{
+		int cmapTable = tableOffset("cmap");
+		int numSubtables = u16(cmapTable + 2);
+		int format4 = -1;
+		int format12 = -1;
+		for (int i=0;i<numSubtables;i++)
+		{
+			int platform = u16(cmapTable + 4 + i * 8);
+			int encoding = u16(cmapTable + 6 + i * 8);
+			int subtable = cmapTable + (int)u32(cmapTable + 8 + i * 8);
+			int format = u16(subtable);
+
+			//Unicode subtables only: Windows BMP (3,1), Windows full (3,10), or any Unicode platform (0,x)
+			boolean unicode = platform == 0 || (platform == 3 && (encoding == 1 || encoding == 10));
+			if (!unicode) continue;
+			if (format == 4 && format4 < 0) format4 = subtable;
+			if (format == 12 && format12 < 0) format12 = subtable;
+		}
+
+		if (format12 >= 0) readCmapFormat12(format12);
+		else if (format4 >= 0) readCmapFormat4(format4);
+		else throw new IllegalArgumentException("TrueType font has no Unicode cmap");
+	}
+
+	private void readCmapFormat4(int subtable)
+	{
+		int segCount = u16(subtable + 6) / 2;
+		int endCodes = subtable + 14;
+		int startCodes = endCodes + segCount * 2 + 2;
+		int idDeltas = startCodes + segCount * 2;
+		int idRangeOffsets = idDeltas + segCount * 2;
+		for (int i=0;i<segCount;i++)
+		{
+			int end = u16(endCodes + i * 2);
+			int start = u16(startCodes + i * 2);
+			int delta = u16(idDeltas + i * 2);
+			int rangeOffset = u16(idRangeOffsets + i * 2);
+			for (int c=start;c<=end && c<0xFFFF;c++)
+			{
+				int glyph;
+				if (rangeOffset == 0) glyph = (c + delta) & 0xFFFF;
+				else
+				{
+					glyph = u16(idRangeOffsets + i * 2 + rangeOffset + (c - start) * 2);
+					if (glyph != 0) glyph = (glyph + delta) & 0xFFFF;
+				}
+				if (glyph < numGlyphs) cmap[c] = (char)glyph;
+			}
+		}
+	}
+
+	private void readCmapFormat12(int subtable)
+	{
+		long numGroups = u32(subtable + 12);
+		for (int i=0;i<numGroups;i++)
+		{
+			int group = subtable + 16 + i * 12;
+			long start = u32(group);
+			long end = Math.min(u32(group + 4), CMAP_SIZE - 1);
+			long glyph = u32(group + 8);
+			for (long c=start;c<=end;c++,glyph++) if (glyph < numGlyphs) cmap[(int)c] = (char)glyph;
+		}
+	}
+
+	private void readPost()
+	{
+		int post = findTable("post");
+		if (post < 0) return;
+		post = tableOffsets[post];
+		italicAngle = s16(post + 4) + u16(post + 6) / 65536.0;
+		fixedPitch = u32(post + 12) != 0;
+	}
+
+	private void readOs2()
+	{
+		int os2 = findTable("OS/2");
+		if (os2 < 0) return;
+
+		//The cap height was added in version 2 of the table
+		int offset = tableOffsets[os2];
+		if (u16(offset) >= 2 && tableLengths[os2] >= 90) capHeight = s16(offset + 88);
+	}
+
+	//Use the PostScript name (name id 6), leaving out anything that isn't allowed in a PDF name
+	private void readName()
+	{
+		int nameTable = findTable("name");
+		if (nameTable < 0) return;
+		nameTable = tableOffsets[nameTable];
+
+		int count = u16(nameTable + 2);
+		int strings = nameTable + u16(nameTable + 4);
+		for (int i=0;i<count;i++)
+		{
+			int record = nameTable + 6 + i * 12;
+			int platform = u16(record);
+			if (u16(record + 6) != 6 || (platform != 1 && platform != 3)) continue;
+
+			int length = u16(record + 8);
+			int offset = strings + u16(record + 10);
+
+			//Windows names are UTF-16, Mac names are single bytes
+			int step = platform == 3 ? 2 : 1;
+			StringBuilder name = new StringBuilder();
+			for (int j=step-1;j<length;j+=step)
+			{
+				char c = (char)u8(offset + j);
+				if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '-') name.append(c);
+			}
+			if (name.length() > 0) postScriptName = name.toString();
+			return;
+		}
+	}
+
+	/**
+	 * Simple getter for the glyph id of a character, which is 0 (the missing glyph) if the font doesn't have it
+	 * @param c
+	 * @return
+	 */
+	protected int getGlyph(char c) { return cmap[c]; }
+
+	/**
+	 * Simple getter for the number of glyphs in the font
+	 * @return
+	 */
+	protected int getNumGlyphs() { return numGlyphs; }
+
+	/**
+	 * Get the advance width of a glyph in font units
+	 * @param glyph
+	 * @return
+	 */
+	protected int getAdvance(int glyph) { return advances[glyph]; }
+
+	/**
+	 * Simple getter for the number of font units in an em (the font size)
+	 * @return
+	 */
+	protected int getUnitsPerEm() { return unitsPerEm; }
+
+	//Simple getters for font wide values, in font units
+	protected int getXMin() { return xMin; }
+	protected int getYMin() { return yMin; }
+	protected int getXMax() { return xMax; }
+	protected int getYMax() { return yMax; }
+	protected int getAscent() { return ascent; }
+	protected int getDescent() { return descent; }
+	protected int getCapHeight() { return capHeight; }
+	protected double getItalicAngle() { return italicAngle; }
+	protected boolean isFixedPitch() { return fixedPitch; }
+	protected String getPostScriptName() { return postScriptName; }
+
+	/**
+	 * Simple getter for the size of the whole font file
+	 * @return
+	 */
+	protected int getLength() { return data.length; }
+
+	/**
+	 * Write out a font file holding only some of the glyphs.
+	 * Glyphs that the given glyphs are made out of (parts of composite glyphs) are added to the set.
+	 * @param glyphs the glyph ids to keep, the missing glyph (0) is always kept
+	 * @param unicodes the character each glyph is used for (0 for none), indexed by glyph id
+	 * @param out
+	 */
+	protected void writeSubset(BitSet glyphs, char[] unicodes, ByteSink out)
+	{
+		glyphs.set(0);
+		addCompositeParts(glyphs);
+
+		//Glyph ids stay the same, so the subset holds every glyph up to the highest one used
+		int subsetGlyphs = glyphs.length();
+		int subsetHMetrics = Math.min(numberOfHMetrics, subsetGlyphs);
+
+		//Build the new glyf and loca tables (always with 4 byte offsets)
+		ByteSink glyf = new ByteSink();
+		ByteSink loca = new ByteSink((subsetGlyphs + 1) * 4);
+		for (int i=0;i<subsetGlyphs;i++)
+		{
+			writeU32(loca, glyf.size());
+			if (!glyphs.get(i)) continue;
+			int start = glyphOffset(i);
+			int length = glyphOffset(i + 1) - start;
+			if (length <= 0) continue;
+			glyf.write(data, tableOffset("glyf") + start, length);
+			while (glyf.size() % 4 != 0) glyf.write(0);
+		}
+		writeU32(loca, glyf.size());
+
+		//Collect the tables, fixing up the fields that changed
+		int tableCount = 0;
+		ByteSink[] tables = new ByteSink[SUBSET_TABLES.length];
+		for (int i=0;i<SUBSET_TABLES.length;i++)
+		{
+			String tag = SUBSET_TABLES[i];
+			if (tag.equals("glyf")) tables[i] = glyf;
+			else if (tag.equals("loca")) tables[i] = loca;
+			else if (tag.equals("cmap")) tables[i] = getSubsetCmap(unicodes);
+			else
+			{
+				int index = findTable(tag);
+				if (index < 0) continue;
+				int length = tableLengths[index];
+				if (tag.equals("hmtx")) length = subsetHMetrics * 4 + (subsetGlyphs - subsetHMetrics) * 2;
+				if (tag.equals("post")) length = Math.min(length, POST_HEADER_LENGTH);
+
+				tables[i] = new ByteSink(length);
+				tables[i].write(data, tableOffsets[index], length);
+				byte[] table = tables[i].getBuffer();
+				if (tag.equals("head"))
+				{
+					//Clear checkSumAdjustment (it is set once the whole file is done) and use 4 byte loca offsets
+					putU32(table, 8, 0);
+					putU16(table, 50, 1);
+				}
+				else if (tag.equals("hhea")) putU16(table, 34, subsetHMetrics);
+				else if (tag.equals("maxp")) putU16(table, 4, subsetGlyphs);
+				else if (tag.equals("post")) putU32(table, 0, POST_FORMAT_3);
+			}
+			tableCount++;
+		}
+
+		//The table directory
+		int start = out.size();
+		int searchRange = Integer.highestOneBit(tableCount) * 16;
+		writeU32(out, 0x00010000);
+		writeU16(out, tableCount);
+		writeU16(out, searchRange);
+		writeU16(out, Integer.numberOfTrailingZeros(Integer.highestOneBit(tableCount)));
+		writeU16(out, tableCount * 16 - searchRange);
+
+		int offset = 12 + tableCount * 16;
+		int headOffset = 0;
+		for (int i=0;i<SUBSET_TABLES.length;i++)
+		{
+			if (tables[i] == null) continue;
+			String tag = SUBSET_TABLES[i];
+			for (int j=0;j<4;j++) out.write(tag.charAt(j));
+			writeU32(out, (int)checksum(tables[i].getBuffer(), 0, tables[i].size()));
+			writeU32(out, offset);
+			writeU32(out, tables[i].size());
+			if (tag.equals("head")) headOffset = offset;
+			offset += (tables[i].size() + 3) & ~3;
+		}
+
+		//The tables themselves, each one padded to 4 bytes
+		for (int i=0;i<SUBSET_TABLES.length;i++)
+		{
+			if (tables[i] == null) continue;
+			out.write(tables[i]);
+			while ((out.size() - start) % 4 != 0) out.write(0);
+		}
+
+		//Make the checksum of the whole file come out right
+		long adjustment = (CHECKSUM_MAGIC - checksum(out.getBuffer(), start, out.size() - start)) & 0xFFFFFFFFL;
+		putU32(out.getBuffer(), start + headOffset + 8, (int)adjustment);
+	}
+
+	//A cmap with a single format 4 subtable that maps just the characters that are used
+	private ByteSink getSubsetCmap(char[] unicodes)
+	{
+		int count = 0;
+		char[] chars = new char[unicodes.length];
+		for (int i=0;i<unicodes.length;i++) if (unicodes[i] != 0) chars[count++] = unicodes[i];
+		Arrays.sort(chars, 0, count);
+
+		//Characters that are next to each other and whose glyphs are next to each other share a segment
+		int[] starts = new int[count + 1];
+		int[] ends = new int[count + 1];
+		int[] deltas = new int[count + 1];
+		int segCount = 0;
+		for (int i=0;i<count;i++)
+		{
+			int delta = cmap[chars[i]] - chars[i];
+			if (segCount > 0 && ends[segCount - 1] == chars[i] - 1 && deltas[segCount - 1] == delta) ends[segCount - 1]++;
+			else
+			{
+				starts[segCount] = chars[i];
+				ends[segCount] = chars[i];
+				deltas[segCount] = delta;
+				segCount++;
+			}
+		}
+
+		//The last segment must end at 0xFFFF
+		starts[segCount] = 0xFFFF;
+		ends[segCount] = 0xFFFF;
+		deltas[segCount] = 1;
+		segCount++;
+
+		int subtableLength = 16 + segCount * 8;
+		int searchRange = Integer.highestOneBit(segCount) * 2;
+		ByteSink ret = new ByteSink(12 + subtableLength);
+
+		//The header, with one Windows Unicode BMP (3,1) subtable
+		writeU16(ret, 0);
+		writeU16(ret, 1);
+		writeU16(ret, 3);
+		writeU16(ret, 1);
+		writeU32(ret, 12);
+
+		writeU16(ret, 4);
+		writeU16(ret, subtableLength);
+		writeU16(ret, 0);
+		writeU16(ret, segCount * 2);
+		writeU16(ret, searchRange);
+		writeU16(ret, Integer.numberOfTrailingZeros(searchRange / 2));
+		writeU16(ret, segCount * 2 - searchRange);
+		for (int i=0;i<segCount;i++) writeU16(ret, ends[i]);
+		writeU16(ret, 0);
+		for (int i=0;i<segCount;i++) writeU16(ret, starts[i]);
+		for (int i=0;i<segCount;i++) writeU16(ret, deltas[i]);
+		for (int i=0;i<segCount;i++) writeU16(ret, 0);
+		return ret;
+	}
+
+	//Composite glyphs are drawn using other glyphs, which must be in the subset too
+	private void addCompositeParts(BitSet glyphs)
+	{
+		int glyf = tableOffset("glyf");
+
+		//Parts can be composite glyphs themselves, so any part that gets added is checked too
+		int[] pending = new int[glyphs.cardinality()];
+		int count = 0;
+		for (int glyph=glyphs.nextSetBit(0);glyph>=0;glyph=glyphs.nextSetBit(glyph+1)) pending[count++] = glyph;
+
+		while (count > 0)
+		{
+			int glyph = pending[--count];
+			if (glyph >= numGlyphs) continue;
+			int start = glyphOffset(glyph);
+			if (glyphOffset(glyph + 1) - start <= 0 || s16(glyf + start) >= 0) continue;
+
+			int component = glyf + start + 10;
+			int flags;
+			do
+			{
+				flags = u16(component);
+				int part = u16(component + 2);
+				if (part < numGlyphs && !glyphs.get(part))
+				{
+					glyphs.set(part);
+					if (count == pending.length) pending = Arrays.copyOf(pending, count * 2 + 1);
+					pending[count++] = part;
+				}
+				component += 4 + ((flags & ARG_1_AND_2_ARE_WORDS) != 0 ? 4 : 2);
+				if ((flags & WE_HAVE_A_SCALE) != 0) component += 2;
+				else if ((flags & WE_HAVE_AN_X_AND_Y_SCALE) != 0) component += 4;
+				else if ((flags & WE_HAVE_A_TWO_BY_TWO) != 0) component += 8;
+			}
+			while ((flags & MORE_COMPONENTS) != 0);
+		}
+	}
+
+	//The offset of a glyph in the glyf table, from the loca table
+	private int glyphOffset(int glyph)
+	{
+		int loca = tableOffset("loca");
+		if (indexToLocFormat == 0) return u16(loca + glyph * 2) * 2;
+		return (int)u32(loca + glyph * 4);
+	}
+
+	private int findTable(String tag)
+	{
+		for (int i=0;i<tableTags.length;i++) if (tableTags[i].equals(tag)) return i;
+		return -1;
+	}
+
+	private int tableOffset(String tag) { return tableOffsets[findTable(tag)]; }
+
+	//The sum of a table as big endian 32 bit numbers
+	private static long checksum(byte[] bytes, int offset, int length)
+	{
+		long sum = 0;
+		for (int i=0;i<length;i+=4)
+		{
+			long value = 0;
+			for (int j=0;j<4;j++) value = (value << 8) | (i + j < length ? bytes[offset + i + j] & 0xFF : 0);
+			sum += value;
+		}
+		return sum & 0xFFFFFFFFL;
+	}
+
+	//Big endian numbers, like everything in a font file
+	private int u8(int offset) { return data[offset] & 0xFF; }
+	private int u16(int offset) { return ((data[offset] & 0xFF) << 8) | (data[offset + 1] & 0xFF); }
+	private int s16(int offset) { return (short)u16(offset); }
+	private long u32(int offset) { return ((long)u16(offset) << 16) | u16(offset + 2); }
+
+	private static void writeU16(ByteSink out, int value)
+	{
+		out.write(value >>> 8);
+		out.write(value);
+	}
+
+	private static void writeU32(ByteSink out, int value)
+	{
+		writeU16(out, value >>> 16);
+		writeU16(out, value);
+	}
+
+	private static void putU16(byte[] bytes, int offset, int value)
+	{
+		bytes[offset] = (byte)(value >>> 8);
+		bytes[offset + 1] = (byte)value;
+	}
+
+	private static void putU32(byte[] bytes, int offset, int value)
+	{
+		putU16(bytes, offset, value >>> 16);
+		putU16(bytes, offset + 2, value);
+	}
+}
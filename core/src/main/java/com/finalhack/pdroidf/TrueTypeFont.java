@@ -0,0 +1,264 @@
+package com.finalhack.pdroidf;
+
+import static com.finalhack.pdroidf.Pdf.NEW_LINE;
+
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A TrueType font, which can have any character (not just the ones in WinAnsiEncoding).
+ * Only the glyphs a document actually uses are embedded, as a Type0 font with a CIDFontType2 descendant and Identity-H encoding.
+ * A ToUnicode CMap is written too, so that text can still be searched and copied out of the PDF.
+ * Characters outside of the Basic Multilingual Plane are shown as the font's missing glyph, once per character (not once per surrogate pair half).
+ */
+public class TrueTypeFont extends Font
+{
+	//Most values in a font file are in font units, PDFs want 1/1000ths of the font size
+	private static final int PDF_UNITS_PER_EM = 1000;
+
+	//Font descriptor flags: symbolic (the font has characters outside of the standard Latin set), and fixed pitch
+	private static final int FLAG_SYMBOLIC = 4;
+	private static final int FLAG_FIXED_PITCH = 1;
+
+	//There is no good way to get the stem width from a font file, this is what's usually used for a regular weight
+	private static final int STEM_V = 80;
+
+	//A bfchar block in a CMap may hold at most this many mappings
+	private static final int MAX_CMAP_BLOCK = 100;
+
+	//The other objects making up this font
+	private int cidFontId;
+	private int descriptorId;
+	private int fontFileId;
+	private int toUnicodeId;
+
+	private TrueTypeFile file;
+
+	//The width of each glyph in 1/1000ths of the font size
+	private int[] widths;
+
+	//The glyphs used so far, and the character each of them was first used for (for the ToUnicode CMap)
+	private BitSet usedGlyphs = new BitSet();
+	private char[] unicodes;
+
+	/**
+	 * Construct a font from a TrueType font file
+	 * @param currentObjectId
+	 * @param name
+	 * @param data
+	 * @throws IllegalArgumentException if data isn't a TrueType font that can be used
+	 */
+	public TrueTypeFont(AtomicInteger currentObjectId, String name, byte[] data)
+	{
+		super(currentObjectId.getAndAdd(1), name);
+		this.cidFontId = currentObjectId.getAndAdd(1);
+		this.descriptorId = currentObjectId.getAndAdd(1);
+		this.fontFileId = currentObjectId.getAndAdd(1);
+		this.toUnicodeId = currentObjectId.getAndAdd(1);
+
+		file = new TrueTypeFile(data);
+		widths = new int[file.getNumGlyphs()];
+		for (int i=0;i<widths.length;i++) widths[i] = toPdfUnits(file.getAdvance(i));
+		unicodes = new char[file.getNumGlyphs()];
+	}
+
+	@Override
+	protected int getWidth(char c)
+	{
+		//A surrogate pair is a single character, measured by its first half
+		if (Character.isLowSurrogate(c)) return 0;
+		return widths[getGlyph(c)];
+	}
+
+	@Override
+	protected int getWidth(String text, int start, int end)
+	{
+		int ret = 0;
+		int codePoint;
+		for (int i=start;i<end;i+=Character.charCount(codePoint))
+		{
+			codePoint = text.codePointAt(i);
+			ret += widths[getGlyph(codePoint)];
+		}
+		return ret;
+	}
+
+	@Override
+	protected void showText(ContentWriter content, String text, int start, int end, char suffix)
+	{
+		content.beginGlyphs();
+		int codePoint;
+		for (int i=start;i<end;i+=Character.charCount(codePoint))
+		{
+			codePoint = text.codePointAt(i);
+			content.writeGlyph(useGlyph(codePoint));
+		}
+		if (suffix != 0) content.writeGlyph(useGlyph(suffix));
+		content.endGlyphs();
+	}
+
+	//The glyph for a character, characters outside of the Basic Multilingual Plane (and halves of surrogate pairs) get the missing glyph
+	private int getGlyph(int codePoint)
+	{
+		if (codePoint > Character.MAX_VALUE || Character.isHighSurrogate((char)codePoint) || Character.isLowSurrogate((char)codePoint)) return 0;
+		return file.getGlyph((char)codePoint);
+	}
+
+	//Look up the glyph for a character, and remember that it is used
+	private int useGlyph(int codePoint)
+	{
+		int glyph = getGlyph(codePoint);
+		if (glyph != 0 && unicodes[glyph] == 0)
+		{
+			usedGlyphs.set(glyph);
+			unicodes[glyph] = (char)codePoint;
+		}
+		return glyph;
+	}
+
+	@Override
+	protected void writeTo(PdfWriter writer) throws IOException
+	{
+		//The subset also gets the glyphs that used glyphs are made out of
+		BitSet subsetGlyphs = (BitSet)usedGlyphs.clone();
+		ByteSink fontFile = new ByteSink(file.getLength() / 4);
+		file.writeSubset(subsetGlyphs, unicodes, fontFile);
+
+		//Subset fonts are named with a tag that is unique to the set of glyphs, like ABCDEF+DejaVuSans
+		String baseFont = getSubsetTag(subsetGlyphs) + "+" + file.getPostScriptName();
+
+		StringBuilder ret = new StringBuilder();
+		ret.append("<<").append(NEW_LINE);
+		ret.append("  /Type /Font").append(NEW_LINE);
+		ret.append("  /Subtype /Type0").append(NEW_LINE);
+		ret.append("  /BaseFont /" + baseFont).append(NEW_LINE);
+		ret.append("  /Encoding /Identity-H").append(NEW_LINE);
+		ret.append("  /DescendantFonts [ " + cidFontId + " 0 R ]").append(NEW_LINE);
+		ret.append("  /ToUnicode " + toUnicodeId + " 0 R").append(NEW_LINE);
+		ret.append(">>").append(NEW_LINE);
+		writer.writeObject(getObjectId(), ret.toString());
+
+		ret.setLength(0);
+		ret.append("<<").append(NEW_LINE);
+		ret.append("  /Type /Font").append(NEW_LINE);
+		ret.append("  /Subtype /CIDFontType2").append(NEW_LINE);
+		ret.append("  /BaseFont /" + baseFont).append(NEW_LINE);
+		ret.append("  /CIDSystemInfo << /Registry (Adobe) /Ordering (Identity) /Supplement 0 >>").append(NEW_LINE);
+		ret.append("  /FontDescriptor " + descriptorId + " 0 R").append(NEW_LINE);
+		ret.append("  /CIDToGIDMap /Identity").append(NEW_LINE);
+		ret.append("  /DW " + PDF_UNITS_PER_EM).append(NEW_LINE);
+		ret.append("  /W [");
+		appendWidths(ret);
+		ret.append(" ]").append(NEW_LINE);
+		ret.append(">>").append(NEW_LINE);
+		writer.writeObject(cidFontId, ret.toString());
+
+		ret.setLength(0);
+		ret.append("<<").append(NEW_LINE);
+		ret.append("  /Type /FontDescriptor").append(NEW_LINE);
+		ret.append("  /FontName /" + baseFont).append(NEW_LINE);
+		ret.append("  /Flags " + (FLAG_SYMBOLIC | (file.isFixedPitch() ? FLAG_FIXED_PITCH : 0))).append(NEW_LINE);
+		ret.append("  /FontBBox [ " + toPdfUnits(file.getXMin()) + " " + toPdfUnits(file.getYMin()) + " " + toPdfUnits(file.getXMax()) + " " + toPdfUnits(file.getYMax()) + " ]").append(NEW_LINE);
+		ret.append("  /ItalicAngle " + Math.round(file.getItalicAngle())).append(NEW_LINE);
+		ret.append("  /Ascent " + toPdfUnits(file.getAscent())).append(NEW_LINE);
+		ret.append("  /Descent " + toPdfUnits(file.getDescent())).append(NEW_LINE);
+		ret.append("  /CapHeight " + toPdfUnits(file.getCapHeight())).append(NEW_LINE);
+		ret.append("  /StemV " + STEM_V).append(NEW_LINE);
+		ret.append("  /FontFile2 " + fontFileId + " 0 R").append(NEW_LINE);
+		ret.append(">>").append(NEW_LINE);
+		writer.writeObject(descriptorId, ret.toString());
+
+		//The font file and the CMap are always compressed, they compress well
+		int length1 = fontFile.size();
+		ByteSink data = writer.compress(fontFile);
+		ret.setLength(0);
+		ret.append("<<").append(NEW_LINE);
+		ret.append("  /Length1 " + length1).append(NEW_LINE);
+		ret.append("  /Filter /FlateDecode").append(NEW_LINE);
+		ret.append("  /Length " + data.size()).append(NEW_LINE);
+		ret.append(">>").append(NEW_LINE);
+		writer.writeStream(fontFileId, ret.toString(), data);
+
+		data = writer.compress(getToUnicode());
+		ret.setLength(0);
+		ret.append("<<").append(NEW_LINE);
+		ret.append("  /Filter /FlateDecode").append(NEW_LINE);
+		ret.append("  /Length " + data.size()).append(NEW_LINE);
+		ret.append(">>").append(NEW_LINE);
+		writer.writeStream(toUnicodeId, ret.toString(), data);
+	}
+
+	//Widths of used glyphs, grouped into runs of consecutive glyph ids like: 3 [ 250 333 ] 17 [ 500 ]
+	private void appendWidths(StringBuilder ret)
+	{
+		int previous = -2;
+		for (int glyph=usedGlyphs.nextSetBit(0);glyph>=0;glyph=usedGlyphs.nextSetBit(glyph+1))
+		{
+			if (glyph != previous + 1)
+			{
+				if (previous >= 0) ret.append(" ]");
+				ret.append(' ').append(glyph).append(" [");
+			}
+			ret.append(' ').append(widths[glyph]);
+			previous = glyph;
+		}
+		if (previous >= 0) ret.append(" ]");
+	}
+
+	//A CMap mapping each used glyph id back to its character
+	private ByteSink getToUnicode()
+	{
+		ByteSink ret = new ByteSink();
+		ret.write("/CIDInit /ProcSet findresource begin" + NEW_LINE);
+		ret.write("12 dict begin" + NEW_LINE);
+		ret.write("begincmap" + NEW_LINE);
+		ret.write("/CIDSystemInfo << /Registry (Adobe) /Ordering (UCS) /Supplement 0 >> def" + NEW_LINE);
+		ret.write("/CMapName /Adobe-Identity-UCS def" + NEW_LINE);
+		ret.write("/CMapType 2 def" + NEW_LINE);
+		ret.write("1 begincodespacerange" + NEW_LINE);
+		ret.write("<0000> <FFFF>" + NEW_LINE);
+		ret.write("endcodespacerange" + NEW_LINE);
+
+		ContentWriter hex = new ContentWriter(ret);
+		int remaining = usedGlyphs.cardinality();
+		int glyph = usedGlyphs.nextSetBit(0);
+		while (remaining > 0)
+		{
+			int block = Math.min(remaining, MAX_CMAP_BLOCK);
+			ret.write(block + " beginbfchar" + NEW_LINE);
+			for (int i=0;i<block;i++,glyph=usedGlyphs.nextSetBit(glyph+1))
+			{
+				ret.write('<');
+				hex.writeGlyph(glyph);
+				ret.write("> <");
+				hex.writeGlyph(unicodes[glyph]);
+				ret.write('>');
+				ret.write(NEW_LINE);
+			}
+			ret.write("endbfchar" + NEW_LINE);
+			remaining -= block;
+		}
+
+		ret.write("endcmap" + NEW_LINE);
+		ret.write("CMapName currentdict /CMap defineresource pop" + NEW_LINE);
+		ret.write("end" + NEW_LINE);
+		ret.write("end" + NEW_LINE);
+		return ret;
+	}
+
+	//Six capital letters that depend on which glyphs are in the subset
+	private static String getSubsetTag(BitSet glyphs)
+	{
+		long hash = glyphs.hashCode() & 0xFFFFFFFFL;
+		char[] ret = new char[6];
+		for (int i=0;i<ret.length;i++)
+		{
+			ret[i] = (char)('A' + hash % 26);
+			hash /= 26;
+		}
+		return new String(ret);
+	}
+
+	private int toPdfUnits(int fontUnits) { return Math.round(fontUnits * (float)PDF_UNITS_PER_EM / file.getUnitsPerEm()); }
+}
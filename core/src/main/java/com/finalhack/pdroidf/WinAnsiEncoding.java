@@ -0,0 +1,56 @@
+package com.finalhack.pdroidf;
+
+/**
+ * This class represents an internal data structure.
+ * Someone using this code to output a PDF doesn't need to worry about this class.
+ *
+ * Maps characters to the single byte codes of WinAnsiEncoding, the encoding of the standard fonts.
+ * Codes 0x00 to 0x7F and 0xA0 to 0xFF are the same as Unicode (and ISO-8859-1),
+ * codes 0x80 to 0x9F hold typographic characters like curly quotes, dashes and the euro sign.
+ */
+public class WinAnsiEncoding
+{
+	/**
+	 * Characters that aren't in WinAnsiEncoding are shown as this
+	 */
+	public static final int REPLACEMENT = '?';
+
+	/**
+	 * Returned for characters that don't get a code of their own (the second half of a surrogate pair)
+	 */
+	public static final int NONE = -1;
+
+	//The characters of codes 0x80 to 0x9F, 0 where the code has no character
+	private static final char[] CODES_80_TO_9F =
+	{
+		'\u20AC', 0, '\u201A', '\u0192', '\u201E', '\u2026', '\u2020', '\u2021', '\u02C6', '\u2030', '\u0160', '\u2039', '\u0152', 0, '\u017D', 0,
+		0, '\u2018', '\u2019', '\u201C', '\u201D', '\u2022', '\u2013', '\u2014', '\u02DC', '\u2122', '\u0161', '\u203A', '\u0153', 0, '\u017E', '\u0178'
+	};
+
+	//Every character in WinAnsiEncoding is below this
+	private static final int TABLE_SIZE = 0x2123;
+
+	//The code of each character from 0x80 up, 0 if it isn't in WinAnsiEncoding
+	private static final byte[] CODES = new byte[TABLE_SIZE];
+
+	static
+	{
+		for (int c=0xA0;c<=0xFF;c++) CODES[c] = (byte)c;
+		for (int i=0;i<CODES_80_TO_9F.length;i++) if (CODES_80_TO_9F[i] != 0) CODES[CODES_80_TO_9F[i]] = (byte)(0x80 + i);
+	}
+
+	/**
+	 * Get the WinAnsiEncoding code of a character
+	 * @param c
+	 * @return the code from 0 to 255, REPLACEMENT if the character isn't in WinAnsiEncoding, or NONE
+	 */
+	protected static int encode(char c)
+	{
+		if (c < 0x80) return c;
+		if (c < TABLE_SIZE && CODES[c] != 0) return CODES[c] & 0xFF;
+
+		//A character outside of the Basic Multilingual Plane is a pair of chars, but it is only replaced once
+		if (Character.isLowSurrogate(c)) return NONE;
+		return REPLACEMENT;
+	}
+}
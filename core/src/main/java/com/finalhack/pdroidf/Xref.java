@@ -0,0 +1,264 @@
+package com.finalhack.pdroidf;
+
+import static com.finalhack.pdroidf.Pdf.NEW_LINE;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * This class represents an internal data structure.
+ * Someone using this code to output a PDF doesn't need to worry about this class.
+ *
+ * Entries are kept in primitive arrays indexed by objectId, so no sorting is needed and gaps in objectIds become free entries.
+ * When setPrevious() is used, only the objects that were added are listed, as the x-reference section of an incremental update.
+ */
+public class Xref
+{
+	//Entry types, these match the type field of a cross-reference stream
+	private static final byte FREE = 0;
+	private static final byte IN_USE = 1;
+	private static final byte COMPRESSED = 2;
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	//The generation number of the head of the free entry list
+	private static final int FREE_HEAD_GENERATION = 65535;
+
+	//Everything in an in-use entry after the byte offset
+	private static final String ENTRY_SUFFIX = " 00000 n " + NEW_LINE;
+
+	//For each objectId: its type, its byte offset (or the objectId of the object stream holding it), and its index in that object stream
+	private byte[] types = new byte[INITIAL_CAPACITY];
+	private long[] offsets = new long[INITIAL_CAPACITY];
+	private int[] indexes = new int[INITIAL_CAPACITY];
+
+	//One more than the highest objectId added
+	private int size = 1;
+
+	//The byte offset of this x-reference section, which the footer points to
+	private long refOffset;
+
+	//The byte offset of the x-reference section this one updates, or -1 if this is the only one
+	private long previous = -1;
+
+	/**
+	 * Add an x-reference for an object that will exist in the PDF
+	 * @param objectId
+	 * @param byteOffset
+	 */
+	protected void addXref(int objectId, long byteOffset)
+	{
+		ensureCapacity(objectId);
+		types[objectId] = IN_USE;
+		offsets[objectId] = byteOffset;
+	}
+
+	/**
+	 * Add an x-reference for an object that is stored inside of an object stream
+	 * @param objectId
+	 * @param objectStreamId
+	 * @param index the position of the object inside of the object stream
+	 */
+	protected void addCompressedXref(int objectId, int objectStreamId, int index)
+	{
+		ensureCapacity(objectId);
+		types[objectId] = COMPRESSED;
+		offsets[objectId] = objectStreamId;
+		indexes[objectId] = index;
+	}
+
+	private void ensureCapacity(int objectId)
+	{
+		if (objectId >= types.length)
+		{
+			int newCapacity = Math.max(objectId + 1, types.length * 2);
+			types = Arrays.copyOf(types, newCapacity);
+			offsets = Arrays.copyOf(offsets, newCapacity);
+			indexes = Arrays.copyOf(indexes, newCapacity);
+		}
+		if (objectId >= size) size = objectId + 1;
+	}
+
+	/**
+	 * Simple getter for the number of entries, which is one more than the highest objectId
+	 * @return
+	 */
+	protected int getSize() { return size; }
+
+	/**
+	 * Simple setter for the offset of all ref data
+	 * @param refOffset
+	 */
+	protected void setRefOffset(long refOffset) { this.refOffset = refOffset; }
+
+	/**
+	 * Make this the x-reference section of an incremental update, which only lists the objects that were added
+	 * @param previousOffset the byte offset of the newest x-reference section of the PDF being updated
+	 */
+	protected void setPrevious(long previousOffset) { this.previous = previousOffset; }
+
+	/**
+	 * Forget all references so that the document can be written out again.
+	 * The arrays that have already grown are kept.
+	 */
+	protected void reset()
+	{
+		Arrays.fill(types, 0, size, FREE);
+		size = 1;
+		refOffset = 0;
+		previous = -1;
+	}
+
+	//Free entries form a linked list starting at object 0, each one holds the objectId of the next free entry.
+	//The links are stored in the (otherwise unused) indexes of free entries.
+	private void linkFreeEntries()
+	{
+		int next = 0;
+		for (int i=size-1;i>=0;i--)
+		{
+			if (types[i] != FREE) continue;
+			indexes[i] = next;
+			next = i;
+		}
+	}
+
+	/**
+	 * Output the actual object in PDF format as a classic x-reference table and trailer
+	 * @param writer
+	 * @param rootObjectId
+	 * @throws IOException
+	 */
+	protected void writeTo(PdfWriter writer, int rootObjectId) throws IOException
+	{
+		StringBuilder ret = new StringBuilder();
+
+		//Standard xref header info
+		ret.append("xref").append(NEW_LINE);
+		if (previous < 0)
+		{
+			ret.append("0 " + size).append(NEW_LINE);
+			writer.write(ret.toString());
+
+			linkFreeEntries();
+			for (int i=0;i<size;i++)
+			{
+				//must be 20 bytes long including EOL marker
+				if (types[i] == IN_USE) writeEntry(writer, offsets[i], ENTRY_SUFFIX);
+				else writeEntry(writer, indexes[i], i == 0 ? " 65535 f " + NEW_LINE : " 00001 f " + NEW_LINE);
+			}
+		}
+		else
+		{
+			writer.write(ret.toString());
+
+			//An update has a subsection for each run of consecutive objectIds it holds
+			for (int start=nextInUse(0);start<size;start=nextInUse(start))
+			{
+				int end = nextFree(start);
+				writer.write(start + " " + (end - start) + NEW_LINE);
+				for (int i=start;i<end;i++) writeEntry(writer, offsets[i], ENTRY_SUFFIX);
+				start = end;
+			}
+		}
+
+		ret.setLength(0);
+		ret.append("trailer").append(NEW_LINE);
+		ret.append("<<").append(NEW_LINE);
+		// from the pdf spec:
+		/*
+		 * The total number of entries in
+		 * the files cross-reference table, as defined by the combination of the original
+		 * section and all update sections. Equivalently, this value shall be 1 greater
+		 * than the highest object number defined in the file.
+		 */
+		ret.append("  /Size " + size).append(NEW_LINE);
+		ret.append("  /Root " + rootObjectId + " 0 R").append(NEW_LINE);
+		if (previous >= 0) ret.append("  /Prev " + previous).append(NEW_LINE);
+		ret.append(">>").append(NEW_LINE);
+		ret.append("startxref").append(NEW_LINE);
+		ret.append(refOffset).append(NEW_LINE);
+
+		writer.write(ret.toString());
+	}
+
+	//The first objectId from start on that has an entry, or size if there is none
+	private int nextInUse(int start)
+	{
+		while (start < size && types[start] == FREE) start++;
+		return start;
+	}
+
+	//The first objectId from start on that doesn't have an entry, or size if there is none
+	private int nextFree(int start)
+	{
+		while (start < size && types[start] != FREE) start++;
+		return start;
+	}
+
+	//Write out a 20 byte entry, the first field is zero padded to 10 digits
+	private void writeEntry(PdfWriter writer, long value, String suffix) throws IOException
+	{
+		for (long divisor=1000000000L;divisor>0;divisor/=10)
+		{
+			writer.write((int)('0' + (value / divisor)));
+			value %= divisor;
+		}
+		writer.write(suffix);
+	}
+
+	/**
+	 * Output the actual object in PDF format as a (PDF 1.5) cross-reference stream.
+	 * The entry for the cross-reference stream itself must have been added already.
+	 * @param writer
+	 * @param objectId the objectId of the cross-reference stream
+	 * @param rootObjectId
+	 * @throws IOException
+	 */
+	protected void writeStreamTo(PdfWriter writer, int objectId, int rootObjectId) throws IOException
+	{
+		//Use as few bytes for the middle field as the largest value needs
+		long largest = 0;
+		for (int i=0;i<size;i++) if (types[i] != FREE) largest = Math.max(largest, offsets[i]);
+		int offsetWidth = 1;
+		while (offsetWidth < 8 && (largest >>> (offsetWidth * 8)) != 0) offsetWidth++;
+
+		//Each entry is a type byte, the offset (or object stream objectId), and the generation (or index) in 2 bytes
+		//An update only has entries for the runs of consecutive objectIds it holds, which are listed in /Index
+		ByteSink entries = new ByteSink(size * (offsetWidth + 3));
+		StringBuilder index = new StringBuilder();
+		linkFreeEntries();
+		for (int i=0;i<size;i++)
+		{
+			if (previous >= 0)
+			{
+				if (types[i] == FREE) continue;
+				if (i == 0 || types[i - 1] == FREE) index.append(' ').append(i).append(' ').append(nextFree(i) - i);
+			}
+			entries.write(types[i]);
+			long value = types[i] == FREE ? indexes[i] : offsets[i];
+			for (int shift=(offsetWidth-1)*8;shift>=0;shift-=8) entries.write((int)(value >>> shift));
+			int last = types[i] == COMPRESSED ? indexes[i] : (types[i] == FREE ? (i == 0 ? FREE_HEAD_GENERATION : 1) : 0);
+			entries.write(last >>> 8);
+			entries.write(last);
+		}
+		ByteSink data = writer.compress(entries);
+
+		StringBuilder ret = new StringBuilder();
+		ret.append("<<").append(NEW_LINE);
+		ret.append("  /Type /XRef").append(NEW_LINE);
+		ret.append("  /Size " + size).append(NEW_LINE);
+		ret.append("  /W [ 1 " + offsetWidth + " 2 ]").append(NEW_LINE);
+		if (previous >= 0) ret.append("  /Index [" + index + " ]").append(NEW_LINE);
+		ret.append("  /Root " + rootObjectId + " 0 R").append(NEW_LINE);
+		if (previous >= 0) ret.append("  /Prev " + previous).append(NEW_LINE);
+		ret.append("  /Filter /FlateDecode").append(NEW_LINE);
+		ret.append("  /Length " + data.size()).append(NEW_LINE);
+		ret.append(">>").append(NEW_LINE);
+		writer.writeStream(objectId, ret.toString(), data);
+
+		ret.setLength(0);
+		ret.append("startxref").append(NEW_LINE);
+		ret.append(refOffset).append(NEW_LINE);
+		writer.write(ret.toString());
+	}
+}
@@ -0,0 +1,101 @@
+package com.finalhack.pdroidf;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Separate Pdf objects on separate threads must not affect each other.
+ * Documents with different page sizes and settings are made on many threads at once, both with new PDFs and PDFs reused with reset(),
+ * and each one must come out exactly like the same document made on a single thread.
+ */
+public class ConcurrencyTest
+{
+	private static final int THREADS = 8;
+	private static final int DOCUMENTS = 48;
+	private static final int ROUNDS = 4;
+
+	private ExecutorService threads;
+	private ExecutorService encoders;
+
+	@Before
+	public void setUp()
+	{
+		threads = Executors.newFixedThreadPool(THREADS);
+		encoders = Executors.newFixedThreadPool(THREADS);
+	}
+
+	@After
+	public void tearDown()
+	{
+		threads.shutdownNow();
+		encoders.shutdownNow();
+	}
+
+	@Test
+	public void parallelDocumentsMatchSingleThreadedOnes() throws Exception
+	{
+		final byte[][] expected = new byte[DOCUMENTS][];
+		for (int i=0;i<DOCUMENTS;i++) expected[i] = document(new Pdf(), i, false);
+
+		List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+		for (int t=0;t<THREADS;t++)
+		{
+			final int thread = t;
+			futures.add(threads.submit(new Callable<Integer>()
+			{
+				@Override
+				public Integer call()
+				{
+					//Each thread alternates between new PDFs and its own reused PDF, and sometimes encodes pages on the shared executor
+					Pdf reused = new Pdf();
+					int count = 0;
+					for (int round=0;round<ROUNDS;round++)
+					{
+						for (int i=thread;i<DOCUMENTS;i+=THREADS)
+						{
+							boolean parallel = (i + round) % 3 == 0;
+							Pdf pdf;
+							if (round % 2 == 0) pdf = new Pdf();
+							else
+							{
+								pdf = reused;
+								pdf.reset();
+							}
+							assertArrayEquals("Document " + i + ", round " + round, expected[i], document(pdf, i, parallel));
+							count++;
+						}
+					}
+					return count;
+				}
+			}));
+		}
+
+		int count = 0;
+		for (Future<Integer> future : futures) count += future.get();
+		assertEquals(DOCUMENTS * ROUNDS, count);
+	}
+
+	//Make a document whose page sizes and settings depend on its number
+	private byte[] document(Pdf pdf, int number, boolean parallel)
+	{
+		if (number % 2 == 1) pdf.setPageSize(Pages.PAGE_HEIGHT, Pages.PAGE_WIDTH);
+		else pdf.setPageSize(Pages.PAGE_WIDTH, Pages.PAGE_HEIGHT);
+		TestDocuments.configure(pdf, number % 3 == 0);
+		pdf.setExecutor(parallel ? encoders : null);
+
+		TestDocuments.build(pdf, number);
+		pdf.addPage(200 + number % 50, 300).addText("Small page " + number, "FF0000", 10);
+		return pdf.getPDF();
+	}
+}
@@ -0,0 +1,142 @@
+package com.finalhack.pdroidf;
+
+import static org.junit.Assert.assertEquals;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+/**
+ * Images added to many pages must only be read (and downsampled) once per PDF, and arrays that are changed must give new images
+ */
+public class ImagesTest
+{
+	private static final int PAGES = 20;
+	private static final String IMAGE = "/Subtype /Image";
+
+	@Test
+	public void aSourceIsOpenedOnceWithoutDownsampling() throws IOException
+	{
+		Pdf pdf = new Pdf();
+		CountingSource source = new CountingSource(jpeg(400, 300));
+		for (int i=0;i<PAGES;i++) pdf.addPage().addImage(10, 10, 100, 75, source);
+		assertEquals(1, source.opens);
+	}
+
+	@Test
+	public void aDownsampledSourceIsOpenedOncePerPlacedSize() throws IOException
+	{
+		Pdf pdf = new Pdf();
+		CountingCodec codec = new CountingCodec();
+		pdf.setImageDownsampling(codec, 72);
+		CountingSource source = new CountingSource(jpeg(400, 300));
+
+		//The header, then the whole image to downsample it
+		for (int i=0;i<PAGES;i++) pdf.addPage().addImage(10, 10, 100, 75, source);
+		assertEquals(2, source.opens);
+		assertEquals(1, codec.calls);
+
+		for (int i=0;i<PAGES;i++) pdf.addPage().addImage(10, 10, 200, 150, source);
+		assertEquals(3, source.opens);
+		assertEquals(2, codec.calls);
+	}
+
+	@Test
+	public void aPngSourceIsOpenedOnce() throws IOException
+	{
+		Pdf pdf = new Pdf();
+		pdf.setImageDownsampling(new CountingCodec(), 72);
+		CountingSource source = new CountingSource(image(40, 30, "png"));
+		for (int i=0;i<PAGES;i++) pdf.addPage().addImage(10, 10, 10, 10, source);
+		assertEquals(1, source.opens);
+	}
+
+	@Test
+	public void theSameArrayOnEveryPageIsOneImage()
+	{
+		Pdf pdf = new Pdf();
+		byte[] logo = jpegBytes(40, 30);
+		for (int i=0;i<PAGES;i++) pdf.addPage().addBmpImage(10, 10, 40, 30, logo);
+		pdf.addPage().addBmpImage(10, 10, 40, 30, logo.clone());
+		assertEquals(1, countImages(pdf.getPDF()));
+	}
+
+	@Test
+	public void anArrayThatIsChangedIsANewImage()
+	{
+		Pdf pdf = new Pdf();
+		byte[] buffer = jpegBytes(40, 30);
+		pdf.addPage().addBmpImage(10, 10, 40, 30, buffer);
+
+		//The same array holding another image, then the first one again
+		buffer[buffer.length - 3]++;
+		pdf.addPage().addBmpImage(10, 10, 40, 30, buffer);
+		buffer[buffer.length - 3]--;
+		pdf.addPage().addBmpImage(10, 10, 40, 30, buffer);
+		assertEquals(2, countImages(pdf.getPDF()));
+	}
+
+	private static int countImages(byte[] pdf)
+	{
+		String text = new String(pdf, Charset.forName("ISO-8859-1"));
+		int count = 0;
+		for (int i=text.indexOf(IMAGE);i>=0;i=text.indexOf(IMAGE, i + 1)) count++;
+		return count;
+	}
+
+	private static byte[] jpegBytes(int width, int height)
+	{
+		try { return jpeg(width, height); } catch (IOException e) { throw new IllegalStateException(e); }
+	}
+
+	private static byte[] jpeg(int width, int height) throws IOException { return image(width, height, "jpg"); }
+
+	private static byte[] image(int width, int height, String format) throws IOException
+	{
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		for (int y=0;y<height;y++) for (int x=0;x<width;x++) image.setRGB(x, y, x * 255 / width << 16 | y * 255 / height << 8);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ImageIO.write(image, format, out);
+		return out.toByteArray();
+	}
+
+	/**
+	 * A simple inner class to count how many times an image is opened
+	 */
+	private static class CountingSource extends ImageSource
+	{
+		private byte[] bytes;
+		private int opens;
+
+		public CountingSource(byte[] bytes) { this.bytes = bytes; }
+
+		@Override
+		public InputStream open()
+		{
+			opens++;
+			return new ByteArrayInputStream(bytes);
+		}
+	}
+
+	/**
+	 * A simple inner class to count downsampling, which makes a new JPEG of the wanted size
+	 */
+	private static class CountingCodec implements ImageCodec
+	{
+		private int calls;
+
+		@Override
+		public byte[] downsample(InputStream jpeg, int jpegWidth, int jpegHeight, int width, int height) throws IOException
+		{
+			calls++;
+			return jpeg(width, height);
+		}
+	}
+}
@@ -0,0 +1,122 @@
+package com.finalhack.pdroidf;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Where text wraps, measured with the widths of the standard font
+ */
+public class LineBreakerTest
+{
+	private Font font = new Font(1, "F1");
+
+	@Test
+	public void emptyTextIsOneEmptyLine()
+	{
+		assertEquals(Arrays.asList(""), lines("", 1000));
+		assertEquals(Arrays.asList(""), lines("   ", 1000));
+	}
+
+	@Test
+	public void textThatFitsIsOneLine()
+	{
+		assertEquals(Arrays.asList("Hello world"), lines("Hello world", 100000));
+	}
+
+	@Test
+	public void textExactlyAsWideAsTheLineFits()
+	{
+		String text = "Hello world";
+		assertEquals(Arrays.asList(text), lines(text, width(text)));
+		assertEquals(Arrays.asList("Hello", "world"), lines(text, width(text) - 1));
+	}
+
+	@Test
+	public void wrapsAtTheLastSpaceThatFits()
+	{
+		assertEquals(Arrays.asList("one two", "three"), lines("one two three", width("one two thr")));
+	}
+
+	@Test
+	public void wrapsAtASpaceThatDoesntFit()
+	{
+		assertEquals(Arrays.asList("one", "two"), lines("one two", width("two")));
+	}
+
+	@Test
+	public void spacesAtTheStartAndEndOfLinesAreLeftOut()
+	{
+		assertEquals(Arrays.asList("one", "two"), lines("  one     two  ", width("one   ")));
+	}
+
+	@Test
+	public void newlinesEndLines()
+	{
+		assertEquals(Arrays.asList("one", "", "two"), lines("one\n\ntwo", 100000));
+		assertEquals(Arrays.asList("one"), lines("one\n", 100000));
+	}
+
+	@Test
+	public void longWordsAreSplitWithAHyphen()
+	{
+		int maxWidth = width("mmmm");
+		List<String> lines = lines("mmmmmmmmmm", maxWidth);
+		assertEquals(Arrays.asList("mmm-", "mmm-", "mmmm"), lines);
+		for (String line : lines) assertEquals(true, width(line) <= maxWidth);
+	}
+
+	@Test
+	public void onlyWordsGetAHyphen()
+	{
+		assertEquals(Arrays.asList("....", "....", ".."), lines("..........", width("....")));
+	}
+
+	@Test
+	public void aLineNarrowerThanACharacterStillMovesForward()
+	{
+		assertEquals(Arrays.asList("a-", "b-", "c"), lines("abc", 1));
+		assertEquals(Arrays.asList("a", "b"), lines("a b", 0));
+	}
+
+	@Test
+	public void charactersTheFontDoesntHaveAreMeasuredAsTheQuestionMarkShownInstead()
+	{
+		assertEquals(Arrays.asList("a\u4e2d\u4e2db"), lines("a\u4e2d\u4e2db", width("a??b")));
+		assertEquals(Arrays.asList("a\u4e2d\u4e2d-", "b"), lines("a\u4e2d\u4e2db", width("a??b") - 1));
+	}
+
+	@Test
+	public void canBeReused()
+	{
+		LineBreaker lineBreaker = new LineBreaker();
+		assertEquals(Arrays.asList("one", "two"), lines(lineBreaker, "one two", width("two")));
+		assertEquals(Arrays.asList("three"), lines(lineBreaker, "three", 100000));
+	}
+
+	/**
+	 * Break text into lines, with a '-' at the end of the lines that split a word
+	 * @param text
+	 * @param maxWidth
+	 * @return
+	 */
+	private List<String> lines(String text, int maxWidth) { return lines(new LineBreaker(), text, maxWidth); }
+
+	private List<String> lines(LineBreaker lineBreaker, String text, int maxWidth)
+	{
+		List<String> lines = new ArrayList<String>();
+		lineBreaker.reset(font, text, maxWidth);
+		while (lineBreaker.nextLine())
+		{
+			String line = text.substring(lineBreaker.getStart(), lineBreaker.getEnd());
+			lines.add(lineBreaker.isHyphenated() ? line + LineBreaker.HYPHEN : line);
+		}
+		return lines;
+	}
+
+	private int width(String text) { return font.getWidth(text, 0, text.length()); }
+}
@@ -0,0 +1,200 @@
+package com.finalhack.pdroidf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Reading back what PdfWriter wrote, including incremental updates chained with /Prev
+ */
+public class PdfReaderTest
+{
+	private File file;
+
+	//Readers read objects from their file when asked, so the files stay open until the test is over
+	private List<RandomAccessFile> openFiles = new ArrayList<RandomAccessFile>();
+
+	@Before
+	public void createFile() throws IOException { file = File.createTempFile("PdfReaderTest", ".pdf"); }
+
+	@After
+	public void deleteFile() throws IOException
+	{
+		for (RandomAccessFile openFile : openFiles) openFile.close();
+		file.delete();
+	}
+
+	@Test
+	public void readsAnXrefTable() throws IOException
+	{
+		write(false, 3);
+		PdfReader reader = read();
+		assertTrue(!reader.isXrefStream());
+		assertEquals(3, reader.getPageCount());
+		assertEquals(file.length(), reader.getLength());
+		assertAllObjectsRead(reader);
+	}
+
+	@Test
+	public void readsAnXrefStream() throws IOException
+	{
+		write(true, 3);
+		PdfReader reader = read();
+		assertTrue(reader.isXrefStream());
+		assertEquals(3, reader.getPageCount());
+		assertAllObjectsRead(reader);
+	}
+
+	@Test
+	public void followsPrevThroughXrefTables() throws IOException { followsPrev(false); }
+
+	@Test
+	public void followsPrevThroughXrefStreams() throws IOException { followsPrev(true); }
+
+	//Append twice, then check that objects from every update (and the original) can still be found
+	private void followsPrev(boolean objectStreams) throws IOException
+	{
+		write(objectStreams, 2);
+		PdfReader original = read();
+		long originalLength = file.length();
+
+		append(1);
+		append(2);
+
+		PdfReader reader = read();
+		assertEquals(objectStreams, reader.isXrefStream());
+		assertEquals(5, reader.getPageCount());
+		assertTrue(reader.getXrefOffset() > originalLength);
+		assertTrue(reader.getSize() > original.getSize());
+
+		//The catalog is replaced by each update, while the original's objects are still found through /Prev
+		assertEquals(original.getRootObjectId(), reader.getRootObjectId());
+		assertAllObjectsRead(reader);
+		assertEquals(original.readObject(1), reader.readObject(1));
+	}
+
+	@Test
+	public void anUpdateStartsWhereTheOriginalEnds() throws IOException
+	{
+		write(false, 1);
+		byte[] update;
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+		try
+		{
+			Pdf pdf = Pdf.openForAppend(in.getChannel());
+			pdf.addPage().addText("Added", "000000");
+			update = pdf.getPDF();
+		}
+		finally
+		{
+			in.close();
+		}
+
+		FileOutputStream out = new FileOutputStream(file, true);
+		try
+		{
+			out.write(update);
+		}
+		finally
+		{
+			out.close();
+		}
+		assertEquals(2, read().getPageCount());
+	}
+
+	@Test(expected = IOException.class)
+	public void notAPdf() throws IOException
+	{
+		FileOutputStream out = new FileOutputStream(file);
+		try
+		{
+			out.write("Not a PDF".getBytes("US-ASCII"));
+		}
+		finally
+		{
+			out.close();
+		}
+		read();
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void onlyOpenedPdfsCanBeAppendedTo() throws IOException
+	{
+		write(false, 1);
+		RandomAccessFile out = new RandomAccessFile(file, "rw");
+		try
+		{
+			new Pdf().append(out.getChannel(), Pdf.SYNC_NONE);
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void aChangedFileIsntAppendedTo() throws IOException
+	{
+		write(false, 1);
+		RandomAccessFile out = new RandomAccessFile(file, "rw");
+		try
+		{
+			Pdf pdf = Pdf.openForAppend(out.getChannel());
+			pdf.addPage();
+			out.setLength(out.length() + 1);
+			pdf.append(out.getChannel(), Pdf.SYNC_NONE);
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+
+	//Every objectId below /Size must be found where the x-reference data says it is
+	private static void assertAllObjectsRead(PdfReader reader) throws IOException
+	{
+		for (int objectId=1;objectId<reader.getSize();objectId++) reader.readObject(objectId);
+	}
+
+	private void write(boolean objectStreams, int pages) throws IOException
+	{
+		Pdf pdf = new Pdf();
+		pdf.setObjectStreams(objectStreams);
+		for (int i=0;i<pages;i++) pdf.addPage().addText("Page " + (i + 1), "000000");
+		pdf.writePdf(file, Pdf.SYNC_NONE);
+	}
+
+	private void append(int pages) throws IOException
+	{
+		RandomAccessFile out = new RandomAccessFile(file, "rw");
+		try
+		{
+			FileChannel channel = out.getChannel();
+			Pdf pdf = Pdf.openForAppend(channel);
+			for (int i=0;i<pages;i++) pdf.addPage().addText("Added page " + (i + 1), "000000");
+			pdf.append(channel, Pdf.SYNC_NONE);
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+
+	private PdfReader read() throws IOException
+	{
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+		openFiles.add(in);
+		return new PdfReader(in.getChannel());
+	}
+}
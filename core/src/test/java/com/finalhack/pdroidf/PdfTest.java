@@ -0,0 +1,158 @@
+package com.finalhack.pdroidf;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Every way of writing out a PDF, and reusing a PDF with reset(), must give the same bytes as a new PDF written out with getPDF()
+ */
+public class PdfTest
+{
+	//Small and large documents mixed, so reused buffers both grow and get written over by shorter documents
+	private static final int[] SEEDS = { 1, 2, 3, 4, 5, 6, 7, 8 };
+
+	private ExecutorService executor;
+	private File file;
+
+	@Before
+	public void setUp() throws IOException
+	{
+		executor = Executors.newFixedThreadPool(4);
+		file = File.createTempFile("PdfTest", ".pdf");
+	}
+
+	@After
+	public void tearDown()
+	{
+		executor.shutdownNow();
+		file.delete();
+	}
+
+	@Test
+	public void resetGivesTheSameBytesAsANewPdf()
+	{
+		for (boolean compressed : new boolean[] { false, true })
+		{
+			Pdf reused = new Pdf();
+			TestDocuments.configure(reused, compressed);
+			for (int seed : SEEDS)
+			{
+				reused.reset();
+				TestDocuments.build(reused, seed);
+				assertArrayEquals("Seed " + seed + ", compressed " + compressed, fresh(seed, compressed), reused.getPDF());
+			}
+		}
+	}
+
+	@Test
+	public void resetWithOtherSettingsGivesTheSameBytesAsANewPdf()
+	{
+		Pdf reused = new Pdf();
+		for (int seed : SEEDS)
+		{
+			boolean compressed = seed % 2 == 0;
+			reused.reset();
+			TestDocuments.configure(reused, compressed);
+			TestDocuments.build(reused, seed);
+			assertArrayEquals("Seed " + seed, fresh(seed, compressed), reused.getPDF());
+		}
+	}
+
+	@Test
+	public void aReturnedPdfIsntChangedByTheNextDocument()
+	{
+		Pdf pdf = new Pdf();
+		byte[][] returned = new byte[SEEDS.length][];
+		byte[][] copies = new byte[SEEDS.length][];
+		for (int i=0;i<SEEDS.length;i++)
+		{
+			pdf.reset();
+			TestDocuments.build(pdf, SEEDS[i]);
+			returned[i] = pdf.getPDF();
+			copies[i] = returned[i].clone();
+		}
+		for (int i=0;i<SEEDS.length;i++) assertArrayEquals(copies[i], returned[i]);
+	}
+
+	@Test
+	public void everyWayOfWritingGivesTheSameBytes() throws Exception
+	{
+		for (boolean compressed : new boolean[] { false, true })
+		{
+			for (boolean parallel : new boolean[] { false, true })
+			{
+				for (int seed : SEEDS)
+				{
+					String what = "Seed " + seed + ", compressed " + compressed + ", parallel " + parallel;
+					byte[] expected = fresh(seed, compressed);
+
+					Pdf pdf = new Pdf();
+					TestDocuments.configure(pdf, compressed);
+					if (parallel) pdf.setExecutor(executor);
+					TestDocuments.build(pdf, seed);
+					assertArrayEquals(what, expected, pdf.getPDF());
+
+					ByteArrayOutputStream out = new ByteArrayOutputStream();
+					pdf.getPDF(out);
+					assertArrayEquals(what, expected, out.toByteArray());
+
+					out.reset();
+					pdf.renderAsync(out, executor, null).get();
+					assertArrayEquals(what, expected, out.toByteArray());
+
+					pdf.writePdf(file, Pdf.SYNC_NONE);
+					assertArrayEquals(what, expected, read(file));
+
+					pdf.renderAsync(file, Pdf.SYNC_AT_END, executor, null).get();
+					assertArrayEquals(what, expected, read(file));
+
+					RandomAccessFile channelFile = new RandomAccessFile(file, "rw");
+					try
+					{
+						channelFile.setLength(0);
+						pdf.getPDF(channelFile.getChannel());
+					}
+					finally
+					{
+						channelFile.close();
+					}
+					assertArrayEquals(what, expected, read(file));
+				}
+			}
+		}
+	}
+
+	//The bytes a new PDF gets from getPDF()
+	private static byte[] fresh(int seed, boolean compressed)
+	{
+		Pdf pdf = new Pdf();
+		TestDocuments.configure(pdf, compressed);
+		TestDocuments.build(pdf, seed);
+		return pdf.getPDF();
+	}
+
+	private static byte[] read(File file) throws IOException
+	{
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+		try
+		{
+			byte[] ret = new byte[(int)in.length()];
+			in.readFully(ret);
+			return ret;
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+}
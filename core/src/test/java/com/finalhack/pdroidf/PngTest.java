@@ -0,0 +1,288 @@
+package com.finalhack.pdroidf;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+/**
+ * Reading PNG images, and unfiltering their image data
+ */
+public class PngTest
+{
+	//Every color type with every bit depth it allows
+	private static final int[][] BIT_DEPTHS =
+	{
+		{ Png.GRAY, 1, 2, 4, 8, 16 },
+		{ Png.RGB, 8, 16 },
+		{ Png.INDEXED, 1, 2, 4, 8 },
+		{ Png.GRAY_ALPHA, 8, 16 },
+		{ Png.RGB_ALPHA, 8, 16 }
+	};
+
+	//None, Sub, Up, Average and Paeth
+	private static final int FILTERS = 5;
+
+	//Odd sizes, so rows of small samples end part way through a byte
+	private static final int WIDTH = 13;
+	private static final int HEIGHT = 7;
+
+	private Random random = new Random(1);
+
+	@Test
+	public void unfiltersEveryFilterAtEveryBitDepth()
+	{
+		for (int[] depths : BIT_DEPTHS)
+		{
+			int colorType = depths[0];
+			for (int i=1;i<depths.length;i++)
+			{
+				int depth = depths[i];
+				for (int filter=0;filter<FILTERS;filter++)
+				{
+					byte[] rows = randomRows(colorType, depth);
+					Png png = new Png(png(colorType, depth, rows, filter));
+					assertEquals(WIDTH, png.getWidth());
+					assertEquals(HEIGHT, png.getHeight());
+					assertEquals(depth, png.getBitDepth());
+					assertEquals(colorType, png.getColorType());
+					assertArrayEquals("Color type " + colorType + ", depth " + depth + ", filter " + filter, rows, png.decode());
+				}
+			}
+		}
+	}
+
+	@Test
+	public void unfiltersADifferentFilterOnEachRow()
+	{
+		byte[] rows = randomRows(Png.RGB_ALPHA, 8);
+		assertArrayEquals(rows, new Png(png(Png.RGB_ALPHA, 8, rows, -1)).decode());
+	}
+
+	@Test
+	public void decodesWhatImageIoWrites() throws IOException
+	{
+		BufferedImage image = new BufferedImage(WIDTH * 5, HEIGHT * 5, BufferedImage.TYPE_INT_RGB);
+		for (int y=0;y<image.getHeight();y++) for (int x=0;x<image.getWidth();x++) image.setRGB(x, y, (x * 40) << 16 | (y * 30) << 8 | random.nextInt(256));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ImageIO.write(image, "png", out);
+
+		Png png = new Png(out.toByteArray());
+		assertEquals(Png.RGB, png.getColorType());
+		byte[] rows = png.decode();
+		for (int y=0;y<image.getHeight();y++)
+		{
+			for (int x=0;x<image.getWidth();x++)
+			{
+				int i = (y * image.getWidth() + x) * 3;
+				int rgb = (rows[i] & 0xFF) << 16 | (rows[i + 1] & 0xFF) << 8 | (rows[i + 2] & 0xFF);
+				assertEquals(image.getRGB(x, y) & 0xFFFFFF, rgb);
+			}
+		}
+	}
+
+	@Test
+	public void readsThePaletteAndTransparency()
+	{
+		Png png = new Png(png(Png.INDEXED, 8, randomRows(Png.INDEXED, 8), 0));
+		assertEquals(256 * 3, png.getPalette().length);
+		assertEquals(256, png.getTransparency().length);
+		assertEquals(1, png.getColors());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void notAPng() { new Png(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9 }); }
+
+	@Test(expected = IllegalArgumentException.class)
+	public void truncated()
+	{
+		byte[] png = png(Png.RGB, 8, randomRows(Png.RGB, 8), 0);
+		byte[] truncated = new byte[png.length / 2];
+		System.arraycopy(png, 0, truncated, 0, truncated.length);
+		new Png(truncated);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void aChunkLengthThatWouldOverflow()
+	{
+		//The length of the first IDAT chunk, right after the signature and the IHDR chunk
+		byte[] png = png(Png.GRAY, 8, randomRows(Png.GRAY, 8), 0);
+		setU32(png, 8 + 12 + 13, Integer.MAX_VALUE - 4);
+		new Png(png);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void aSizeThatWouldOverflow() { new Png(withSize(Integer.MAX_VALUE, Integer.MAX_VALUE)).decode(); }
+
+	@Test(expected = IllegalArgumentException.class)
+	public void aSizeTheImageDataCantHold() { new Png(withSize(40000, 40000)).decode(); }
+
+	@Test(expected = IllegalArgumentException.class)
+	public void unknownFilter() { new Png(png(Png.GRAY, 8, randomRows(Png.GRAY, 8), FILTERS)).decode(); }
+
+	@Test(expected = IllegalArgumentException.class)
+	public void interlaced()
+	{
+		byte[] png = png(Png.GRAY, 8, randomRows(Png.GRAY, 8), 0);
+		png[8 + 8 + 12] = 1;
+		new Png(png);
+	}
+
+	//Random samples, with the padding bits at the end of each row left 0 like an encoder leaves them
+	private byte[] randomRows(int colorType, int depth)
+	{
+		int rowBits = WIDTH * channels(colorType) * depth;
+		int rowLength = (rowBits + 7) / 8;
+		byte[] rows = new byte[rowLength * HEIGHT];
+		random.nextBytes(rows);
+		int padding = rowLength * 8 - rowBits;
+		for (int y=0;y<HEIGHT;y++) rows[y * rowLength + rowLength - 1] &= 0xFF << padding;
+		return rows;
+	}
+
+	/**
+	 * Write a PNG file
+	 * @param colorType
+	 * @param depth
+	 * @param rows unfiltered rows of samples
+	 * @param filter the filter used for every row, or -1 to use each filter in turn
+	 * @return
+	 */
+	private byte[] png(int colorType, int depth, byte[] rows, int filter)
+	{
+		int rowLength = rows.length / HEIGHT;
+		int bytesPerPixel = Math.max(1, channels(colorType) * depth / 8);
+		byte[] filtered = new byte[(rowLength + 1) * HEIGHT];
+		for (int y=0;y<HEIGHT;y++)
+		{
+			int rowFilter = filter >= 0 ? filter : y % FILTERS;
+			int in = y * rowLength;
+			int out = y * (rowLength + 1);
+			filtered[out++] = (byte)rowFilter;
+			for (int x=0;x<rowLength;x++)
+			{
+				int raw = rows[in + x] & 0xFF;
+				int left = x >= bytesPerPixel ? rows[in + x - bytesPerPixel] & 0xFF : 0;
+				int up = y > 0 ? rows[in + x - rowLength] & 0xFF : 0;
+				int upLeft = x >= bytesPerPixel && y > 0 ? rows[in + x - rowLength - bytesPerPixel] & 0xFF : 0;
+				if (rowFilter == 1) raw -= left;
+				else if (rowFilter == 2) raw -= up;
+				else if (rowFilter == 3) raw -= (left + up) / 2;
+				else if (rowFilter == 4) raw -= paeth(left, up, upLeft);
+				filtered[out + x] = (byte)raw;
+			}
+		}
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(137);
+		out.write('P');
+		out.write('N');
+		out.write('G');
+		out.write(13);
+		out.write(10);
+		out.write(26);
+		out.write(10);
+
+		ByteArrayOutputStream header = new ByteArrayOutputStream();
+		u32(header, WIDTH);
+		u32(header, HEIGHT);
+		header.write(depth);
+		header.write(colorType);
+		header.write(0);
+		header.write(0);
+		header.write(0);
+		chunk(out, "IHDR", header.toByteArray());
+
+		if (colorType == Png.INDEXED)
+		{
+			byte[] palette = new byte[256 * 3];
+			random.nextBytes(palette);
+			chunk(out, "PLTE", palette);
+			byte[] alpha = new byte[256];
+			random.nextBytes(alpha);
+			chunk(out, "tRNS", alpha);
+		}
+
+		//Split the image data over two IDAT chunks, which get joined back together
+		Deflater deflater = new Deflater();
+		deflater.setInput(filtered);
+		deflater.finish();
+		byte[] data = new byte[filtered.length * 2 + 64];
+		int length = deflater.deflate(data);
+		deflater.end();
+		byte[] first = new byte[length / 2];
+		byte[] second = new byte[length - first.length];
+		System.arraycopy(data, 0, first, 0, first.length);
+		System.arraycopy(data, first.length, second, 0, second.length);
+		chunk(out, "IDAT", first);
+		chunk(out, "IDAT", second);
+		chunk(out, "IEND", new byte[0]);
+		return out.toByteArray();
+	}
+
+	//A small PNG whose header claims another size
+	private byte[] withSize(int width, int height)
+	{
+		byte[] png = png(Png.GRAY, 8, randomRows(Png.GRAY, 8), 0);
+		setU32(png, 8 + 8, width);
+		setU32(png, 8 + 12, height);
+		return png;
+	}
+
+	private static void setU32(byte[] bytes, int offset, int value)
+	{
+		bytes[offset] = (byte)(value >>> 24);
+		bytes[offset + 1] = (byte)(value >>> 16);
+		bytes[offset + 2] = (byte)(value >>> 8);
+		bytes[offset + 3] = (byte)value;
+	}
+
+	private static void chunk(ByteArrayOutputStream out, String type, byte[] data)
+	{
+		byte[] typeBytes = new byte[] { (byte)type.charAt(0), (byte)type.charAt(1), (byte)type.charAt(2), (byte)type.charAt(3) };
+		CRC32 crc = new CRC32();
+		crc.update(typeBytes);
+		crc.update(data);
+		u32(out, data.length);
+		out.write(typeBytes, 0, 4);
+		out.write(data, 0, data.length);
+		u32(out, (int)crc.getValue());
+	}
+
+	private static int channels(int colorType)
+	{
+		if (colorType == Png.RGB_ALPHA) return 4;
+		if (colorType == Png.RGB) return 3;
+		if (colorType == Png.GRAY_ALPHA) return 2;
+		return 1;
+	}
+
+	//The neighbor closest to left + up - upLeft, as the PNG specification defines it
+	private static int paeth(int left, int up, int upLeft)
+	{
+		int estimate = left + up - upLeft;
+		int toLeft = Math.abs(estimate - left);
+		int toUp = Math.abs(estimate - up);
+		int toUpLeft = Math.abs(estimate - upLeft);
+		if (toLeft <= toUp && toLeft <= toUpLeft) return left;
+		if (toUp <= toUpLeft) return up;
+		return upLeft;
+	}
+
+	private static void u32(ByteArrayOutputStream out, int value)
+	{
+		out.write(value >>> 24);
+		out.write(value >>> 16);
+		out.write(value >>> 8);
+		out.write(value);
+	}
+}
@@ -0,0 +1,77 @@
+package com.finalhack.pdroidf;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+/**
+ * Builds documents for tests that compare output, using most of what a page can hold:
+ * wrapped text flowing over pages, a TrueType font, a table, a template, lines and images (one with alpha).
+ * The same seed always builds the same document, and different seeds build documents of different sizes.
+ */
+public class TestDocuments
+{
+	private static final String BLACK = "000000";
+
+	/**
+	 * Turn on compression and object streams, or leave both off
+	 * @param pdf
+	 * @param compressed
+	 */
+	protected static void configure(Pdf pdf, boolean compressed)
+	{
+		pdf.setCompression(compressed ? Deflater.BEST_SPEED : Pdf.COMPRESSION_OFF);
+		pdf.setObjectStreams(compressed);
+	}
+
+	/**
+	 * Add a document's worth of content to an empty PDF
+	 * @param pdf
+	 * @param seed
+	 */
+	protected static void build(Pdf pdf, int seed)
+	{
+		Random random = new Random(seed);
+		Font font = pdf.addFont(TestFonts.font());
+
+		Template header = pdf.addTemplate(200, 40);
+		header.getStream().addText("Document " + seed, 12, 10, 10, BLACK);
+
+		Stream stream = pdf.addPage();
+		stream.addTemplate(header, 20, stream.getHeight() - 60);
+		stream.addHorizontalLine("FF0000", 2);
+
+		int paragraphs = 1 + random.nextInt(20);
+		for (int i=0;i<paragraphs;i++) stream.addText(text(random, 10 + random.nextInt(200)), BLACK);
+		stream.setFont(font);
+		stream.addText("ABCD DCBA " + new String(Character.toChars(0x1F600)), BLACK);
+		stream.setFont(null);
+
+		int[] argb = new int[16 * 12];
+		for (int i=0;i<argb.length;i++) argb[i] = random.nextInt();
+		stream.addPixels(40, 40, 64, 48, Pixels.fromArgb(argb, 16, 12));
+
+		Table table = new Table(3);
+		table.setHeader("Id", "Description", "Amount");
+		String[][] rows = new String[random.nextInt(100)][];
+		for (int i=0;i<rows.length;i++) rows[i] = new String[] { Integer.toString(i), text(random, random.nextInt(40)), Integer.toString(random.nextInt(10000)) };
+		stream.addTable(table, Arrays.asList(rows).iterator());
+
+		Stream last = pdf.addPage();
+		last.addTemplate(header, 20, last.getHeight() - 60);
+		last.addText("The end", BLACK);
+	}
+
+	//Words of random letters
+	private static String text(Random random, int words)
+	{
+		StringBuilder ret = new StringBuilder();
+		for (int i=0;i<words;i++)
+		{
+			if (i > 0) ret.append(' ');
+			int letters = 1 + random.nextInt(random.nextInt(50) == 0 ? 40 : 9);
+			for (int j=0;j<letters;j++) ret.append((char)('a' + random.nextInt(26)));
+		}
+		return ret.toString();
+	}
+}
@@ -0,0 +1,155 @@
+package com.finalhack.pdroidf;
+
+/**
+ * Builds a tiny TrueType font for tests, so they don't depend on the fonts a machine has.
+ * Glyph outlines aren't real, each glyph just holds its own id so it can be found again in a subset.
+ *
+ * Glyphs: 0 is the missing glyph, 1 is 'A', 2 is 'B', 3 is 'C' (a composite glyph made of glyph 4, which no character maps to) and 5 is 'D'.
+ * The font has 1000 units per em, so advance widths are already in 1/1000ths of the font size.
+ */
+public class TestFonts
+{
+	protected static final int[] ADVANCES = { 500, 600, 700, 800, 900, 1000 };
+	protected static final char[] CHARACTERS = { 0, 'A', 'B', 'C', 0, 'D' };
+	protected static final int COMPOSITE = 3;
+	protected static final int COMPOSITE_PART = 4;
+
+	private static final int UNITS_PER_EM = 1000;
+	private static final String[] TABLES = { "cmap", "glyf", "head", "hhea", "hmtx", "loca", "maxp" };
+
+	/**
+	 * Build the font file
+	 * @return
+	 */
+	protected static byte[] font()
+	{
+		int numGlyphs = ADVANCES.length;
+
+		ByteSink glyf = new ByteSink();
+		ByteSink loca = new ByteSink();
+		for (int glyph=0;glyph<numGlyphs;glyph++)
+		{
+			u32(loca, glyf.size());
+			if (glyph == COMPOSITE)
+			{
+				//One component with word arguments: flags, glyph id, x and y offsets
+				u16(glyf, -1);
+				bbox(glyf);
+				u16(glyf, 0x0001);
+				u16(glyf, COMPOSITE_PART);
+				u16(glyf, 0);
+				u16(glyf, 0);
+			}
+			else
+			{
+				//One contour, then the glyph id where the points would be
+				u16(glyf, 1);
+				bbox(glyf);
+				u16(glyf, glyph);
+			}
+		}
+		u32(loca, glyf.size());
+
+		ByteSink head = new ByteSink();
+		u32(head, 0x00010000);
+		u32(head, 0x00010000);
+		u32(head, 0);
+		u32(head, 0x5F0F3CF5);
+		u16(head, 0);
+		u16(head, UNITS_PER_EM);
+		for (int i=0;i<16;i++) head.write(0);
+		bbox(head);
+		u16(head, 0);
+		u16(head, 8);
+		u16(head, 2);
+		u16(head, 1);
+		u16(head, 0);
+
+		ByteSink hhea = new ByteSink();
+		u32(hhea, 0x00010000);
+		u16(hhea, 800);
+		u16(hhea, -200);
+		for (int i=0;i<13;i++) u16(hhea, 0);
+		u16(hhea, numGlyphs);
+
+		ByteSink hmtx = new ByteSink();
+		for (int advance : ADVANCES)
+		{
+			u16(hmtx, advance);
+			u16(hmtx, 0);
+		}
+
+		ByteSink maxp = new ByteSink();
+		u32(maxp, 0x00005000);
+		u16(maxp, numGlyphs);
+
+		//A format 4 cmap with one segment per character, and the final 0xFFFF segment
+		ByteSink cmap = new ByteSink();
+		int segCount = 0;
+		for (char c : CHARACTERS) if (c != 0) segCount++;
+		segCount++;
+		u16(cmap, 0);
+		u16(cmap, 1);
+		u16(cmap, 3);
+		u16(cmap, 1);
+		u32(cmap, 12);
+		u16(cmap, 4);
+		u16(cmap, 16 + segCount * 8);
+		u16(cmap, 0);
+		u16(cmap, segCount * 2);
+		u16(cmap, 0);
+		u16(cmap, 0);
+		u16(cmap, 0);
+		for (char c : CHARACTERS) if (c != 0) u16(cmap, c);
+		u16(cmap, 0xFFFF);
+		u16(cmap, 0);
+		for (char c : CHARACTERS) if (c != 0) u16(cmap, c);
+		u16(cmap, 0xFFFF);
+		for (int glyph=0;glyph<numGlyphs;glyph++) if (CHARACTERS[glyph] != 0) u16(cmap, glyph - CHARACTERS[glyph]);
+		u16(cmap, 1);
+		for (int i=0;i<segCount;i++) u16(cmap, 0);
+
+		ByteSink[] tables = { cmap, glyf, head, hhea, hmtx, loca, maxp };
+		ByteSink ret = new ByteSink();
+		u32(ret, 0x00010000);
+		u16(ret, TABLES.length);
+		u16(ret, 0);
+		u16(ret, 0);
+		u16(ret, 0);
+		int offset = 12 + TABLES.length * 16;
+		for (int i=0;i<TABLES.length;i++)
+		{
+			ret.write(TABLES[i]);
+			u32(ret, 0);
+			u32(ret, offset);
+			u32(ret, tables[i].size());
+			offset += (tables[i].size() + 3) & ~3;
+		}
+		for (ByteSink table : tables)
+		{
+			ret.write(table);
+			while (ret.size() % 4 != 0) ret.write(0);
+		}
+		return ret.toByteArray();
+	}
+
+	private static void bbox(ByteSink out)
+	{
+		u16(out, 0);
+		u16(out, -200);
+		u16(out, 1000);
+		u16(out, 800);
+	}
+
+	private static void u16(ByteSink out, int value)
+	{
+		out.write(value >>> 8);
+		out.write(value);
+	}
+
+	private static void u32(ByteSink out, int value)
+	{
+		u16(out, value >>> 16);
+		u16(out, value);
+	}
+}
@@ -0,0 +1,135 @@
+package com.finalhack.pdroidf;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.junit.Test;
+
+/**
+ * Reading a TrueType font, and subsetting it
+ */
+public class TrueTypeFileTest
+{
+	//The checksum of a whole font file must come out to this
+	private static final long CHECKSUM_MAGIC = 0xB1B0AFBAL;
+
+	private TrueTypeFile file = new TrueTypeFile(TestFonts.font());
+
+	@Test
+	public void readsGlyphsAndWidths()
+	{
+		assertEquals(TestFonts.ADVANCES.length, file.getNumGlyphs());
+		for (int glyph=0;glyph<TestFonts.ADVANCES.length;glyph++)
+		{
+			assertEquals(TestFonts.ADVANCES[glyph], file.getAdvance(glyph));
+			if (TestFonts.CHARACTERS[glyph] != 0) assertEquals(glyph, file.getGlyph(TestFonts.CHARACTERS[glyph]));
+		}
+		assertEquals(0, file.getGlyph('Z'));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void notAFont()
+	{
+		new TrueTypeFile(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12 });
+	}
+
+	@Test
+	public void subsetKeepsUsedGlyphsAndTheMissingGlyph()
+	{
+		byte[] subset = subset('A');
+		assertEquals(2, readU16(subset, table(subset, "maxp") + 4));
+		assertTrue(hasGlyph(subset, 0));
+		assertTrue(hasGlyph(subset, 1));
+
+		TrueTypeFile read = new TrueTypeFile(subset);
+		assertEquals(1, read.getGlyph('A'));
+		assertEquals(0, read.getGlyph('B'));
+		assertEquals(TestFonts.ADVANCES[1], read.getAdvance(1));
+	}
+
+	@Test
+	public void subsetKeepsGlyphIdsAndEmptiesUnusedGlyphs()
+	{
+		byte[] subset = subset('A', 'D');
+		assertEquals(TestFonts.ADVANCES.length, readU16(subset, table(subset, "maxp") + 4));
+		assertTrue(!hasGlyph(subset, 2));
+		assertTrue(!hasGlyph(subset, TestFonts.COMPOSITE));
+		assertTrue(hasGlyph(subset, 5));
+		assertEquals(5, new TrueTypeFile(subset).getGlyph('D'));
+	}
+
+	@Test
+	public void subsetKeepsThePartsOfCompositeGlyphs()
+	{
+		byte[] subset = subset('C');
+		assertTrue(hasGlyph(subset, TestFonts.COMPOSITE));
+		assertTrue(hasGlyph(subset, TestFonts.COMPOSITE_PART));
+		assertTrue(!hasGlyph(subset, 1));
+	}
+
+	@Test
+	public void subsetChecksumIsRight()
+	{
+		byte[] subset = subset('A', 'C');
+		long sum = 0;
+		for (int i=0;i<subset.length;i+=4) sum += readU32(subset, i);
+		assertEquals(CHECKSUM_MAGIC, sum & 0xFFFFFFFFL);
+	}
+
+	@Test
+	public void changingTheArrayAfterwardsDoesntChangeTheFont()
+	{
+		byte[] data = TestFonts.font();
+		file = new TrueTypeFile(data);
+		byte[] before = subset('A', 'C');
+		Arrays.fill(data, (byte)0);
+		assertArrayEquals(before, subset('A', 'C'));
+	}
+
+	//Write out a subset holding the glyphs of some characters
+	private byte[] subset(char... characters)
+	{
+		BitSet glyphs = new BitSet();
+		char[] unicodes = new char[file.getNumGlyphs()];
+		for (char c : characters)
+		{
+			int glyph = file.getGlyph(c);
+			glyphs.set(glyph);
+			unicodes[glyph] = c;
+		}
+		ByteSink out = new ByteSink();
+		file.writeSubset(glyphs, unicodes, out);
+		return out.toByteArray();
+	}
+
+	//Whether a glyph in a font has outline data, checking that it is the glyph with that id (the test font's glyphs hold their own id)
+	private static boolean hasGlyph(byte[] font, int glyph)
+	{
+		int loca = table(font, "loca");
+		int start = (int)readU32(font, loca + glyph * 4);
+		int end = (int)readU32(font, loca + glyph * 4 + 4);
+		if (end == start) return false;
+		int data = table(font, "glyf") + start;
+		if ((short)readU16(font, data) < 0) return readU16(font, data + 12) == TestFonts.COMPOSITE_PART;
+		return readU16(font, data + 10) == glyph;
+	}
+
+	private static int table(byte[] font, String tag)
+	{
+		int count = readU16(font, 4);
+		for (int i=0;i<count;i++)
+		{
+			int record = 12 + i * 16;
+			if (new String(font, record, 4).equals(tag)) return (int)readU32(font, record + 8);
+		}
+		throw new AssertionError("No " + tag + " table");
+	}
+
+	private static int readU16(byte[] bytes, int offset) { return ((bytes[offset] & 0xFF) << 8) | (bytes[offset + 1] & 0xFF); }
+
+	private static long readU32(byte[] bytes, int offset) { return ((long)readU16(bytes, offset) << 16) | readU16(bytes, offset + 2); }
+}
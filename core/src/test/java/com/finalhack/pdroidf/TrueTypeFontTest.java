@@ -0,0 +1,64 @@
+package com.finalhack.pdroidf;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Measuring and showing text in a TrueType font
+ */
+public class TrueTypeFontTest
+{
+	//A character outside of the Basic Multilingual Plane, which is a surrogate pair in a String
+	private static final String EMOJI = new String(Character.toChars(0x1F600));
+
+	private TrueTypeFont font = new TrueTypeFont(new AtomicInteger(1), "F1", TestFonts.font());
+
+	@Test
+	public void charactersAreMeasuredByTheirGlyphs()
+	{
+		assertEquals(600 + 700 + 800, font.getWidth("ABC", 0, 3));
+		assertEquals(500, font.getWidth('Z'));
+	}
+
+	@Test
+	public void aSurrogatePairIsOneMissingGlyph()
+	{
+		String text = "A" + EMOJI + "B";
+		assertEquals("<000100000002> Tj", show(text));
+		assertEquals(600 + 500 + 700, font.getWidth(text, 0, text.length()));
+	}
+
+	@Test
+	public void measuringOneCharacterAtATimeMatchesMeasuringText()
+	{
+		String text = "A" + EMOJI + EMOJI + "B";
+		int width = 0;
+		for (int i=0;i<text.length();i++) width += font.getWidth(text.charAt(i));
+		assertEquals(font.getWidth(text, 0, text.length()), width);
+	}
+
+	@Test
+	public void aHalfOfASurrogatePairOnItsOwnIsOneMissingGlyph()
+	{
+		assertEquals("<000100000002> Tj", show("A" + EMOJI.charAt(0) + "B"));
+		assertEquals("<000100000002> Tj", show("A" + EMOJI.charAt(1) + "B"));
+	}
+
+	@Test
+	public void theSuffixIsShownAfterTheText()
+	{
+		assertEquals("<00010005> Tj", showWithSuffix("A", 'D'));
+	}
+
+	private String show(String text) { return showWithSuffix(text, (char)0); }
+
+	private String showWithSuffix(String text, char suffix)
+	{
+		ByteSink sink = new ByteSink();
+		font.showText(new ContentWriter(sink), text, 0, text.length(), suffix);
+		return new String(sink.toByteArray()).trim();
+	}
+}
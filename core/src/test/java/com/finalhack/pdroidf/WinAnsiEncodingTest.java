@@ -0,0 +1,103 @@
+package com.finalhack.pdroidf;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Encoding text for the standard fonts, and writing it into content streams
+ */
+public class WinAnsiEncodingTest
+{
+	//A character outside of the Basic Multilingual Plane, which is a surrogate pair in a String
+	private static final String EMOJI = new String(Character.toChars(0x1F600));
+
+	@Test
+	public void asciiAndLatin1AreTheirOwnCodes()
+	{
+		assertEquals('A', WinAnsiEncoding.encode('A'));
+		assertEquals(0x0A, WinAnsiEncoding.encode('\n'));
+		assertEquals(0xA0, WinAnsiEncoding.encode('\u00A0'));
+		assertEquals(0xE9, WinAnsiEncoding.encode('\u00E9'));
+		assertEquals(0xFF, WinAnsiEncoding.encode('\u00FF'));
+	}
+
+	@Test
+	public void typographicCharactersGetCodes80To9F()
+	{
+		assertEquals(0x80, WinAnsiEncoding.encode('\u20AC'));
+		assertEquals(0x93, WinAnsiEncoding.encode('\u201C'));
+		assertEquals(0x97, WinAnsiEncoding.encode('\u2014'));
+		assertEquals(0x99, WinAnsiEncoding.encode('\u2122'));
+		assertEquals(0x9F, WinAnsiEncoding.encode('\u0178'));
+	}
+
+	@Test
+	public void otherCharactersAreReplaced()
+	{
+		//Codes 0x80 to 0x9F aren't characters of their own, and neither are the unused ones among them
+		assertEquals(WinAnsiEncoding.REPLACEMENT, WinAnsiEncoding.encode('\u0080'));
+		assertEquals(WinAnsiEncoding.REPLACEMENT, WinAnsiEncoding.encode('\u0081'));
+		assertEquals(WinAnsiEncoding.REPLACEMENT, WinAnsiEncoding.encode('\u4E2D'));
+		assertEquals(WinAnsiEncoding.REPLACEMENT, WinAnsiEncoding.encode('\uFFFF'));
+	}
+
+	@Test
+	public void aSurrogatePairIsReplacedOnce()
+	{
+		assertEquals(WinAnsiEncoding.REPLACEMENT, WinAnsiEncoding.encode(EMOJI.charAt(0)));
+		assertEquals(WinAnsiEncoding.NONE, WinAnsiEncoding.encode(EMOJI.charAt(1)));
+		assertEquals("(a?b) Tj", show("a" + EMOJI + "b", (char)0));
+	}
+
+	@Test
+	public void parenthesesAndBackslashesAreEscaped()
+	{
+		assertEquals("(\\(a\\\\b\\)) Tj", show("(a\\b)", (char)0));
+	}
+
+	@Test
+	public void charactersOutsideOfAsciiAreWrittenAsTheirCodes()
+	{
+		assertEquals("(\u00E9\u0080) Tj", show("\u00E9\u20AC", (char)0));
+	}
+
+	@Test
+	public void controlCharactersSwitchToAHexString()
+	{
+		assertEquals("<6109623F> Tj", show("a\tb" + EMOJI, (char)0));
+		assertEquals("<7F> Tj", show("\u007F", (char)0));
+	}
+
+	@Test
+	public void theSuffixIsEncodedToo()
+	{
+		assertEquals("(ab-) Tj", show("ab", '-'));
+		assertEquals("(a\\)) Tj", show("a", ')'));
+		assertEquals("<61092D> Tj", show("a\t", '-'));
+	}
+
+	@Test
+	public void onlyThePartOfTheTextAskedForIsShown()
+	{
+		ByteSink sink = new ByteSink();
+		new ContentWriter(sink).showText("one two", 4, 7, (char)0);
+		assertEquals("(two) Tj", text(sink));
+	}
+
+	private String show(String text, char suffix)
+	{
+		ByteSink sink = new ByteSink();
+		new ContentWriter(sink).showText(text, 0, text.length(), suffix);
+		return text(sink);
+	}
+
+	//Content streams are single byte text
+	private String text(ByteSink sink)
+	{
+		StringBuilder ret = new StringBuilder();
+		byte[] bytes = sink.toByteArray();
+		for (byte b : bytes) ret.append((char)(b & 0xFF));
+		return ret.toString().trim();
+	}
+}
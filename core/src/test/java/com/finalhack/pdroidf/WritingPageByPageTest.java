@@ -0,0 +1,313 @@
+package com.finalhack.pdroidf;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.Deflater;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Writing out a PDF page by page with startWriting() and finishWriting(): pages must go out as they are finished, not at the end,
+ * and the page tree read back must hold every page
+ */
+public class WritingPageByPageTest
+{
+	//Enough rows for a few hundred pages
+	private static final int ROWS = 10000;
+
+	private static final Pattern KIDS = Pattern.compile("/Kids \\[([^\\]]*)\\]");
+	private static final Pattern REFERENCE = Pattern.compile("(\\d+) 0 R");
+
+	private ExecutorService executor;
+	private File file;
+
+	//Readers read objects from their file when asked, so the files stay open until the test is over
+	private List<RandomAccessFile> openFiles = new ArrayList<RandomAccessFile>();
+
+	@Before
+	public void setUp() throws IOException
+	{
+		executor = Executors.newFixedThreadPool(4);
+		file = File.createTempFile("WritingPageByPageTest", ".pdf");
+	}
+
+	@After
+	public void tearDown() throws IOException
+	{
+		executor.shutdownNow();
+		for (RandomAccessFile openFile : openFiles) openFile.close();
+		file.delete();
+	}
+
+	@Test
+	public void pagesAreWrittenOutAsTheTableFlowsOffOfThem() throws IOException
+	{
+		Pdf pdf = new Pdf();
+		PageCounter counter = new PageCounter();
+		pdf.setMetrics(counter);
+		int pageCount = writeTable(pdf, counter);
+		assertTrue(pageCount > 100);
+		assertPageTree(pageCount);
+	}
+
+	@Test
+	public void pagesEncodedInTheBackgroundAreWrittenOut() throws IOException
+	{
+		Pdf pdf = new Pdf();
+		pdf.setExecutor(executor);
+		pdf.setCompression(Deflater.BEST_SPEED);
+		pdf.setObjectStreams(true);
+		assertPageTree(writeTable(pdf, null));
+	}
+
+	@Test
+	public void aDeepPageTreeIsBuiltAsPagesAreWrittenOut() throws IOException
+	{
+		Pdf pdf = new Pdf();
+		pdf.setPageTreeFanOut(3);
+		assertPageTree(writeTable(pdf, null));
+	}
+
+	@Test
+	public void aPdfWithNoPagesCanBeWrittenOut() throws IOException
+	{
+		Pdf pdf = new Pdf();
+		FileOutputStream out = new FileOutputStream(file);
+		try
+		{
+			pdf.startWriting(out);
+			pdf.finishWriting();
+		}
+		finally
+		{
+			out.close();
+		}
+		assertPageTree(0);
+	}
+
+	@Test
+	public void resetGivesTheSameBytesAsANewPdf() throws IOException
+	{
+		Pdf reused = new Pdf();
+		for (boolean compressed : new boolean[] { false, true })
+		{
+			reused.reset();
+			TestDocuments.configure(reused, compressed);
+			byte[] written = writeDocument(reused, 1);
+
+			Pdf pdf = new Pdf();
+			TestDocuments.configure(pdf, compressed);
+			assertArrayEquals("Compressed " + compressed, writeDocument(pdf, 1), written);
+
+			//The same PDF can be written out all at once again after it is reset
+			reused.reset();
+			TestDocuments.build(reused, 2);
+			pdf = new Pdf();
+			TestDocuments.configure(pdf, compressed);
+			TestDocuments.build(pdf, 2);
+			assertArrayEquals("Compressed " + compressed, pdf.getPDF(), reused.getPDF());
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void mustStartBeforePagesAreAdded() throws IOException
+	{
+		Pdf pdf = new Pdf();
+		pdf.addPage();
+		pdf.startWriting(new ByteArrayOutputStream());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void cantBeWrittenOutAllAtOnce() throws IOException
+	{
+		Pdf pdf = new Pdf();
+		pdf.startWriting(new ByteArrayOutputStream());
+		pdf.addPage();
+		pdf.getPDF();
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void nothingCanBeAddedOnceWrittenOut() throws IOException
+	{
+		Pdf pdf = new Pdf();
+		pdf.startWriting(new ByteArrayOutputStream());
+		pdf.finishWriting();
+		pdf.addPage();
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void mustBeStartedToBeFinished() throws IOException
+	{
+		new Pdf().finishWriting();
+	}
+
+	@Test
+	public void anErrorWritingAPageIsThrownAtTheEnd() throws IOException
+	{
+		Pdf pdf = new Pdf();
+		pdf.startWriting(new OutputStream()
+		{
+			@Override
+			public void write(int b) throws IOException { throw new IOException("Full"); }
+		});
+		pdf.addPage().addTable(newTable(), new Rows(ROWS));
+		try
+		{
+			pdf.finishWriting();
+			fail("Expected an IOException");
+		}
+		catch (IOException e)
+		{
+			assertEquals("Full", e.getCause().getMessage());
+		}
+	}
+
+	//Write out a table page by page to the file, returning the number of pages
+	//If counter is given, check that only the first and last page are still unwritten once the table is added
+	private int writeTable(Pdf pdf, PageCounter counter) throws IOException
+	{
+		FileOutputStream out = new FileOutputStream(file);
+		try
+		{
+			pdf.startWriting(out);
+			Stream first = pdf.addPage();
+			first.addTable(newTable(), new Rows(ROWS));
+			if (counter != null) assertTrue(file.length() > 0);
+			int written = counter != null ? counter.pagesWritten : 0;
+			first.finish();
+			pdf.finishWriting();
+
+			if (counter == null) return read().getPageCount();
+			assertEquals(counter.pageCount - 2, written);
+			return counter.pageCount;
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+
+	//Write out a test document page by page, finishing each page as soon as the next one is added
+	private byte[] writeDocument(Pdf pdf, int seed) throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		pdf.startWriting(out);
+		Stream previous = null;
+		for (int i=0;i<seed * 20;i++)
+		{
+			if (previous != null) previous.finish();
+			previous = pdf.addPage();
+			previous.addText("Page " + (i + 1), "000000");
+		}
+		pdf.finishWriting();
+		return out.toByteArray();
+	}
+
+	private static Table newTable()
+	{
+		Table table = new Table(3);
+		table.setHeader("Id", "Description", "Amount");
+		return table;
+	}
+
+	//Read back the file, and check that its page tree holds pageCount pages
+	private void assertPageTree(int pageCount) throws IOException
+	{
+		PdfReader reader = read();
+		assertEquals(pageCount, reader.getPageCount());
+		assertEquals(pageCount, countPages(reader, reader.getPagesObjectId()));
+	}
+
+	//Count the pages below a page tree node, checking that each of its kids points back at it
+	private static int countPages(PdfReader reader, int objectId) throws IOException
+	{
+		String object = reader.readObject(objectId);
+		if (!object.contains("/Type /Pages")) return 1;
+
+		Matcher kids = KIDS.matcher(object);
+		assertTrue(kids.find());
+		Matcher reference = REFERENCE.matcher(kids.group(1));
+		int count = 0;
+		while (reference.find())
+		{
+			int kid = Integer.parseInt(reference.group(1));
+			assertTrue(reader.readObject(kid).contains("/Parent " + objectId + " 0 R"));
+			count += countPages(reader, kid);
+		}
+		assertTrue(object.contains("/Count " + count + Pdf.NEW_LINE));
+		return count;
+	}
+
+	private PdfReader read() throws IOException
+	{
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+		openFiles.add(in);
+		return new PdfReader(in.getChannel());
+	}
+
+	/**
+	 * A simple inner class to count the pages written out, and how many the document has
+	 */
+	private static class PageCounter implements PdfMetrics
+	{
+		private int pagesWritten;
+		private int pageCount;
+
+		@Override
+		public void phaseFinished(int phase, long nanos) {}
+
+		@Override
+		public void objectWritten(int objectId, long bytes) {}
+
+		@Override
+		public void pageWritten(int pageNumber, long contentBytes) { pagesWritten = pageNumber; }
+
+		@Override
+		public void imageWritten(int objectId, long bytes) {}
+
+		@Override
+		public void documentWritten(int pageCount, long bytes, long nanos) { this.pageCount = pageCount; }
+	}
+
+	/**
+	 * A simple inner class to make rows as they are read, so the rows themselves are never held in memory
+	 */
+	private static class Rows implements Iterator<String[]>
+	{
+		private int count;
+		private int row;
+
+		public Rows(int count) { this.count = count; }
+
+		@Override
+		public boolean hasNext() { return row < count; }
+
+		@Override
+		public String[] next()
+		{
+			row++;
+			return new String[] { Integer.toString(row), "Item " + row, Integer.toString(row * 7) };
+		}
+
+		@Override
+		public void remove() { throw new UnsupportedOperationException(); }
+	}
+}
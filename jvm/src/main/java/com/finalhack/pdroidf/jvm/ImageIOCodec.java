@@ -0,0 +1,125 @@
+package com.finalhack.pdroidf.jvm;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+import com.finalhack.pdroidf.ImageCodec;
+
+/**
+ * Downsamples JPEG images with javax.imageio, for using Pdf.setImageDownsampling() outside of Android
+ */
+public class ImageIOCodec implements ImageCodec
+{
+	public static final float DEFAULT_QUALITY = 0.85f;
+
+	//Large images are subsampled while they are decoded, down to this many times the final size, so they never sit in memory at full size
+	//What's left is scaled smoothly
+	private static final int SUBSAMPLE_HEADROOM = 2;
+
+	private float quality;
+
+	/**
+	 * Construct a codec encoding with DEFAULT_QUALITY
+	 */
+	public ImageIOCodec() { this(DEFAULT_QUALITY); }
+
+	/**
+	 * Construct a codec encoding with the given JPEG quality
+	 * @param quality from 0 (smallest) to 1 (best)
+	 */
+	public ImageIOCodec(float quality)
+	{
+		if (quality < 0 || quality > 1) throw new IllegalArgumentException("Invalid quality: " + quality);
+		this.quality = quality;
+	}
+
+	@Override
+	public byte[] downsample(InputStream jpeg, int jpegWidth, int jpegHeight, int width, int height) throws IOException
+	{
+		BufferedImage decoded = decode(jpeg, Math.max(1, Math.min(jpegWidth / width, jpegHeight / height) / SUBSAMPLE_HEADROOM));
+
+		//Gray images stay gray, everything else becomes RGB
+		int type = decoded.getType() == BufferedImage.TYPE_BYTE_GRAY ? BufferedImage.TYPE_BYTE_GRAY : BufferedImage.TYPE_INT_RGB;
+		BufferedImage scaled = new BufferedImage(width, height, type);
+		Graphics2D graphics = scaled.createGraphics();
+		try
+		{
+			graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+			graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+			graphics.drawImage(decoded, 0, 0, width, height, null);
+		}
+		finally
+		{
+			graphics.dispose();
+		}
+
+		return encode(scaled);
+	}
+
+	//Decode a JPEG, keeping only every subsample-th pixel in each direction
+	private BufferedImage decode(InputStream jpeg, int subsample) throws IOException
+	{
+		ImageInputStream input = ImageIO.createImageInputStream(jpeg);
+		if (input == null) throw new IOException("Can't read the JPEG");
+		try
+		{
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+			if (!readers.hasNext()) throw new IOException("No reader for the JPEG");
+			ImageReader reader = readers.next();
+			try
+			{
+				reader.setInput(input, true, true);
+				ImageReadParam param = reader.getDefaultReadParam();
+				param.setSourceSubsampling(subsample, subsample, 0, 0);
+				return reader.read(0, param);
+			}
+			finally
+			{
+				reader.dispose();
+			}
+		}
+		finally
+		{
+			input.close();
+		}
+	}
+
+	//Encode an image as a JPEG at the configured quality
+	private byte[] encode(BufferedImage image) throws IOException
+	{
+		Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
+		if (!writers.hasNext()) throw new IOException("No JPEG writer");
+		ImageWriter writer = writers.next();
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ImageOutputStream output = ImageIO.createImageOutputStream(bytes);
+		try
+		{
+			writer.setOutput(output);
+			ImageWriteParam param = writer.getDefaultWriteParam();
+			param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+			param.setCompressionQuality(quality);
+			writer.write(null, new IIOImage(image, null, null), param);
+		}
+		finally
+		{
+			writer.dispose();
+			output.close();
+		}
+		return bytes.toByteArray();
+	}
+}
@@ -1,18 +1,27 @@
 package com.pdroidftest.activity;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import android.app.Activity;
 import android.content.Intent;
 import android.net.Uri;
 import android.os.Bundle;
+import android.util.Log;
 import android.view.View;
 import android.widget.EditText;
 
-import com.finalhack.pdroidf.Pages;
 import com.finalhack.pdroidf.Pdf;
+import com.finalhack.pdroidf.ProgressListener;
 import com.finalhack.pdroidf.R;
 import com.finalhack.pdroidf.Stream;
+import com.finalhack.pdroidf.android.AndroidLogger;
+import com.finalhack.pdroidf.android.AndroidPdf;
+import com.finalhack.pdroidf.android.BitmapCodec;
 
 public class CreatePdfActivity extends Activity {
 
@@ -24,28 +33,90 @@ public class CreatePdfActivity extends Activity {
 	private static final int JPG_WIDTH = 50;
 	private static final int JPG_HEIGHT = 50;
 	private static final String JPG_SRC = "someFile.jpg";
+	private static final int IMAGE_DPI = 150;
 	private static final String PDF_PDFNAME = "my.pdf";
 	private static final String MIME_TYPE_PDF = "application/pdf";
 
 	private EditText userText;
 
+	// PDFs are made and written out on this thread, so the UI never freezes
+	private ExecutorService pdfExecutor;
+
+	// Each tap on the button is a new request, the PDF of an older request is dropped once a new one comes in
+	// Both are guarded by this activity's lock, since the PDF thread starts the rendering
+	private int request;
+	private Future<Void> rendering;
+
 	@Override
 	protected void onCreate(Bundle savedInstanceState) {
 		super.onCreate(savedInstanceState);
 		setContentView(R.layout.create_pdf);
 
 		userText = (EditText) findViewById(R.id.textView1);
+
+		// Send pDroidF's debug messages to logcat
+		Pdf.setLogger(new AndroidLogger());
+
+		pdfExecutor = Executors.newSingleThreadExecutor();
 	}
 
-	// This is where the PDF is created.
-	// It still needs to be written out to a file or streamed somewhere.
+	@Override
+	protected void onDestroy() {
+		// Stop making a PDF nobody is going to look at
+		newRequest();
+		pdfExecutor.shutdown();
+		super.onDestroy();
+	}
+
+	// This is called when the button is tapped.
+	// The PDF is made and written out to a file on the PDF thread, then shown.
 	public void onCreatePdf(View view) {
 
-		// Images used in the PDF should be JPG images, stored as Assets
-		byte[] stickerBmp = Pdf.getAssetJpgBytes(this, JPG_SRC);
+		// A new PDF replaces one that is still being made or written
+		final int thisRequest = newRequest();
+
+		// Views may only be used on the UI thread, so the text is read now
+		final String text = userText.getText().toString();
+
+		pdfExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				final File file;
+				Pdf pdf;
+				try {
+					pdf = createPdf(text);
+					file = AndroidPdf.createFileInTheRightSpot(CreatePdfActivity.this, PDF_PDFNAME);
+				} catch (IOException e) {
+					Log.d(Pdf.LOG_TAG_DEBUG, Pdf.LOG_STACKTRACE, e);
+					return;
+				}
+
+				synchronized (CreatePdfActivity.this) {
+					if (thisRequest != request) return;
+					rendering = pdf.renderAsync(file, Pdf.SYNC_NONE, pdfExecutor, newProgressListener(file));
+				}
+			}
+		});
+	}
+
+	// Start a new request, cancelling the rendering of an older one
+	private synchronized int newRequest() {
+		request++;
+		if (rendering != null) rendering.cancel(true);
+		rendering = null;
+		return request;
+	}
+
+	// This is where the PDF is created.
+	// It still needs to be written out to a file or streamed somewhere.
+	// Loading the image takes a while, so this runs on the PDF thread.
+	private Pdf createPdf(String text) throws IOException {
 
 		// Create a new PDF
 		Pdf pdf = new Pdf();
+
+		// The image is a full size photo shown as a small sticker, so only keep the pixels it needs
+		pdf.setImageDownsampling(new BitmapCodec(), IMAGE_DPI);
 		Stream stream = pdf.addPage();
 
 		// Add some text at a specific position
@@ -54,27 +125,52 @@ public class CreatePdfActivity extends Activity {
 		stream.addText("This is a test pdf.", PDF_HEADER_FONT_SIZE, 100, 50, RED);
 
 		// Add some text with a different color
-		stream.addText(userText.getText().toString(), BLUE, PDF_HEADER_FONT_SIZE);
+		stream.addText(text, BLUE, PDF_HEADER_FONT_SIZE);
 
 		// Add a line with a color and a width
 		stream.addHorizontalLine(GREEN, LINE_WIDTH);
 
 		// Add an image at a specific coordinate (top right corner of the page)
-		stream.addBmpImage(Pages.PAGE_WIDTH - (int) Stream.MARGIN_HORIZONTAL - JPG_WIDTH, Pages.PAGE_HEIGHT - (int) Stream.MARGIN_VERTICAL - JPG_HEIGHT,
-				JPG_WIDTH, JPG_HEIGHT, stickerBmp);
-
-		// Get the raw PDF bytes like this:
-		byte[] pdfBytes = pdf.getPDF();
+		// Images used in the PDF should be JPG or PNG images, stored as Assets
+		// With downsampling on, the photo is decoded and scaled down right here
+		stream.addImage(stream.getWidth() - (int) Stream.MARGIN_HORIZONTAL - JPG_WIDTH, stream.getHeight() - (int) Stream.MARGIN_VERTICAL - JPG_HEIGHT,
+				JPG_WIDTH, JPG_HEIGHT, AndroidPdf.getAssetImage(this, JPG_SRC));
+		return pdf;
+	}
 
-		// Optionally, write the bytes out to a file:
-		File file = Pdf.writePdf(this, pdfBytes, PDF_PDFNAME);
+	// Show progress in the title while the PDF is written out, then show the PDF
+	private ProgressListener newProgressListener(final File file) {
+		return new ProgressListener() {
+			@Override
+			public void onProgress(final int pagesWritten, final int pageCount) {
+				runOnUiThread(new Runnable() {
+					@Override
+					public void run() {
+						setTitle("Page " + pagesWritten + " of " + pageCount);
+					}
+				});
+			}
+
+			@Override
+			public void onFinished(final Throwable error) {
+				runOnUiThread(new Runnable() {
+					@Override
+					public void run() {
+						setTitle(R.string.app_name);
+						if (error == null) showPdf(file);
+						else if (!(error instanceof CancellationException)) Log.d(Pdf.LOG_TAG_DEBUG, Pdf.LOG_STACKTRACE, error);
+					}
+				});
+			}
+		};
+	}
 
-		// Show the PDF in an external viewer
+	// Show the PDF in an external viewer
+	private void showPdf(File file) {
 		Intent intent = new Intent(Intent.ACTION_VIEW);
 		Uri uri = Uri.fromFile(file);
 		intent.setDataAndType(uri, MIME_TYPE_PDF);
 		startActivity(intent);
-
 	}
 
 }